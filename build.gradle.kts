@@ -26,10 +26,57 @@ val integrationTestTask = tasks.register<Test>("integrationTest") {
 
     testClassesDirs = integrationTest.output.classesDirs
     classpath = configurations[integrationTest.runtimeClasspathConfigurationName] + integrationTest.output
+    // forward the load test settings, e.g. `./gradlew integrationTest -Dperf.browsers=50`
+    systemProperties(System.getProperties().filterKeys { it.toString().startsWith("perf.") }.mapKeys { it.key.toString() })
+    // run the load generators on a newer JVM than the one the code is compiled for, e.g. `-PintegrationTestJava=21`
+    // so that ProtocolPerformanceIT runs its users in virtual threads
+    (project.findProperty("integrationTestJava") as String?)?.let { version ->
+        javaLauncher = javaToolchains.launcherFor { languageVersion = JavaLanguageVersion.of(version) }
+    }
 
     shouldRunAfter(tasks.test)
 }
 
+// unit tests of the load-testing utilities in src/integrationTest, run by `./gradlew check` (and thus by `build`) without
+// a running app or browsers. They can't live in src/test: the integration tests already depend on the test classpath.
+val integrationTestUtilsTest by sourceSets.creating
+
+configurations[integrationTestUtilsTest.implementationConfigurationName].extendsFrom(configurations[integrationTest.implementationConfigurationName])
+configurations[integrationTestUtilsTest.runtimeOnlyConfigurationName].extendsFrom(configurations[integrationTest.runtimeOnlyConfigurationName])
+
+val integrationTestUtilsTestTask = tasks.register<Test>("integrationTestUtilsTest") {
+    description = "Runs the unit tests of the integration test utilities."
+    group = "verification"
+    useJUnitPlatform()
+
+    testClassesDirs = integrationTestUtilsTest.output.classesDirs
+    classpath = configurations[integrationTestUtilsTest.runtimeClasspathConfigurationName] + integrationTestUtilsTest.output
+    testLogging {
+        exceptionFormat = TestExceptionFormat.FULL
+    }
+}
+
+tasks.check {
+    dependsOn(integrationTestUtilsTestTask)
+}
+
+// JMH microbenchmarks of the server-side hot paths, run in-JVM via Karibu-Testing. Run with `./gradlew jmh`;
+// pass e.g. `-Pjmh.includes=MainViewBenchmark.click` to only run the matching benchmarks.
+val jmh by sourceSets.creating
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.testImplementation.get())
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH microbenchmarks and writes the results, including allocation per operation, to build/reports/jmh/results.json."
+    group = "verification"
+    classpath = configurations[jmh.runtimeClasspathConfigurationName] + jmh.output
+    mainClass = "org.openjdk.jmh.Main"
+    val resultsFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+    args("-rf", "json", "-rff", resultsFile.absolutePath, "-prof", "gc")
+    (project.findProperty("jmh.includes") as String?)?.let { args(it) }
+    doFirst { resultsFile.parentFile.mkdirs() }
+}
+
 
 dependencies {
     // Vaadin
@@ -56,6 +103,14 @@ dependencies {
     // Integration tests
     "integrationTestImplementation"(project)
     "integrationTestImplementation"(libs.playwright)
+    // used directly by the load-testing utilities, not only through Playwright
+    "integrationTestImplementation"(libs.gson)
+    "integrationTestUtilsTestImplementation"(integrationTest.output)
+
+    // Microbenchmarks
+    "jmhImplementation"(project)
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
 }
 
 java {
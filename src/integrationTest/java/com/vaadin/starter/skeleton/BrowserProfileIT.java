@@ -0,0 +1,88 @@
+package com.vaadin.starter.skeleton;
+
+import com.vaadin.starter.skeleton.utils.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the {@link PerformanceIT} scenario with every {@link BrowserProfile} and reports what a browser costs the load-generating machine
+ * with each of them: the RSS and PSS per browser, and the CPU time per browser and iteration. The server-side numbers ("UIDL TTFB",
+ * the server metrics) should be the same for all profiles; if they aren't, the profile changes what's being tested.
+ * <p></p>
+ * Every profile launches its own browsers, since the profile is applied when launching. The shared browser fleet is not used; if it's running,
+ * its processes are subtracted from the numbers.
+ */
+public class BrowserProfileIT {
+    private static final Logger log = LoggerFactory.getLogger(BrowserProfileIT.class);
+    /**
+     * Run the test case with this many browsers in parallel, for every profile.
+     */
+    private static final int CONCURRENT_BROWSERS = 10;
+    /**
+     * Repeat a test case this many times for every browser.
+     */
+    private static final int TEST_REPEATS = 10;
+    /**
+     * Where the Vaadin app is running.
+     */
+    @NotNull
+    private static final String URL = "http://localhost:8080";
+    /**
+     * One line per profile, logged side by side at the end.
+     */
+    @NotNull
+    private static final List<String> summary = new ArrayList<>();
+
+    @AfterAll
+    public static void logSummary() {
+        log.info("Browser profiles, per browser:\n" + String.join("\n", summary));
+    }
+
+    @Test
+    public void testDefault() throws Exception {
+        runScenario(BrowserProfile.DEFAULT);
+    }
+
+    @Test
+    public void testLean() throws Exception {
+        runScenario(BrowserProfile.LEAN);
+    }
+
+    @Test
+    public void testMinimal() throws Exception {
+        runScenario(BrowserProfile.MINIMAL);
+    }
+
+    private void runScenario(@NotNull BrowserProfile profile) throws Exception {
+        final ProcessTreeStats baseline = ProcessTreeStats.sample();
+        try (ParallelPlaywright executor = new ParallelPlaywright(CONCURRENT_BROWSERS, URL)) {
+            executor.setBrowserProfile(profile);
+            executor.setUidlTiming(true);
+            executor.initialize();
+            final ProcessTreeStats started = ProcessTreeStats.sample();
+            final MeasureTime testStats = new MeasureTime("Browser profile " + profile);
+            executor.runInAllBrowsersAndWait(page -> {
+                for (int i = 0; i < TEST_REPEATS; i++) {
+                    PerformanceIT.iteration(executor, page, testStats);
+                    Utils.sleep(1000L);
+                    testStats.log("Sleep");
+                }
+            });
+            final ProcessTreeStats finished = ProcessTreeStats.sample();
+            log.info(testStats.format());
+            log.info(executor.getAssetCache().format());
+            final ProcessTreeStats browsers = finished.minus(baseline);
+            final double cpuPerIterationMs = finished.minus(started).childrenCpuNanos / 1_000_000d / (CONCURRENT_BROWSERS * TEST_REPEATS);
+            summary.add(String.format(Locale.ROOT, "%-8s RSS=%dMB PSS=%dMB CPU=%.1fms/iteration, Button click p50=%.1fms, UIDL TTFB p50=%.1fms",
+                    profile, browsers.childrenRss / CONCURRENT_BROWSERS / 1024 / 1024, browsers.childrenPss / CONCURRENT_BROWSERS / 1024 / 1024,
+                    cpuPerIterationMs, testStats.snapshot("Button click").getValueAtPercentile(50) / 1_000_000d,
+                    testStats.snapshot("UIDL TTFB").getValueAtPercentile(50) / 1_000_000d));
+        }
+    }
+}
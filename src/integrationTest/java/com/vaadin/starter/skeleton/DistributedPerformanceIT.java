@@ -0,0 +1,46 @@
+package com.vaadin.starter.skeleton;
+
+import com.vaadin.starter.skeleton.utils.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * Generates the load from several worker JVMs, coordinated by {@link DistributedLoad}. The workers are launched on this machine,
+ * which is enough to test the machinery; to go beyond one machine, start further workers elsewhere, see {@link DistributedLoad#setRemoteWorkers(int, int)}.
+ */
+public class DistributedPerformanceIT {
+    private static final Logger log = LoggerFactory.getLogger(DistributedPerformanceIT.class);
+    /**
+     * The number of worker JVMs launched on this machine.
+     */
+    private static final int LOCAL_WORKERS = Integer.getInteger("perf.workers", 2);
+    /**
+     * The number of browsers of every worker.
+     */
+    private static final int BROWSERS_PER_WORKER = 5;
+    /**
+     * Every worker runs this profile with its own browsers.
+     */
+    @NotNull
+    private static final LoadProfile LOAD_PROFILE = new LoadProfile()
+            .ramp("ramp-up", BROWSERS_PER_WORKER, Duration.ofSeconds(10))
+            .hold("hold", Duration.ofSeconds(30));
+    /**
+     * Where the Vaadin app is running.
+     */
+    @NotNull
+    private static final String URL = "http://localhost:8080";
+
+    @Test
+    public void testDistributed() throws Exception {
+        try (DistributedLoad load = new DistributedLoad(LOCAL_WORKERS, BROWSERS_PER_WORKER, URL)) {
+            load.setBrowserProfile(BrowserFleetExtension.BROWSER_PROFILE);
+            final DistributedLoad.Report report = load.run(LoadScenario.MAIN, LOAD_PROFILE);
+            log.info(report.format());
+        }
+    }
+}
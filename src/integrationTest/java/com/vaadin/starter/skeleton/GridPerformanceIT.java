@@ -0,0 +1,143 @@
+package com.vaadin.starter.skeleton;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.vaadin.starter.skeleton.utils.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a data-heavy scenario against the <code>GridView</code>: a lazy Grid over a million persons. Every iteration opens the view,
+ * scrolls to a random row, sorts, filters and clears the filter; every step waits until the Grid shows the rows the server
+ * sent for it. Compare the server metrics with {@link PerformanceIT}: the grid requests are much larger and hit the data service.
+ */
+@BrowserFleet(GridPerformanceIT.GRID_URL)
+public class GridPerformanceIT {
+    private static final Logger log = LoggerFactory.getLogger(GridPerformanceIT.class);
+    /**
+     * Repeat a test case this many times in a browser.
+     */
+    private static final int TEST_REPEATS = 10;
+    /**
+     * The number of persons served by the app, see <code>PersonService.DEFAULT_SIZE</code>.
+     */
+    private static final int PERSONS = 1_000_000;
+    /**
+     * Where the Vaadin app is running.
+     */
+    @NotNull
+    private static final String URL = "http://localhost:8080";
+    @NotNull
+    static final String GRID_URL = URL + "/grid";
+    /**
+     * True once the grid has fetched everything it needs and the Vaadin client has no request in flight.
+     */
+    @NotNull
+    private static final String GRID_IDLE = "(() => { const grid = document.querySelector('vaadin-grid#personGrid');"
+            + " const clients = window.Vaadin && window.Vaadin.Flow && window.Vaadin.Flow.clients ? Object.values(window.Vaadin.Flow.clients) : [];"
+            + " return grid && !grid.loading && !grid.hasAttribute('loading') && clients.every(c => !c.isActive || !c.isActive()); })()";
+    private static ParallelPlaywright executor;
+    @NotNull
+    private static final ServerMetricsClient serverMetrics = new ServerMetricsClient(URL);
+
+    @BeforeAll
+    public static void setupParallelPlaywright(@NotNull ParallelPlaywright fleet) {
+        executor = fleet;
+    }
+
+    @AfterAll
+    public static void logSessionMemory() {
+        serverMetrics.logSessionMemory();
+    }
+
+    @BeforeEach
+    public void resetServerMetrics() {
+        serverMetrics.reset();
+    }
+
+    @AfterEach
+    public void logServerMetrics(@NotNull TestInfo testInfo) {
+        serverMetrics.logMetrics(testInfo.getDisplayName());
+    }
+
+    @Test
+    public void testGrid() throws Exception {
+        final MeasureTime testStats = new MeasureTime("Detailed Grid Test Stats").setWarmUp(WarmUp.fromSystemProperties("Filter"));
+        try (FlightRecording ignored = new FlightRecording(URL, "grid", PerformanceIT.JFR_DIR).attach(testStats)) {
+            executor.runInAllBrowsersAndWait(page -> {
+                for (int i = 0; i < TEST_REPEATS; i++) {
+                    testStats.start(System.nanoTime());
+                    executor.runIteration(() -> iteration(executor, page, testStats));
+                    Utils.sleep(1000L);
+                    testStats.log("Sleep");
+                }
+            });
+        }
+        log.info(testStats.format());
+        PerformanceBaseline.verify("grid", testStats);
+    }
+
+    /**
+     * A single iteration of the grid scenario, without think time.
+     */
+    static void iteration(@NotNull ParallelPlaywright executor, @NotNull Page page, @NotNull MeasureTime testStats) {
+        testStats.step("Open grid view", () -> {
+            page.navigate(GRID_URL);
+            waitForGrid(page, "grid.size === " + PERSONS);
+        });
+        drainUidlTimings(executor, testStats);
+
+        // sorted by id: the row at index i is the person with id i.
+        final int index = ThreadLocalRandom.current().nextInt(PERSONS - 100);
+        testStats.step("Scroll", () -> {
+            page.locator("vaadin-grid#personGrid").evaluate("(grid, index) => grid.scrollToIndex(index)", index);
+            waitForGrid(page, "hasCell('" + index + "')");
+        });
+        drainUidlTimings(executor, testStats);
+
+        // the first click sorts by id ascending, the second one descending; then the first row is the last person.
+        final Locator idSorter = page.locator("vaadin-grid#personGrid vaadin-grid-sorter").first();
+        testStats.step("Sort", () -> {
+            idSorter.click();
+            idSorter.click();
+            page.locator("vaadin-grid#personGrid").evaluate("grid => grid.scrollToIndex(0)");
+            waitForGrid(page, "hasCell('" + (PERSONS - 1) + "')");
+        });
+        drainUidlTimings(executor, testStats);
+
+        final Locator filterField = page.locator("vaadin-text-field#filterField input");
+        testStats.step("Filter", () -> {
+            filterField.fill("ann");
+            waitForGrid(page, "grid.size > 0 && grid.size < " + PERSONS);
+        });
+        drainUidlTimings(executor, testStats);
+
+        testStats.step("Clear filter", () -> {
+            filterField.fill("");
+            waitForGrid(page, "grid.size === " + PERSONS);
+        });
+        drainUidlTimings(executor, testStats);
+    }
+
+    /**
+     * Waits until the grid is idle and given condition holds.
+     * @param condition a JavaScript expression; <code>grid</code> is the grid element, <code>hasCell(text)</code> checks whether
+     *                  a rendered cell has given text.
+     */
+    private static void waitForGrid(@NotNull Page page, @NotNull String condition) {
+        page.waitForFunction("() => { const grid = document.querySelector('vaadin-grid#personGrid');"
+                + " const hasCell = text => Array.from(grid.querySelectorAll('vaadin-grid-cell-content')).some(c => c.textContent === text);"
+                + " return " + GRID_IDLE + " && (" + condition + "); }");
+    }
+
+    private static void drainUidlTimings(@NotNull ParallelPlaywright executor, @NotNull MeasureTime testStats) {
+        final UidlTimings uidlTimings = executor.getUidlTimings();
+        if (uidlTimings != null) {
+            uidlTimings.drainTo(testStats);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.vaadin.starter.skeleton;
+
+import com.microsoft.playwright.Page;
+import com.vaadin.starter.skeleton.utils.LoadWorker;
+import com.vaadin.starter.skeleton.utils.MeasureTime;
+import com.vaadin.starter.skeleton.utils.ParallelPlaywright;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The scenarios the {@link LoadWorker}s can run, looked up by name.
+ */
+public enum LoadScenario implements LoadWorker.Scenario {
+    /**
+     * {@link PerformanceIT#iteration}, against the main view.
+     */
+    MAIN {
+        @Override
+        public void iteration(@NotNull ParallelPlaywright executor, @NotNull Page page, @NotNull MeasureTime stats) {
+            PerformanceIT.iteration(executor, page, stats);
+        }
+    },
+    /**
+     * {@link GridPerformanceIT#iteration}, against the grid view.
+     */
+    GRID {
+        @Override
+        public void iteration(@NotNull ParallelPlaywright executor, @NotNull Page page, @NotNull MeasureTime stats) {
+            GridPerformanceIT.iteration(executor, page, stats);
+        }
+    }
+}
@@ -8,58 +8,203 @@ import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+@BrowserFleet(PerformanceIT.URL)
 public class PerformanceIT {
     private static final Logger log = LoggerFactory.getLogger(PerformanceIT.class);
     /**
-     * Run the test case in this many browsers in parallel. CAREFUL when increasing this value: read README.md for further details.
+     * Run the test case in this many browsers in parallel: the size of the shared browser fleet, see {@link BrowserFleetExtension}.
+     * CAREFUL when increasing this value: read README.md for further details.
      */
-    private static final int CONCURRENT_BROWSERS = 10;
+    private static final int CONCURRENT_BROWSERS = BrowserFleetExtension.BROWSERS;
     /**
      * Repeat a test case this many times in a browser.
      */
     private static final int TEST_REPEATS = 10;
+    /**
+     * The open-model test starts this many iterations per second across all browsers, regardless of how fast the server responds.
+     */
+    private static final double ARRIVAL_RATE = 5;
+    /**
+     * For how long the open-model test generates the load.
+     */
+    @NotNull
+    private static final Duration ARRIVAL_DURATION = Duration.ofSeconds(30);
+    /**
+     * The load profile test: ramps up to half of the browsers, holds, then briefly spikes to all browsers.
+     */
+    @NotNull
+    private static final LoadProfile LOAD_PROFILE = new LoadProfile()
+            .ramp("ramp-up", CONCURRENT_BROWSERS / 2, Duration.ofSeconds(20))
+            .hold("hold", Duration.ofSeconds(30))
+            .spike("spike", CONCURRENT_BROWSERS, Duration.ofSeconds(10))
+            .hold("cool-down", Duration.ofSeconds(10));
+    /**
+     * The virtual users test simulates this many users over {@link #CONCURRENT_BROWSERS} browsers.
+     */
+    private static final int VIRTUAL_USERS = CONCURRENT_BROWSERS * 10;
+    /**
+     * How long every virtual user thinks between iterations.
+     */
+    @NotNull
+    private static final Duration VIRTUAL_USER_THINK_TIME = Duration.ofSeconds(10);
     /**
      * Where the Vaadin app is running.
      */
     @NotNull
-    private static final String URL = "http://localhost:8080";
+    static final String URL = "http://localhost:8080";
+    /**
+     * The per-second stats are streamed into this directory while the tests run.
+     */
+    @NotNull
+    private static final Path METRICS_DIR = Path.of("build", "perf");
+    /**
+     * The size of the time windows of the streamed stats.
+     */
+    @NotNull
+    private static final Duration METRICS_WINDOW = Duration.ofSeconds(1);
+    /**
+     * The flight recordings go into this directory, if enabled via <code>-Dperf.jfr=true</code>.
+     */
+    @NotNull
+    static final Path JFR_DIR = Path.of("build", "jfr");
     private static ParallelPlaywright executor;
+    /**
+     * Watches the load-generating machine: if it's saturated, the measured numbers are not reliable.
+     */
+    private static LoadGeneratorGovernor governor;
+    /**
+     * Scrapes the server-side metrics of the app, shown after the client-side stats of every test.
+     */
+    @NotNull
+    private static final ServerMetricsClient serverMetrics = new ServerMetricsClient(URL);
 
     @BeforeAll
-    public static void setupParallelPlaywright() {
-        executor = new ParallelPlaywright(CONCURRENT_BROWSERS, URL);
-        executor.initialize();
+    public static void setupParallelPlaywright(@NotNull ParallelPlaywright fleet) {
+        executor = fleet;
+        // "Fill TextField" is purely a browser thing; if it's slow, the browsers are choking. See README.md for details.
+        governor = new LoadGeneratorGovernor(LoadGeneratorGovernor.Policy.REFUSE_NEW_USERS, Set.of("Fill TextField"), Duration.ofMillis(500));
+        executor.setGovernor(governor);
     }
 
     @AfterAll
     public static void shutdownExecutor() throws Exception {
-        executor.close();
+        // the sessions are still alive until the users are closed.
+        serverMetrics.logSessionMemory();
+        governor.close();
+        // the browsers are shared with other test classes.
+        executor.setGovernor(null);
+    }
+
+    @BeforeEach
+    public void resetServerMetrics() {
+        serverMetrics.reset();
+    }
+
+    @AfterEach
+    public void logServerMetrics(@NotNull TestInfo testInfo) {
+        governor.detachAll();
+        serverMetrics.logMetrics(testInfo.getDisplayName());
+    }
+
+    @Test
+    public void testImplementation() throws Exception {
+        final MeasureTime testStats = new MeasureTime("Detailed Test Stats").setWarmUp(WarmUp.fromSystemProperties("Button click"));
+        governor.attach(testStats);
+        try (WindowedMetrics ignored = new WindowedMetrics("closed-model", METRICS_WINDOW, METRICS_DIR).setGovernor(governor).attach(testStats);
+             FlightRecording ignored2 = new FlightRecording(URL, "closed-model", JFR_DIR).attach(testStats)) {
+            executor.runInAllBrowsersAndWait(page -> testRun(page, testStats));
+        }
+        log.info(testStats.format());
+        PerformanceBaseline.verify("closed-model", testStats);
+    }
+
+    @Test
+    public void testArrivalRate() throws Exception {
+        final MeasureTime testStats = new MeasureTime("Detailed Arrival Rate Test Stats").setWarmUp(WarmUp.fromSystemProperties("Button click"));
+        governor.attach(testStats);
+        final ArrivalStats arrivalStats;
+        try (WindowedMetrics ignored = new WindowedMetrics("open-model", METRICS_WINDOW, METRICS_DIR).setGovernor(governor).attach(testStats);
+             FlightRecording ignored2 = new FlightRecording(URL, "open-model", JFR_DIR).attach(testStats)) {
+            arrivalStats = executor.runAtFixedRate(ARRIVAL_RATE, ARRIVAL_DURATION, CONCURRENT_BROWSERS * 4,
+                    testStats, page -> iteration(executor, page, testStats));
+        }
+        log.info(testStats.format());
+        log.info(arrivalStats.format());
+        PerformanceBaseline.verify("open-model", testStats);
+    }
+
+    @Test
+    public void testLoadProfile() throws Exception {
+        final Map<String, MeasureTime> statsByPhase = LOAD_PROFILE.newPhaseStats();
+        // the later phases run against a warm server and warm browsers, only the first one warms them up.
+        statsByPhase.values().iterator().next().setWarmUp(WarmUp.fromSystemProperties("Button click"));
+        try (WindowedMetrics windows = new WindowedMetrics("load-profile", METRICS_WINDOW, METRICS_DIR).setGovernor(governor);
+             FlightRecording jfr = new FlightRecording(URL, "load-profile", JFR_DIR)) {
+            statsByPhase.values().forEach(phaseStats -> windows.attach(phaseStats));
+            statsByPhase.values().forEach(jfr::attach);
+            statsByPhase.values().forEach(governor::attach);
+            executor.runLoadProfile(LOAD_PROFILE, statsByPhase, (page, phaseStats) -> {
+                executor.runIteration(() -> iteration(executor, page, phaseStats));
+                Utils.sleep(1000L);
+                phaseStats.log("Sleep");
+            });
+        }
+        statsByPhase.values().forEach(phaseStats -> log.info(phaseStats.format()));
+        PerformanceBaseline.verify("load-profile", statsByPhase.values().toArray(new MeasureTime[0]));
     }
 
     @Test
-    public void testImplementation() {
-        final MeasureTime testStats = new MeasureTime("Detailed Test Stats");
-        executor.runInAllBrowsersAndWait(page -> testRun(page, testStats));
+    public void testVirtualUsers() throws Exception {
+        final MeasureTime testStats = new MeasureTime("Detailed Virtual Users Test Stats").setWarmUp(WarmUp.fromSystemProperties("Button click"));
+        governor.attach(testStats);
+        try (WindowedMetrics ignored = new WindowedMetrics("virtual-users", METRICS_WINDOW, METRICS_DIR).setGovernor(governor).attach(testStats);
+             FlightRecording ignored2 = new FlightRecording(URL, "virtual-users", JFR_DIR).attach(testStats)) {
+            executor.runVirtualUsers(VIRTUAL_USERS, VIRTUAL_USER_THINK_TIME, Duration.ofMinutes(1), testStats,
+                    (page, user) -> iteration(executor, page, testStats));
+        }
         log.info(testStats.format());
+        PerformanceBaseline.verify("virtual-users", testStats);
     }
 
     private void testRun(@NotNull Page page, @NotNull MeasureTime testStats) {
         for (int i = 0; i < TEST_REPEATS; i++) {
-            Locator nameField = page.locator("vaadin-text-field#nameField input");
-            testStats.log("TextField lookup");
-            nameField.fill("Martin");
-            testStats.log("Fill TextField");
-            Locator button = page.locator("vaadin-button#sayHelloButton");
-            testStats.log("Button lookup");
-            button.click();
-            testStats.log("Button click");
-            Locator card =
-                    page.locator("vaadin-notification-container > vaadin-notification-card").first();
-            testStats.log("Card lookup");
-            Assertions.assertEquals("Hello Martin", card.textContent());
-            testStats.log("Text content retrieval");
+            testStats.start(System.nanoTime());
+            executor.runIteration(() -> iteration(executor, page, testStats));
             Utils.sleep(1000L);
             testStats.log("Sleep");
         }
     }
+
+    /**
+     * A single iteration of the test scenario, without think time. Also used by {@link PushTransportIT}. The steps which may fail are
+     * run via {@link MeasureTime#step(String, Runnable)}, so that their failures are recorded by kind.
+     * @param executor the browsers; provides the UIDL timing of the page.
+     * @param page the page to run the iteration in.
+     * @param testStats the stats.
+     */
+    static void iteration(@NotNull ParallelPlaywright executor, @NotNull Page page, @NotNull MeasureTime testStats) {
+        Locator nameField = page.locator("vaadin-text-field#nameField input");
+        testStats.log("TextField lookup");
+        testStats.step("Fill TextField", () -> nameField.fill("Martin"));
+        Locator button = page.locator("vaadin-button#sayHelloButton");
+        testStats.log("Button lookup");
+        // epoch millis, comparable with Request.Timing.startTime since the browser runs on this machine.
+        final double clickStart = System.currentTimeMillis();
+        long roundTrip = testStats.step("Button click", button::click);
+        Locator card =
+                page.locator("vaadin-notification-container > vaadin-notification-card").first();
+        roundTrip += testStats.log("Card lookup");
+        roundTrip += testStats.step("Text content retrieval", () -> Assertions.assertEquals("Hello Martin", card.textContent()));
+        final UidlTimings uidlTimings = executor.getUidlTimings();
+        if (uidlTimings != null) {
+            // the click, the server round trip and rendering of the notification, minus the time spent on the network; polls and heartbeats
+            // sent before the click (e.g. during the think time) are not part of the round trip.
+            testStats.record("Click round trip client-side", roundTrip - uidlTimings.drainTo(testStats, clickStart));
+        }
+    }
 }
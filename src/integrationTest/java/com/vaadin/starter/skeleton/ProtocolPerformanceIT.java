@@ -0,0 +1,94 @@
+package com.vaadin.starter.skeleton;
+
+import com.vaadin.starter.skeleton.utils.*;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Runs the same scenario as {@link PerformanceIT}, but without browsers: every virtual user talks to the server
+ * via the Vaadin UIDL protocol directly. The step names match {@link PerformanceIT} so that the stats can be compared;
+ * however, "Fill TextField" is a server round trip here, since the value change is sent right away.
+ */
+public class ProtocolPerformanceIT {
+    private static final Logger log = LoggerFactory.getLogger(ProtocolPerformanceIT.class);
+    /**
+     * Run the test case with this many virtual users in parallel, 10 000 by default; set via <code>-Dperf.protocolUsers</code>.
+     * No browsers are involved, but every user needs a thread: run the test on Java 21+ (<code>-PintegrationTestJava=21</code>)
+     * so that the users run in virtual threads, see {@link ProtocolLoadDriver}. Make sure the Vaadin app has enough memory for that many sessions.
+     */
+    private static final int CONCURRENT_USERS = Integer.getInteger("perf.protocolUsers", 10_000);
+    /**
+     * Repeat a test case this many times for every user.
+     */
+    private static final int TEST_REPEATS = 10;
+    /**
+     * Where the Vaadin app is running.
+     */
+    @NotNull
+    private static final String URL = "http://localhost:8080";
+    private static ProtocolLoadDriver executor;
+    /**
+     * Scrapes the server-side metrics of the app, shown after the client-side stats of every test.
+     */
+    @NotNull
+    private static final ServerMetricsClient serverMetrics = new ServerMetricsClient(URL);
+    /**
+     * Compares the runs against the server handling the requests in the Jetty threads and in virtual threads. See README.md for details.
+     */
+    @NotNull
+    private static final ServerModeComparison modeComparison = new ServerModeComparison(Path.of("build", "perf", "server-modes.csv"));
+
+    @BeforeAll
+    public static void setupProtocolLoadDriver() {
+        // measured without sessions, this is the heap baseline of the heap per user, see ServerModeComparison.
+        serverMetrics.closeSessions();
+        serverMetrics.measureSessionMemory();
+        executor = new ProtocolLoadDriver(CONCURRENT_USERS, URL);
+        executor.initialize();
+    }
+
+    @AfterAll
+    public static void shutdownExecutor() throws Exception {
+        // the sessions are still alive until the users are closed.
+        serverMetrics.logSessionMemory();
+        executor.close();
+    }
+
+    @BeforeEach
+    public void resetServerMetrics() {
+        serverMetrics.reset();
+    }
+
+    @AfterEach
+    public void logServerMetrics(@NotNull TestInfo testInfo) {
+        serverMetrics.logMetrics(testInfo.getDisplayName());
+    }
+
+    @Test
+    public void testImplementation() {
+        final MeasureTime testStats = new MeasureTime("Detailed Protocol Test Stats");
+        final long start = System.nanoTime();
+        executor.runInAllUsersAndWait(client -> testRun(client, testStats));
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        log.info(testStats.format());
+        modeComparison.record(CONCURRENT_USERS, elapsed, testStats, "Button click", serverMetrics);
+    }
+
+    private void testRun(@NotNull VaadinProtocolClient client, @NotNull MeasureTime testStats) {
+        for (int i = 0; i < TEST_REPEATS; i++) {
+            client.setValue("nameField", "Martin");
+            testStats.log("Fill TextField");
+            final String response = client.click("sayHelloButton");
+            testStats.log("Button click");
+            Assertions.assertTrue(response.contains("Hello Martin"), response);
+            testStats.log("Text content retrieval");
+            Utils.sleep(1000L);
+            testStats.log("Sleep");
+        }
+    }
+}
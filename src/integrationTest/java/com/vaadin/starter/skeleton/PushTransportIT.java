@@ -0,0 +1,104 @@
+package com.vaadin.starter.skeleton;
+
+import com.google.gson.JsonObject;
+import com.vaadin.starter.skeleton.utils.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * Runs the {@link PerformanceIT} scenario once over plain XHR requests and once over a WebSocket push connection, against the same server,
+ * and reports the cost of each transport: the client-side latency, the server CPU time per iteration, and the heap and threads per user.
+ * The transport is selected per UI via the <code>push</code> query parameter, see <code>PushServiceInitListener</code> in the app.
+ * <p></p>
+ * Compare "Button click" of both transports: over WebSocket, there are no UIDL requests, so the UIDL network timing isn't available.
+ * The heap per user is measured after a GC while the users are still connected; it includes the session as well as the push connection.
+ * The sessions of the previous transport (and of the previous test classes) are closed on the server before every transport, so that
+ * their UIs and server updates don't consume CPU and heap while the next transport is measured.
+ */
+@BrowserFleet(PushTransportIT.URL)
+public class PushTransportIT {
+    private static final Logger log = LoggerFactory.getLogger(PushTransportIT.class);
+    /**
+     * Run the test case with this many browsers in parallel, for every transport: the size of the shared browser fleet.
+     */
+    private static final int CONCURRENT_BROWSERS = BrowserFleetExtension.BROWSERS;
+    /**
+     * Repeat a test case this many times for every browser.
+     */
+    private static final int TEST_REPEATS = 10;
+    /**
+     * If positive, the server updates every UI at this interval, see <code>ServerUpdates</code> in the app; 0 to disable the server updates.
+     */
+    private static final long SERVER_UPDATES_MILLIS = 1000;
+    /**
+     * Where the Vaadin app is running.
+     */
+    @NotNull
+    static final String URL = "http://localhost:8080";
+    @NotNull
+    private static final ServerMetricsClient serverMetrics = new ServerMetricsClient(URL);
+    private static ParallelPlaywright executor;
+
+    @BeforeAll
+    public static void setupParallelPlaywright(@NotNull ParallelPlaywright fleet) {
+        executor = fleet;
+    }
+
+    @Test
+    public void testXhr() {
+        runScenario("disabled");
+    }
+
+    @Test
+    public void testWebSocket() {
+        runScenario("websocket");
+    }
+
+    private void runScenario(@NotNull String push) {
+        final String url = URL + "/?push=" + push + (SERVER_UPDATES_MILLIS > 0 ? "&updates=" + SERVER_UPDATES_MILLIS : "");
+        // the previous transport's sessions must not overlap with this one: leave them, then close them on the server.
+        executor.leave();
+        serverMetrics.closeSessions();
+        final JsonObject memoryBefore = serverMetrics.measureSessionMemory();
+        final JsonObject metricsBefore = serverMetrics.scrapeJson();
+        // every transport gets fresh sessions in the same browsers.
+        executor.reset(url);
+        final JsonObject metricsConnected = serverMetrics.scrapeJson();
+        serverMetrics.reset();
+        final MeasureTime testStats = new MeasureTime("Push transport " + push);
+        executor.runInAllBrowsersAndWait(page -> {
+            for (int i = 0; i < TEST_REPEATS; i++) {
+                PerformanceIT.iteration(executor, page, testStats);
+                Utils.sleep(1000L);
+                testStats.log("Sleep");
+            }
+        });
+        final JsonObject metricsAfter = serverMetrics.scrapeJson();
+        // measured while the users are still connected.
+        final JsonObject memoryAfter = serverMetrics.measureSessionMemory();
+        log.info(testStats.format());
+        serverMetrics.logMetrics("push transport " + push);
+        logCostPerUser(push, metricsBefore, metricsConnected, metricsAfter, memoryBefore, memoryAfter);
+    }
+
+    private static void logCostPerUser(@NotNull String push, @Nullable JsonObject metricsBefore, @Nullable JsonObject metricsConnected,
+                                       @Nullable JsonObject metricsAfter, @Nullable JsonObject memoryBefore, @Nullable JsonObject memoryAfter) {
+        if (metricsBefore == null || metricsConnected == null || metricsAfter == null || memoryBefore == null || memoryAfter == null) {
+            log.warn("Server metrics not available, can't compute the cost per user of push transport " + push);
+            return;
+        }
+        final double cpuPerIteration = (metricsAfter.get("jvmProcessCpuMs").getAsLong() - metricsConnected.get("jvmProcessCpuMs").getAsLong())
+                / (double) (CONCURRENT_BROWSERS * TEST_REPEATS);
+        final double heapPerUserKb = (memoryAfter.get("heapUsedAfterGcMb").getAsDouble() - memoryBefore.get("heapUsedAfterGcMb").getAsDouble())
+                * 1024 / CONCURRENT_BROWSERS;
+        final double threadsPerUser = (metricsConnected.get("jvmThreads").getAsLong() - metricsBefore.get("jvmThreads").getAsLong())
+                / (double) CONCURRENT_BROWSERS;
+        log.info(String.format(Locale.ROOT, "Push transport %s: server CPU %.3fms per iteration, heap %.1fKB per user, %.2f server threads per user",
+                push, cpuPerIteration, heapPerUserKb, threadsPerUser));
+    }
+}
@@ -0,0 +1,86 @@
+package com.vaadin.starter.skeleton;
+
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.starter.skeleton.utils.*;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.github.mvysny.kaributesting.v10.LocatorJ.*;
+import static com.github.mvysny.kaributesting.v10.NotificationsKt.expectNotifications;
+
+/**
+ * Runs the same scenario as {@link PerformanceIT}, but in this JVM against sessions mocked by Karibu-Testing, the same way
+ * <code>MainViewTest</code> does. There's no browser, no network and no Jetty: the numbers are the pure server-side cost
+ * (latency, CPU and allocation) of view construction and of the listeners. Use this to profile the hot paths of the app;
+ * doesn't need the app to be running.
+ */
+public class ServerSidePerformanceIT {
+    private static final Logger log = LoggerFactory.getLogger(ServerSidePerformanceIT.class);
+    /**
+     * Run the test case with this many mocked sessions.
+     */
+    private static final int CONCURRENT_SESSIONS = 5000;
+    /**
+     * Repeat a test case this many times for every session.
+     */
+    private static final int TEST_REPEATS = 10;
+    private static Routes routes;
+    private static MockVaadinLoadDriver executor;
+
+    @BeforeAll
+    public static void setupMockVaadinLoadDriver() {
+        // Route discovery involves classpath scanning and is an expensive operation; discover the routes once.
+        routes = new Routes().autoDiscoverViews("com.vaadin.starter.skeleton");
+        executor = new MockVaadinLoadDriver(routes, CONCURRENT_SESSIONS, Runtime.getRuntime().availableProcessors());
+        executor.initialize();
+    }
+
+    @AfterAll
+    public static void shutdownExecutor() throws Exception {
+        executor.close();
+    }
+
+    @Test
+    public void testImplementation() {
+        final MeasureTime testStats = new MeasureTime("Detailed Server-Side Test Stats");
+        final ServerCost cost = new ServerCost(testStats);
+        for (int i = 0; i < TEST_REPEATS; i++) {
+            executor.runInAllSessionsAndWait(() -> testRun(cost));
+        }
+        log.info(testStats.format());
+        log.info(cost.format());
+    }
+
+    @Test
+    public void testViewConstruction() {
+        final MeasureTime testStats = new MeasureTime("Server-Side View Construction Stats");
+        final ServerCost cost = new ServerCost(testStats);
+        for (int i = 0; i < TEST_REPEATS; i++) {
+            executor.runInAllSessionsAndWait(() -> cost.measure("MainView construction", () -> {
+                new MainView();
+            }));
+        }
+        log.info(testStats.format());
+        log.info(cost.format());
+    }
+
+    private void testRun(ServerCost cost) {
+        final TextField textField = _get(TextField.class, spec -> spec.withId("nameField"));
+        // clientRoundtrip() runs what Vaadin runs at the end of every request: the pending access() tasks and beforeClientResponse() callbacks.
+        cost.measure("Fill TextField", () -> {
+            _setValue(textField, "Martin");
+            MockVaadin.clientRoundtrip();
+        });
+        final Button button = _get(Button.class, spec -> spec.withId("sayHelloButton"));
+        cost.measure("Button click", () -> {
+            _click(button);
+            MockVaadin.clientRoundtrip();
+        });
+        // also removes the notification, otherwise they would pile up in the UI.
+        expectNotifications("Hello Martin");
+    }
+}
@@ -0,0 +1,96 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The outcome of an open-model run, see {@link ParallelPlaywright#runAtFixedRate}. Thread-safe.
+ */
+public final class ArrivalStats {
+    /**
+     * The target arrival rate, iterations per second.
+     */
+    public final double targetRate;
+    /**
+     * The number of iterations which were supposed to start.
+     */
+    public final int scheduled;
+    @NotNull
+    final AtomicInteger started = new AtomicInteger();
+    @NotNull
+    final AtomicInteger completed = new AtomicInteger();
+    /**
+     * Iterations which failed and were recovered from, see {@link ParallelPlaywright#setRecovery(Recovery)}; not counted as completed.
+     */
+    @NotNull
+    final AtomicInteger failed = new AtomicInteger();
+    /**
+     * Starts which were dropped because the backlog of waiting starts was full: the load generator couldn't keep up with the target rate.
+     */
+    @NotNull
+    final AtomicInteger dropped = new AtomicInteger();
+    /**
+     * The largest observed backlog of starts waiting for an idle page.
+     */
+    @NotNull
+    final AtomicInteger maxBacklog = new AtomicInteger();
+    /**
+     * How long the starts waited for an idle page: the actual start minus the intended start.
+     */
+    @NotNull
+    final LatencyHistogram startLag = new LatencyHistogram();
+    private final long runStart = System.nanoTime();
+    private volatile long runEnd;
+
+    ArrivalStats(double targetRate, int scheduled) {
+        this.targetRate = targetRate;
+        this.scheduled = scheduled;
+    }
+
+    void finish() {
+        runEnd = System.nanoTime();
+    }
+
+    public int getStarted() {
+        return started.get();
+    }
+
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getDropped() {
+        return dropped.get();
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog.get();
+    }
+
+    /**
+     * @return the achieved throughput, completed iterations per second.
+     */
+    public double getAchievedRate() {
+        final long end = runEnd == 0 ? System.nanoTime() : runEnd;
+        return getCompleted() / ((end - runStart) / 1_000_000_000d);
+    }
+
+    @NotNull
+    public String format() {
+        return String.format(Locale.ROOT, "Arrival stats: target=%.2f/s achieved=%.2f/s scheduled=%d started=%d completed=%d failed=%d dropped=%d maxBacklog=%d startLag[p50=%s/p99=%s/max=%s]",
+                targetRate, getAchievedRate(), scheduled, getStarted(), getCompleted(), getFailed(), getDropped(), getMaxBacklog(),
+                MeasureTime.formatMs(startLag.getValueAtPercentile(50)), MeasureTime.formatMs(startLag.getValueAtPercentile(99)), MeasureTime.formatMs(startLag.getMax()));
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
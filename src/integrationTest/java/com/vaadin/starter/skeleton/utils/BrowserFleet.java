@@ -0,0 +1,23 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated test class against the browser fleet shared by all test classes, see {@link BrowserFleetExtension}.
+ * The fleet's {@link ParallelPlaywright} is passed to any test or lifecycle method with a parameter of that type, e.g.
+ * <code>@BeforeAll static void setup(ParallelPlaywright executor)</code>.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(BrowserFleetExtension.class)
+public @interface BrowserFleet {
+    /**
+     * @return before the test class runs, all browsers forget their sessions and are navigated to this URL.
+     */
+    String value();
+}
@@ -0,0 +1,148 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Keeps one fleet of browsers alive for the whole integration test run, instead of every test class launching its own.
+ * Launching many browsers takes minutes; resetting them takes seconds.
+ * <p></p>
+ * The fleet is launched by the first test class annotated with {@link BrowserFleet}, see {@link ParallelPlaywright#initialize()};
+ * every further test class {@link ParallelPlaywright#reset(String) resets} the browsers instead, so that it starts with fresh
+ * Vaadin sessions; the previous sessions are {@link ServerMetricsClient#closeSessions() closed} first. The fleet is closed when the whole run is done. Configure via system properties:
+ * <ul>
+ *     <li><code>perf.browsers</code>: the number of browsers, 10 by default. CAREFUL when increasing this value: read README.md for further details;</li>
+ *     <li><code>perf.browserProfile</code>: see {@link BrowserProfile}, <code>default</code> by default;</li>
+ *     <li><code>perf.tailCapture.thresholdMs</code>, <code>perf.tailCapture.percentile</code>: see {@link TailCapture#fromSystemProperties()}, disabled by default;</li>
+ *     <li><code>perf.recovery</code>: what a browser does after a failed iteration, see {@link Recovery}, <code>abort</code> by default;</li>
+ *     <li><code>perf.stepTimeoutMs</code>: see {@link ParallelPlaywright#setStepTimeout(Duration)}, the Playwright default by default;</li>
+ *     <li><code>perf.maxFailureRate</code>: see {@link ParallelPlaywright#setMaxFailureRate(double)}, 0 by default.</li>
+ * </ul>
+ * The UIDL timing is always enabled, see {@link ParallelPlaywright#setUidlTiming(boolean)}.
+ * <p></p>
+ * The test classes of a run are executed one after another, so they never share the browsers at the same time.
+ */
+public class BrowserFleetExtension implements BeforeAllCallback, ParameterResolver {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(BrowserFleetExtension.class);
+    /**
+     * The number of browsers in the fleet.
+     */
+    public static final int BROWSERS = Integer.getInteger("perf.browsers", 10);
+    /**
+     * How the browsers are launched and which assets they load.
+     */
+    @NotNull
+    public static final BrowserProfile BROWSER_PROFILE = BrowserProfile.parse(System.getProperty("perf.browserProfile", "default"));
+    /**
+     * What a browser does after one of its iterations failed; by default, the first failure fails the run.
+     */
+    @NotNull
+    public static final Recovery RECOVERY = Recovery.parse(System.getProperty("perf.recovery", "abort"));
+    /**
+     * The timeout of the Playwright actions, null for the Playwright default.
+     */
+    @Nullable
+    public static final Duration STEP_TIMEOUT = Long.getLong("perf.stepTimeoutMs") == null ? null : Duration.ofMillis(Long.getLong("perf.stepTimeoutMs"));
+    /**
+     * A run fails if more than this ratio of its iterations failed; 0 by default: any failure fails the run.
+     * Only matters with a {@link #RECOVERY} other than abort.
+     */
+    public static final double MAX_FAILURE_RATE = Double.parseDouble(System.getProperty("perf.maxFailureRate", "0"));
+    @NotNull
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(BrowserFleetExtension.class);
+
+    @Override
+    public void beforeAll(@NotNull ExtensionContext context) {
+        final String url = context.getRequiredTestClass().getAnnotation(BrowserFleet.class).value();
+        final ExtensionContext.Store store = context.getRoot().getStore(NAMESPACE);
+        final Fleet fleet = store.get(Fleet.class, Fleet.class);
+        if (fleet == null) {
+            store.put(Fleet.class, Fleet.launch(url));
+        } else {
+            // the previous test class's sessions must not overlap with this one.
+            fleet.executor.leave();
+            closeSessions(url);
+            fleet.executor.reset(url);
+        }
+    }
+
+    /**
+     * Closes all sessions on the server, then measures the session memory while there are none: that's the heap baseline
+     * of the heap delta per session, see <code>SessionMemoryReport</code> in the app.
+     * @param url the app URL.
+     */
+    private static void closeSessions(@NotNull String url) {
+        final URI uri = URI.create(url);
+        final ServerMetricsClient serverMetrics = new ServerMetricsClient(uri.getScheme() + "://" + uri.getAuthority());
+        serverMetrics.closeSessions();
+        serverMetrics.measureSessionMemory();
+    }
+
+    @Override
+    public boolean supportsParameter(@NotNull ParameterContext parameterContext, @NotNull ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType() == ParallelPlaywright.class;
+    }
+
+    @Override
+    @NotNull
+    public ParallelPlaywright resolveParameter(@NotNull ParameterContext parameterContext, @NotNull ExtensionContext extensionContext) {
+        final Fleet fleet = extensionContext.getRoot().getStore(NAMESPACE).get(Fleet.class, Fleet.class);
+        return Objects.requireNonNull(fleet, "The browser fleet is not running: annotate the test class with @BrowserFleet").executor;
+    }
+
+    /**
+     * Closed by JUnit once the whole run is done.
+     */
+    private static final class Fleet implements ExtensionContext.Store.CloseableResource {
+        @NotNull
+        private final ParallelPlaywright executor;
+
+        private Fleet(@NotNull ParallelPlaywright executor) {
+            this.executor = executor;
+        }
+
+        @NotNull
+        static Fleet launch(@NotNull String url) {
+            log.info("Launching a fleet of " + BROWSERS + " browsers, shared by all test classes");
+            final ParallelPlaywright executor = new ParallelPlaywright(BROWSERS, url);
+            executor.setBrowserProfile(BROWSER_PROFILE);
+            executor.setUidlTiming(true);
+            executor.setTailCapture(TailCapture.fromSystemProperties());
+            executor.setRecovery(RECOVERY);
+            executor.setStepTimeout(STEP_TIMEOUT);
+            executor.setMaxFailureRate(MAX_FAILURE_RATE);
+            boolean initialized = false;
+            try {
+                closeSessions(url);
+                executor.initialize();
+                initialized = true;
+                return new Fleet(executor);
+            } finally {
+                if (!initialized) {
+                    try {
+                        executor.close();
+                    } catch (Exception ex) {
+                        log.error("Failed to close the browsers", ex);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() throws Throwable {
+            log.info("Closing the browser fleet");
+            executor.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How the browsers are launched, and how much work they do besides talking to the server. The leaner the profile,
+ * the less CPU and memory every browser needs, and the more users fit into one load-generating machine.
+ * <p></p>
+ * The lean profiles only change what the browser does with the static assets (the JavaScript bundle, stylesheets, images and fonts):
+ * they are fetched from the server once and then served from a {@link StaticAssetCache} shared by all browsers, or not loaded at all.
+ * The pages, the Vaadin sessions and the UIDL requests are exactly the same as with {@link #DEFAULT}, and so is the load
+ * the server is tested with; the server only doesn't serve the static assets over and over.
+ * <p></p>
+ * Compare the profiles with <code>BrowserProfileIT</code>; select the profile of the browser fleet via <code>-Dperf.browserProfile=lean</code>.
+ */
+public enum BrowserProfile {
+    /**
+     * Chromium as launched by Playwright by default: every page loads all assets from the server, default 1280x720 viewport.
+     */
+    DEFAULT(false, false),
+    /**
+     * Lean launch flags which switch off the Chromium features a load test doesn't need (GPU, extensions, background networking, ...),
+     * a small 800x600 viewport, and the static assets served from the in-process cache.
+     */
+    LEAN(true, false),
+    /**
+     * Like {@link #LEAN}, and images and fonts are not loaded at all. The pages look broken but work the same.
+     */
+    MINIMAL(true, true);
+
+    @NotNull
+    private static final List<String> LEAN_LAUNCH_ARGS = List.of(
+            "--disable-gpu",
+            "--disable-extensions",
+            "--disable-component-update",
+            "--disable-background-networking",
+            "--disable-default-apps",
+            "--disable-sync",
+            "--disable-features=Translate,MediaRouter,OptimizationHints",
+            "--mute-audio",
+            "--no-first-run",
+            "--no-default-browser-check");
+    private final boolean lean;
+    private final boolean blockImagesAndFonts;
+
+    BrowserProfile(boolean lean, boolean blockImagesAndFonts) {
+        this.lean = lean;
+        this.blockImagesAndFonts = blockImagesAndFonts;
+    }
+
+    /**
+     * @return the options to launch Chromium with.
+     */
+    @NotNull
+    public BrowserType.LaunchOptions launchOptions() {
+        final List<String> args = new ArrayList<>(lean ? LEAN_LAUNCH_ARGS : List.of());
+        if (blockImagesAndFonts) {
+            args.add("--blink-settings=imagesEnabled=false");
+        }
+        return new BrowserType.LaunchOptions().setArgs(args);
+    }
+
+    /**
+     * @return the options of a page in its own browser.
+     */
+    @NotNull
+    public Browser.NewPageOptions newPageOptions() {
+        final Browser.NewPageOptions options = new Browser.NewPageOptions();
+        if (lean) {
+            options.setViewportSize(800, 600).setDeviceScaleFactor(1);
+        }
+        return options;
+    }
+
+    /**
+     * Intercepts the static asset requests of given page, if this profile says so. Call before the page is navigated.
+     * @param page the page.
+     * @param cache serves the static assets; share one cache among all pages.
+     */
+    public void install(@NotNull Page page, @NotNull StaticAssetCache cache) {
+        if (lean) {
+            page.route(StaticAssetCache::isStaticAsset, route -> cache.handle(route, blockImagesAndFonts));
+        }
+    }
+
+    /**
+     * @param value the profile name, case-insensitive, e.g. <code>lean</code>.
+     * @return the profile, not null.
+     */
+    @NotNull
+    public static BrowserProfile parse(@NotNull String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid browser profile '" + value + "': must be one of default, lean, minimal", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helpers for the CSV files the runs append their results to.
+ */
+public final class CsvFiles {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(CsvFiles.class);
+
+    private CsvFiles() {}
+
+    /**
+     * Makes sure that the rows appended to given file match given header: creates the file with the header if it doesn't exist or is empty.
+     * If the file was written with a different header (e.g. by an older version which had fewer columns), it's renamed to
+     * <code>name.&lt;timestamp&gt;.csv</code> and a new file is started, so that the new rows never land under the old header.
+     * @param file the CSV file.
+     * @param header the header line, without the trailing newline.
+     * @throws IOException if the file can't be read, renamed or written.
+     */
+    public static void prepare(@NotNull Path file, @NotNull String header) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file) && Files.size(file) > 0) {
+            final String existingHeader;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                existingHeader = reader.readLine();
+            }
+            if (header.equals(existingHeader)) {
+                return;
+            }
+            final String name = file.getFileName().toString();
+            final String baseName = name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name;
+            final Path rotated = file.resolveSibling(baseName + "." + Files.getLastModifiedTime(file).toMillis() + ".csv");
+            Files.move(file, rotated, StandardCopyOption.REPLACE_EXISTING);
+            log.warn(file + " has different columns than " + header + ", moved to " + rotated);
+        }
+        Files.writeString(file, header + "\n", StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,389 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the load from several {@link LoadWorker} JVMs, to go beyond what one machine can do: every worker runs its own browsers.
+ * This object is the coordinator: it launches the local workers as child processes (and waits for remote workers, if any), assigns
+ * the scenario and the load profile to them, starts them all at the same time, and merges the histograms the workers stream back
+ * into one {@link Report}, with a per-worker breakdown.
+ * <p></p>
+ * Every worker runs the whole load profile with its own browsers: with 3 workers, a profile ramping up to 10 users generates 30 users.
+ * <p></p>
+ * Not thread-safe; close to stop the workers.
+ */
+public final class DistributedLoad implements AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(DistributedLoad.class);
+    /**
+     * How long to wait for a worker to connect, and for the browsers of all workers to launch.
+     */
+    @NotNull
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(5);
+    /**
+     * The workers start this long after they're all ready, so that the start message reaches all of them in time.
+     */
+    @NotNull
+    private static final Duration START_DELAY = Duration.ofSeconds(2);
+
+    private final int localWorkers;
+    private final int browsersPerWorker;
+    @NotNull
+    private final String url;
+    private int remoteWorkers = 0;
+    private int port = 0;
+    @NotNull
+    private BrowserProfile browserProfile = BrowserProfile.DEFAULT;
+    @NotNull
+    private Duration window = Duration.ofSeconds(1);
+    @NotNull
+    private final List<Process> processes = new ArrayList<>();
+    @NotNull
+    private final List<WorkerConnection> workers = new ArrayList<>();
+
+    /**
+     * @param localWorkers the number of worker JVMs to launch on this machine, 0 or higher.
+     * @param browsersPerWorker the number of browsers every worker launches; must be at least the maximum users of the load profile.
+     * @param url the app URL. All browsers will be navigated to this URL.
+     */
+    public DistributedLoad(int localWorkers, int browsersPerWorker, @NotNull String url) {
+        if (localWorkers < 0) {
+            throw new IllegalArgumentException("Parameter localWorkers: invalid value " + localWorkers + ": must be 0 or higher");
+        }
+        if (browsersPerWorker < 1) {
+            throw new IllegalArgumentException("Parameter browsersPerWorker: invalid value " + browsersPerWorker + ": must be 1 or higher");
+        }
+        this.localWorkers = localWorkers;
+        this.browsersPerWorker = browsersPerWorker;
+        this.url = Objects.requireNonNull(url);
+    }
+
+    /**
+     * Additionally waits for given number of workers started on other machines. The coordinator then listens on all network interfaces;
+     * the command line to start the remote workers is logged.
+     * @param remoteWorkers the number of remote workers, 0 by default.
+     * @param port the port to listen on.
+     */
+    public void setRemoteWorkers(int remoteWorkers, int port) {
+        if (remoteWorkers < 0) {
+            throw new IllegalArgumentException("Parameter remoteWorkers: invalid value " + remoteWorkers + ": must be 0 or higher");
+        }
+        this.remoteWorkers = remoteWorkers;
+        this.port = port;
+    }
+
+    /**
+     * @param browserProfile the profile of the browsers of all workers, {@link BrowserProfile#DEFAULT} by default.
+     */
+    public void setBrowserProfile(@NotNull BrowserProfile browserProfile) {
+        this.browserProfile = Objects.requireNonNull(browserProfile);
+    }
+
+    /**
+     * @param window the size of the time windows the workers stream their stats in, one second by default.
+     */
+    public void setWindow(@NotNull Duration window) {
+        this.window = Objects.requireNonNull(window);
+    }
+
+    /**
+     * Runs given scenario in all workers, following given load profile. Blocks until all workers are done.
+     * @param scenario the scenario; an enum constant so that the workers can look it up.
+     * @param profile the load profile every worker runs.
+     * @return the merged stats.
+     * @param <E> the scenario enum.
+     */
+    @NotNull
+    public <E extends Enum<E> & LoadWorker.Scenario> Report run(@NotNull E scenario, @NotNull LoadProfile profile) throws IOException, InterruptedException {
+        if (profile.getMaxUsers() > browsersPerWorker) {
+            throw new IllegalArgumentException("Parameter profile: needs " + profile.getMaxUsers() + " users but the workers only have "
+                    + browsersPerWorker + " browsers");
+        }
+        final int workerCount = localWorkers + remoteWorkers;
+        if (workerCount == 0) {
+            throw new IllegalStateException("No workers: add local or remote workers");
+        }
+        final Report report = new Report("Distributed " + scenario, workerCount);
+        try (ServerSocket serverSocket = remoteWorkers > 0 ? new ServerSocket(port) : new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            serverSocket.setSoTimeout((int) STARTUP_TIMEOUT.toMillis());
+            final int actualPort = serverSocket.getLocalPort();
+            for (int i = 1; i <= localWorkers; i++) {
+                launchLocalWorker(actualPort, i);
+            }
+            if (remoteWorkers > 0) {
+                log.info("Waiting for " + remoteWorkers + " remote workers; start every one with a unique id from " + (localWorkers + 1) + " to "
+                        + workerCount + ": java -cp <integration test classpath> " + LoadWorker.class.getName() + " "
+                        + InetAddress.getLocalHost().getHostName() + " " + actualPort + " <id>");
+            }
+            for (int i = 0; i < workerCount; i++) {
+                final WorkerConnection worker = new WorkerConnection(serverSocket.accept());
+                workers.add(worker);
+                worker.workerId = worker.receive("hello").get("worker").getAsInt();
+                log.info("Worker " + worker.workerId + " connected");
+            }
+        }
+
+        final JsonObject assign = LoadWorker.message("assign");
+        assign.addProperty("scenarioClass", scenario.getDeclaringClass().getName());
+        assign.addProperty("scenario", scenario.name());
+        assign.addProperty("url", url);
+        assign.addProperty("browsers", browsersPerWorker);
+        assign.addProperty("browserProfile", browserProfile.name());
+        assign.addProperty("profile", profile.toSpec());
+        assign.addProperty("windowMillis", window.toMillis());
+        for (WorkerConnection worker : workers) {
+            worker.send(assign);
+        }
+        for (WorkerConnection worker : workers) {
+            worker.receive("ready");
+        }
+
+        final JsonObject start = LoadWorker.message("start");
+        start.addProperty("startAtEpochMillis", System.currentTimeMillis() + START_DELAY.toMillis());
+        log.info("All " + workerCount + " workers ready, starting " + profile);
+        final List<Thread> readers = new ArrayList<>();
+        for (WorkerConnection worker : workers) {
+            worker.send(start);
+            final Thread reader = new Thread(() -> worker.readStats(report), "load-worker-" + worker.workerId);
+            reader.setDaemon(true);
+            reader.start();
+            readers.add(reader);
+        }
+        final long deadline = System.nanoTime() + START_DELAY.plus(profile.getDuration()).plus(STARTUP_TIMEOUT).toNanos();
+        for (Thread reader : readers) {
+            reader.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (reader.isAlive()) {
+                throw new IllegalStateException("Worker " + reader.getName() + " didn't finish in time");
+            }
+        }
+        report.checkNoErrors();
+        return report;
+    }
+
+    private void launchLocalWorker(int port, int workerId) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        // forward the load test settings, e.g. -Dperf.browserProfile
+        System.getProperties().forEach((key, value) -> {
+            if (key.toString().startsWith("perf.")) {
+                command.add("-D" + key + "=" + value);
+            }
+        });
+        command.add(LoadWorker.class.getName());
+        command.add("127.0.0.1");
+        command.add(Integer.toString(port));
+        command.add(Integer.toString(workerId));
+        processes.add(new ProcessBuilder(command).inheritIO().start());
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (WorkerConnection worker : workers) {
+            worker.close();
+        }
+        for (Process process : processes) {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                log.warn("Worker process " + process.pid() + " didn't exit, killing it");
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * The connection to a single worker.
+     */
+    private static final class WorkerConnection implements AutoCloseable {
+        @NotNull
+        private final Socket socket;
+        @NotNull
+        private final BufferedReader in;
+        @NotNull
+        private final Writer out;
+        private int workerId;
+
+        WorkerConnection(@NotNull Socket socket) throws IOException {
+            this.socket = socket;
+            // a worker streams a window every second; if it's silent for this long, it's gone.
+            socket.setSoTimeout((int) STARTUP_TIMEOUT.toMillis());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        void send(@NotNull JsonObject message) throws IOException {
+            out.write(message + "\n");
+            out.flush();
+        }
+
+        @NotNull
+        JsonObject receive(@NotNull String expectedType) throws IOException {
+            final JsonObject message = receive();
+            final String type = message.get("type").getAsString();
+            if (type.equals("error")) {
+                throw new IOException("Worker " + workerId + " failed: " + message.get("message").getAsString());
+            }
+            if (!type.equals(expectedType)) {
+                throw new IOException("Expected " + expectedType + " from worker " + workerId + " but got " + message);
+            }
+            return message;
+        }
+
+        @NotNull
+        private JsonObject receive() throws IOException {
+            final String line = in.readLine();
+            if (line == null) {
+                throw new IOException("Worker " + workerId + " closed the connection");
+            }
+            return JsonParser.parseString(line).getAsJsonObject();
+        }
+
+        /**
+         * Merges the windows streamed by the worker into given report, until the worker is done.
+         */
+        void readStats(@NotNull Report report) {
+            try {
+                while (true) {
+                    final JsonObject message = receive();
+                    switch (message.get("type").getAsString()) {
+                        case "window" -> report.addWindow(workerId, message.get("index").getAsLong(), message.getAsJsonObject("items"));
+                        case "done" -> {
+                            return;
+                        }
+                        case "error" -> throw new IOException(message.get("message").getAsString());
+                        default -> log.warn("Unexpected message from worker " + workerId + ": " + message);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Worker " + workerId + " failed", e);
+                report.addError("Worker " + workerId + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * The stats of all workers merged, and of every worker on its own. The work items are prefixed with the load profile phase,
+     * e.g. <code>hold: Button click</code>. Thread-safe.
+     */
+    public static final class Report {
+        @NotNull
+        private final MeasureTime combined;
+        private final int workerCount;
+        /**
+         * Maps worker id to its stats.
+         */
+        @NotNull
+        private final Map<Integer, MeasureTime> byWorker = new TreeMap<>();
+        /**
+         * Maps window index to the counters of that window.
+         */
+        @NotNull
+        private final Map<Long, WindowCounters> windows = new TreeMap<>();
+        @NotNull
+        private final List<String> errors = new ArrayList<>();
+
+        Report(@NotNull String name, int workerCount) {
+            combined = new MeasureTime(name);
+            this.workerCount = workerCount;
+        }
+
+        synchronized void addWindow(int workerId, long index, @NotNull JsonObject items) {
+            final MeasureTime worker = byWorker.computeIfAbsent(workerId, id -> new MeasureTime("Worker " + id));
+            final WindowCounters counters = windows.computeIfAbsent(index, i -> new WindowCounters());
+            for (Map.Entry<String, JsonElement> item : items.entrySet()) {
+                final LatencyHistogram histogram = LatencyHistogram.decode(item.getValue().getAsString());
+                combined.add(item.getKey(), histogram);
+                worker.add(item.getKey(), histogram);
+                if (ErrorKind.ofSeriesName(item.getKey()) != null) {
+                    counters.failed += histogram.getCount();
+                } else {
+                    counters.samples += histogram.getCount();
+                }
+            }
+            // late samples may arrive in an extra message for the same window: log the window once all workers reported it.
+            if (counters.workers.add(workerId) && counters.workers.size() == workerCount) {
+                log.info("Window " + index + ": " + counters.samples + " samples, " + counters.failed + " failed, from " + workerCount + " workers");
+            }
+        }
+
+        synchronized void addError(@NotNull String error) {
+            errors.add(error);
+        }
+
+        synchronized void checkNoErrors() {
+            if (!errors.isEmpty()) {
+                throw new IllegalStateException("Workers failed: " + errors);
+            }
+        }
+
+        /**
+         * @return the stats of all workers merged.
+         */
+        @NotNull
+        public MeasureTime getCombined() {
+            return combined;
+        }
+
+        /**
+         * @return maps worker id to the stats of that worker.
+         */
+        @NotNull
+        public synchronized Map<Integer, MeasureTime> getWorkers() {
+            return Collections.unmodifiableMap(new TreeMap<>(byWorker));
+        }
+
+        /**
+         * @return the combined stats, followed by the stats of every worker, one per line.
+         */
+        @NotNull
+        public synchronized String format() {
+            final StringBuilder sb = new StringBuilder(combined.format());
+            byWorker.values().forEach(worker -> sb.append("\n  ").append(worker.format()));
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return format();
+        }
+
+        private static final class WindowCounters {
+            private long samples;
+            private long failed;
+            @NotNull
+            private final Set<Integer> workers = new HashSet<>();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.TimeoutError;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Why a step failed, see {@link MeasureTime#step(String, Runnable)}. Every kind has its own latency series, e.g. <code>Button click (timeout)</code>:
+ * under heavy load, the failures are data rather than noise.
+ */
+public enum ErrorKind {
+    /**
+     * A Playwright action didn't finish within its timeout, see {@link ParallelPlaywright#setStepTimeout(java.time.Duration)}.
+     */
+    TIMEOUT("timeout"),
+    /**
+     * The page didn't show what the scenario expected.
+     */
+    ASSERTION("assertion"),
+    /**
+     * The browser failed to load a page, e.g. the connection was refused or reset.
+     */
+    NAVIGATION("navigation"),
+    /**
+     * The server responded with HTTP 5xx during the step; takes precedence over the other kinds, since it's likely the cause.
+     */
+    SERVER_ERROR("server error"),
+    /**
+     * Anything else. Recorded as <code>(failed)</code>, like {@link MeasureTime#logFailure(String)}.
+     */
+    OTHER("failed"),
+    /**
+     * The load generator didn't start the work at all, see {@link ParallelPlaywright#runAtFixedRate}. Recorded with
+     * a duration of 0: only the count is meaningful.
+     */
+    DROPPED("dropped");
+
+    /**
+     * The HTTP 5xx response the browser of the current thread received during the current step (or, outside of steps, during
+     * the current iteration), see {@link #serverErrorSeen(String)}.
+     */
+    @NotNull
+    private static final ThreadLocal<String> serverError = new ThreadLocal<>();
+
+    /**
+     * The suffix of the latency series, e.g. <code>timeout</code> for <code>Button click (timeout)</code>.
+     */
+    @NotNull
+    public final String label;
+
+    ErrorKind(@NotNull String label) {
+        this.label = label;
+    }
+
+    /**
+     * Classifies a failure of a step, by the failure alone.
+     * @param failure the failure.
+     * @return the kind, not null.
+     */
+    @NotNull
+    public static ErrorKind classify(@NotNull Throwable failure) {
+        return classify(failure, null);
+    }
+
+    /**
+     * Classifies a failure of a step.
+     * @param failure the failure.
+     * @param serverError the HTTP 5xx response received while the failed work ran, see {@link #getServerError()}; null if none.
+     * @return the kind, not null.
+     */
+    @NotNull
+    public static ErrorKind classify(@NotNull Throwable failure, @Nullable String serverError) {
+        if (failure instanceof StepFailedException) {
+            return ((StepFailedException) failure).kind;
+        }
+        if (serverError != null) {
+            return SERVER_ERROR;
+        }
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof TimeoutError) {
+                return TIMEOUT;
+            }
+            if (t instanceof AssertionError) {
+                return ASSERTION;
+            }
+            if (t instanceof PlaywrightException && t.getMessage() != null) {
+                final String message = t.getMessage().toLowerCase(Locale.ROOT);
+                if (message.contains("net::err_") || message.contains("navigat")) {
+                    return NAVIGATION;
+                }
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Tells the failure series from the successful ones, e.g. when merging the series of several {@link MeasureTime}s.
+     * @param seriesName the series name, e.g. <code>Button click (timeout)</code>.
+     * @return the kind of the failures recorded in given series, null if the series holds successful work items.
+     */
+    @Nullable
+    public static ErrorKind ofSeriesName(@NotNull String seriesName) {
+        for (ErrorKind kind : values()) {
+            if (seriesName.endsWith(" (" + kind.label + ")")) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Notes that the browser of the current thread received an HTTP 5xx response. Called by {@link ParallelPlaywright}
+     * from the response listener of the page, which runs in the thread owning the page.
+     * @param description e.g. <code>500 http://localhost:8080/?v-r=uidl</code>.
+     */
+    static void serverErrorSeen(@NotNull String description) {
+        serverError.set(description);
+    }
+
+    /**
+     * @return the HTTP 5xx response received since the last {@link #clearServerError()}, null if none.
+     */
+    @Nullable
+    static String getServerError() {
+        return serverError.get();
+    }
+
+    /**
+     * Forgets the HTTP 5xx responses of the current thread; called at the start of every step and every iteration.
+     */
+    static void clearServerError() {
+        serverError.remove();
+    }
+
+    /**
+     * Restores the HTTP 5xx response of the current thread, as returned by {@link #getServerError()} earlier.
+     * @param description the response, null to forget the responses.
+     */
+    static void restoreServerError(@Nullable String description) {
+        if (description == null) {
+            serverError.remove();
+        } else {
+            serverError.set(description);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.vaadin.starter.skeleton.utils;
+
+import jdk.jfr.Recording;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Records the app with JDK Flight Recorder while a test runs, and the test's scenario steps alongside, so that the hot methods,
+ * the allocations and the GC pauses of the server can be attributed to steps like "Button click".
+ * <p></p>
+ * Creating this object starts a recording in the app (via <code>POST /jfr/start</code>, see <code>FlightRecorderServlet</code>) and
+ * a recording of {@link ScenarioStepEvent}s in this JVM; every sample of the {@link #attach(MeasureTime) attached} stats becomes an event.
+ * Closing this object stops both and writes them into a single <code>name.jfr</code>: a JFR file may consist of several chunks,
+ * each with its own time base, so the server's and the client's events line up on one wall-clock timeline in JDK Mission Control
+ * or in <code>jfr print --events ScenarioStep name.jfr</code>. If the app runs on another machine, the clocks must be synchronized.
+ * <p></p>
+ * Create the recording after the browsers have been initialized, so that it covers exactly the measured phase.
+ * Enabled by the <code>perf.jfr</code> system property; otherwise this object does nothing. If the app doesn't support the recording,
+ * a warning is logged and only the client's events are written.
+ */
+public final class FlightRecording implements AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(FlightRecording.class);
+    /**
+     * Whether the recordings are enabled, via <code>-Dperf.jfr=true</code>.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("perf.jfr");
+    @NotNull
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    @NotNull
+    private final String url;
+    @NotNull
+    private final Path file;
+    /**
+     * The recording of the scenario steps in this JVM; null if disabled.
+     */
+    @Nullable
+    private final Recording clientRecording;
+    private final boolean serverRecording;
+    /**
+     * Maps the attached stats to their listeners.
+     */
+    @NotNull
+    private final Map<MeasureTime, MeasureTime.SampleListener> attached = new IdentityHashMap<>();
+
+    /**
+     * Starts the recordings, if {@link #ENABLED}.
+     * @param url the app URL, e.g. <code>http://localhost:8080</code>.
+     * @param name the recording name, also the base name of the output file.
+     * @param outputDir where to write the recording; created if it doesn't exist.
+     */
+    public FlightRecording(@NotNull String url, @NotNull String name, @NotNull Path outputDir) {
+        this.url = Objects.requireNonNull(url);
+        this.file = outputDir.resolve(name + ".jfr");
+        if (!ENABLED) {
+            clientRecording = null;
+            serverRecording = false;
+            return;
+        }
+        serverRecording = send("/jfr/start?name=" + URLEncoder.encode(name, StandardCharsets.UTF_8)) != null;
+        clientRecording = new Recording();
+        clientRecording.setName(name);
+        clientRecording.enable(ScenarioStepEvent.class);
+        clientRecording.start();
+        log.info("Flight recording " + name + " started" + (serverRecording ? "" : " (client side only)"));
+    }
+
+    /**
+     * Records the samples of given stats as {@link ScenarioStepEvent}s.
+     * @param stats the stats to listen to.
+     * @return this
+     */
+    @NotNull
+    public FlightRecording attach(@NotNull MeasureTime stats) {
+        if (clientRecording != null) {
+            final MeasureTime.SampleListener listener = (workItemName, endNanos, durationNanos, failed) ->
+                    commit(stats.getName(), workItemName, endNanos, durationNanos, failed);
+            stats.addListener(listener);
+            synchronized (attached) {
+                attached.put(stats, listener);
+            }
+        }
+        return this;
+    }
+
+    private static void commit(@NotNull String test, @NotNull String workItemName, long endNanos, long durationNanos, boolean failed) {
+        final ScenarioStepEvent event = new ScenarioStepEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.test = test;
+        event.step = workItemName;
+        event.stepDuration = durationNanos;
+        event.stepStart = System.currentTimeMillis() - (System.nanoTime() - endNanos + durationNanos) / 1_000_000;
+        event.failed = failed;
+        event.commit();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (clientRecording == null) {
+            return;
+        }
+        synchronized (attached) {
+            attached.forEach(MeasureTime::removeListener);
+        }
+        final byte[] server = serverRecording ? send("/jfr/stop") : null;
+        Files.createDirectories(file.getParent());
+        final Path client = Files.createTempFile("client", ".jfr");
+        try {
+            clientRecording.stop();
+            clientRecording.dump(client);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                if (server != null) {
+                    out.write(server);
+                }
+                Files.copy(client, out);
+            }
+        } finally {
+            clientRecording.close();
+            Files.deleteIfExists(client);
+        }
+        log.info("Flight recording written to " + file + " (" + Files.size(file) / 1024 + "kB)");
+    }
+
+    /**
+     * POSTs to the app.
+     * @return the response body, null if the app doesn't support the recording.
+     */
+    @Nullable
+    private byte[] send(@NotNull String path) {
+        try {
+            final HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(URI.create(url + path)).timeout(Duration.ofMinutes(2))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() >= 300) {
+                log.warn("Flight recording not available: " + response.uri() + " returned " + response.statusCode());
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            log.warn("Flight recording not available: " + e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Distribution-free statistical tests on {@link LatencyHistogram}s. Latencies are skewed and multi-modal, so nothing here assumes
+ * a normal distribution; the normal approximation is only used for the test statistics, which is fine for the sample sizes of a load test.
+ * Values within one histogram bucket are treated as ties.
+ */
+final class HistogramStatistics {
+    private HistogramStatistics() {
+    }
+
+    /**
+     * The one-sided Mann-Whitney U test (the Wilcoxon rank-sum test) of whether the values of <code>candidate</code> tend to be larger than
+     * the values of <code>baseline</code>: unlike comparing the medians, it takes the whole distributions into account.
+     * @param baseline the baseline values.
+     * @param candidate the candidate values.
+     * @return the p-value: the probability of seeing such a difference if the candidate isn't actually slower. 1 if either histogram is empty.
+     */
+    static double mannWhitneyPValue(@NotNull LatencyHistogram baseline, @NotNull LatencyHistogram candidate) {
+        final long[] a = baseline.getBucketCounts();
+        final long[] b = candidate.getBucketCounts();
+        final double na = baseline.getCount();
+        final double nb = candidate.getCount();
+        if (na == 0 || nb == 0) {
+            return 1;
+        }
+        final double n = na + nb;
+        double rankSumB = 0;
+        double tieCorrection = 0;
+        double ranked = 0;
+        for (int i = 0; i < a.length; i++) {
+            final double ties = a[i] + b[i];
+            if (ties == 0) {
+                continue;
+            }
+            // all tied values get the average of the ranks they occupy.
+            rankSumB += b[i] * (ranked + (ties + 1) / 2);
+            tieCorrection += ties * ties * ties - ties;
+            ranked += ties;
+        }
+        final double u = rankSumB - nb * (nb + 1) / 2;
+        final double variance = na * nb / 12 * ((n + 1) - tieCorrection / (n * (n - 1)));
+        if (variance <= 0) {
+            // all values are tied.
+            return 1;
+        }
+        final double z = (u - na * nb / 2 - 0.5) / Math.sqrt(variance);
+        return 1 - normalCdf(z);
+    }
+
+    /**
+     * The probability that a random candidate value is larger than a random baseline value (ties count as half), i.e. the Mann-Whitney U
+     * divided by the number of pairs. 0.5 means no difference; 0.6 means the candidate is slower in 60% of the pairs.
+     * @return the probability, 0.5 if either histogram is empty.
+     */
+    static double probabilityOfSlower(@NotNull LatencyHistogram baseline, @NotNull LatencyHistogram candidate) {
+        final long[] a = baseline.getBucketCounts();
+        final long[] b = candidate.getBucketCounts();
+        final double na = baseline.getCount();
+        final double nb = candidate.getCount();
+        if (na == 0 || nb == 0) {
+            return 0.5;
+        }
+        double pairs = 0;
+        double baselineBelow = 0;
+        for (int i = 0; i < a.length; i++) {
+            pairs += b[i] * (baselineBelow + a[i] / 2d);
+            baselineBelow += a[i];
+        }
+        return pairs / (na * nb);
+    }
+
+    /**
+     * The distribution-free confidence interval of a percentile, based on the order statistics: the true percentile lies between
+     * the returned values with given confidence, regardless of the distribution.
+     * @param histogram the values.
+     * @param percentile the percentile, 0..100.
+     * @param z the normal quantile of the confidence, e.g. 1.96 for 95%.
+     * @return the lower and the upper bound.
+     */
+    @NotNull
+    static long[] percentileInterval(@NotNull LatencyHistogram histogram, double percentile, double z) {
+        final long n = histogram.getCount();
+        final double q = percentile / 100;
+        final double spread = z * Math.sqrt(n * q * (1 - q));
+        final long lowerRank = (long) Math.floor(n * q - spread);
+        final long upperRank = (long) Math.ceil(n * q + spread) + 1;
+        return new long[]{histogram.getValueAtRank(lowerRank), histogram.getValueAtRank(Math.min(upperRank, n))};
+    }
+
+    /**
+     * The one-sided test of whether the candidate rate is lower than the baseline rate, assuming the events arrive as a Poisson process.
+     * @return the p-value; 1 if either duration is zero.
+     */
+    static double rateDecreasePValue(long baselineCount, double baselineSeconds, long candidateCount, double candidateSeconds) {
+        if (baselineSeconds <= 0 || candidateSeconds <= 0) {
+            return 1;
+        }
+        final double variance = baselineCount / (baselineSeconds * baselineSeconds) + candidateCount / (candidateSeconds * candidateSeconds);
+        if (variance <= 0) {
+            return 1;
+        }
+        final double z = (candidateCount / candidateSeconds - baselineCount / baselineSeconds) / Math.sqrt(variance);
+        return normalCdf(z);
+    }
+
+    /**
+     * The normal quantile of given one-sided significance level, e.g. 1.645 for 0.05.
+     */
+    static double normalQuantile(double alpha) {
+        // bisection is plenty fast for a handful of calls per test.
+        double low = -10;
+        double high = 10;
+        for (int i = 0; i < 100; i++) {
+            final double mid = (low + high) / 2;
+            if (1 - normalCdf(mid) > alpha) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * The standard normal cumulative distribution function, accurate to about 1e-7.
+     */
+    static double normalCdf(double z) {
+        return 0.5 * erfc(-z / Math.sqrt(2));
+    }
+
+    /**
+     * The complementary error function, via the Chebyshev fit from Numerical Recipes.
+     */
+    static double erfc(double x) {
+        final double z = Math.abs(x);
+        final double t = 1 / (1 + 0.5 * z);
+        final double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 + t * (-0.18628806
+                + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+}
@@ -0,0 +1,324 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Detects that the load-generating machine itself is saturated, in which case the measured numbers reflect the
+ * inability of the machine to run that many browsers rather than the performance of the app.
+ * <p></p>
+ * Every second, samples the host CPU usage, the load average and the available memory (from <code>/proc</code>, Linux only),
+ * and the p50 latency of client-only steps (steps which don't talk to the server, e.g. "Fill TextField"; see {@link #attach(MeasureTime)}).
+ * If any of them crosses its threshold, the generator is considered saturated and the {@link Policy} kicks in.
+ * The saturated time intervals are remembered, so that {@link WindowedMetrics} can mark the affected windows as invalid.
+ * <p></p>
+ * The policy only changes the number of users in {@link ParallelPlaywright#runLoadProfile}, the only run mode which varies that number
+ * anyway. In the other run modes the governor only warns and marks the windows: {@link ParallelPlaywright#runInAllBrowsersAndWait}
+ * runs a fixed number of users by definition, {@link ParallelPlaywright#runAtFixedRate} must keep its arrival rate (a saturated
+ * generator shows up as dropped starts instead), and {@link ParallelPlaywright#runVirtualUsers} is bounded by the number of browsers.
+ * <p></p>
+ * Thread-safe. Close the governor when done; that also detaches it from all stats.
+ */
+public final class LoadGeneratorGovernor implements MeasureTime.SampleListener, AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(LoadGeneratorGovernor.class);
+
+    /**
+     * What to do when the load generator is saturated.
+     */
+    public enum Policy {
+        /**
+         * Only log a warning.
+         */
+        WARN,
+        /**
+         * Log a warning and don't add more users while saturated.
+         */
+        REFUSE_NEW_USERS,
+        /**
+         * Log a warning and retire 10% of active users every second while saturated; add them back slowly once the generator recovers.
+         */
+        SHRINK
+    }
+
+    @NotNull
+    private final Policy policy;
+    @NotNull
+    private final Set<String> clientOnlyWorkItems;
+    private final long clientLatencyThresholdNanos;
+    /**
+     * Saturated if the CPU usage of the whole machine exceeds this value, 0..1.
+     */
+    private double maxCpuUsage = 0.9;
+    /**
+     * Saturated if the 1-minute load average divided by the number of CPU cores exceeds this value.
+     */
+    private double maxLoadPerCore = 1.5;
+    /**
+     * Saturated if the available memory drops below this value.
+     */
+    private long minAvailableMemoryBytes = 512L * 1024 * 1024;
+
+    /**
+     * The client-only step latencies collected since the last tick.
+     */
+    @NotNull
+    private final AtomicReference<LatencyHistogram> clientLatencies = new AtomicReference<>(new LatencyHistogram());
+    @NotNull
+    private final ScheduledExecutorService sampler;
+    @Nullable
+    private long[] lastCpuTicks;
+    /**
+     * Null if not saturated; otherwise the reason of the saturation.
+     */
+    @Nullable
+    private volatile String saturationReason;
+    /**
+     * The saturated intervals, as pairs of {@link System#nanoTime()}; the end of the last interval is {@link Long#MAX_VALUE} while saturated.
+     * Guarded by itself.
+     */
+    @NotNull
+    private final List<long[]> saturatedIntervals = new ArrayList<>();
+    /**
+     * The stats this governor listens to, see {@link #attach(MeasureTime)}. Guarded by itself.
+     */
+    @NotNull
+    private final List<MeasureTime> attached = new ArrayList<>();
+    /**
+     * The maximum number of active users allowed by the policy.
+     */
+    private volatile int userCap = Integer.MAX_VALUE;
+    /**
+     * The number of active users as last reported via {@link #limitUsers(int)}.
+     */
+    private volatile int activeUsers = 0;
+    private int healthyTicks = 0;
+
+    /**
+     * Creates the governor and starts sampling.
+     * @param policy what to do when the generator is saturated.
+     * @param clientOnlyWorkItems names of the work items which don't talk to the server, e.g. "Fill TextField".
+     * @param clientLatencyThreshold the generator is saturated if the p50 of client-only work items exceeds this value.
+     */
+    public LoadGeneratorGovernor(@NotNull Policy policy, @NotNull Set<String> clientOnlyWorkItems, @NotNull Duration clientLatencyThreshold) {
+        this.policy = Objects.requireNonNull(policy);
+        this.clientOnlyWorkItems = Set.copyOf(clientOnlyWorkItems);
+        this.clientLatencyThresholdNanos = clientLatencyThreshold.toNanos();
+        sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            try {
+                tick();
+            } catch (Exception e) {
+                log.error("Load generator sampling failed", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    public void setMaxCpuUsage(double maxCpuUsage) {
+        this.maxCpuUsage = maxCpuUsage;
+    }
+
+    public void setMaxLoadPerCore(double maxLoadPerCore) {
+        this.maxLoadPerCore = maxLoadPerCore;
+    }
+
+    public void setMinAvailableMemoryBytes(long minAvailableMemoryBytes) {
+        this.minAvailableMemoryBytes = minAvailableMemoryBytes;
+    }
+
+    /**
+     * Starts watching the client-only work items logged into given stats.
+     * @param stats the stats.
+     * @return this
+     */
+    @NotNull
+    public LoadGeneratorGovernor attach(@NotNull MeasureTime stats) {
+        stats.addListener(this);
+        synchronized (attached) {
+            attached.add(stats);
+        }
+        return this;
+    }
+
+    /**
+     * Stops watching given stats, see {@link #attach(MeasureTime)}. Does nothing if the stats are not attached.
+     * @param stats the stats.
+     */
+    public void detach(@NotNull MeasureTime stats) {
+        stats.removeListener(this);
+        synchronized (attached) {
+            attached.remove(stats);
+        }
+    }
+
+    /**
+     * Stops watching all stats, e.g. after every test when the governor is shared by several tests.
+     */
+    public void detachAll() {
+        synchronized (attached) {
+            attached.forEach(stats -> stats.removeListener(this));
+            attached.clear();
+        }
+    }
+
+    @Override
+    public void onSample(@NotNull String workItemName, long endNanos, long durationNanos, boolean failed) {
+        if (!failed && clientOnlyWorkItems.contains(workItemName)) {
+            clientLatencies.get().record(durationNanos);
+        }
+    }
+
+    /**
+     * @return true if the load generator is currently saturated.
+     */
+    public boolean isSaturated() {
+        return saturationReason != null;
+    }
+
+    /**
+     * Checks whether the load generator was saturated at any time in given interval.
+     * @param fromNanos the start of the interval, as {@link System#nanoTime()}.
+     * @param toNanos the end of the interval, as {@link System#nanoTime()}.
+     * @return true if the generator was saturated.
+     */
+    public boolean wasSaturated(long fromNanos, long toNanos) {
+        synchronized (saturatedIntervals) {
+            for (long[] interval : saturatedIntervals) {
+                if (interval[0] < toNanos && fromNanos < interval[1]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the policy to the number of users the test wants to run.
+     * @param targetUsers the number of users the test wants to be active.
+     * @return the number of users which may be active.
+     */
+    public int limitUsers(int targetUsers) {
+        final int allowed = Math.min(targetUsers, userCap);
+        activeUsers = allowed;
+        return allowed;
+    }
+
+    private void tick() {
+        final List<String> reasons = new ArrayList<>();
+        final long[] cpuTicks = readCpuTicks();
+        if (cpuTicks != null && lastCpuTicks != null) {
+            final double total = cpuTicks[0] - lastCpuTicks[0];
+            final double idle = cpuTicks[1] - lastCpuTicks[1];
+            final double usage = total <= 0 ? 0 : 1 - idle / total;
+            if (usage > maxCpuUsage) {
+                reasons.add(String.format(Locale.ROOT, "CPU usage %.0f%%", usage * 100));
+            }
+        }
+        lastCpuTicks = cpuTicks;
+        final Double loadAverage = readLoadAverage();
+        final int cores = Runtime.getRuntime().availableProcessors();
+        if (loadAverage != null && loadAverage / cores > maxLoadPerCore) {
+            reasons.add("load average " + loadAverage + " on " + cores + " cores");
+        }
+        final Long availableKb = ProcessTreeStats.readKbField(Path.of("/proc/meminfo"), "MemAvailable:");
+        if (availableKb != null && availableKb * 1024 < minAvailableMemoryBytes) {
+            reasons.add("available memory " + availableKb / 1024 + "MB");
+        }
+        final LatencyHistogram latencies = clientLatencies.getAndSet(new LatencyHistogram());
+        final long p50 = latencies.getValueAtPercentile(50);
+        if (p50 > clientLatencyThresholdNanos) {
+            reasons.add("client-only step p50 " + MeasureTime.formatMs(p50) + "ms");
+        }
+        updateState(reasons.isEmpty() ? null : String.join(", ", reasons));
+    }
+
+    private void updateState(@Nullable String reason) {
+        final long now = System.nanoTime();
+        final boolean wasSaturated = saturationReason != null;
+        saturationReason = reason;
+        if (reason != null) {
+            healthyTicks = 0;
+            if (!wasSaturated) {
+                synchronized (saturatedIntervals) {
+                    saturatedIntervals.add(new long[]{now - TimeUnit.SECONDS.toNanos(1), Long.MAX_VALUE});
+                }
+                log.warn("Load generator saturated: " + reason + ". The measured numbers are not reliable; policy " + policy);
+            }
+            switch (policy) {
+                case REFUSE_NEW_USERS -> userCap = Math.min(userCap, activeUsers);
+                case SHRINK -> userCap = Math.max(1, (int) (Math.min(userCap, activeUsers) * 0.9));
+                default -> {}
+            }
+        } else {
+            healthyTicks++;
+            if (wasSaturated) {
+                synchronized (saturatedIntervals) {
+                    saturatedIntervals.get(saturatedIntervals.size() - 1)[1] = now;
+                }
+                log.info("Load generator recovered, active users: " + activeUsers);
+            }
+            if (userCap != Integer.MAX_VALUE && healthyTicks >= 5) {
+                if (policy == Policy.SHRINK && userCap <= activeUsers) {
+                    userCap = userCap + Math.max(1, userCap / 20);
+                } else {
+                    userCap = Integer.MAX_VALUE;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the total and the idle (including iowait) CPU ticks of the machine, null if not available.
+     */
+    @Nullable
+    private static long[] readCpuTicks() {
+        try {
+            final String line = Files.readAllLines(Path.of("/proc/stat")).get(0);
+            final String[] fields = line.trim().split("\\s+");
+            long total = 0;
+            for (int i = 1; i < fields.length; i++) {
+                total += Long.parseLong(fields[i]);
+            }
+            final long idle = Long.parseLong(fields[4]) + (fields.length > 5 ? Long.parseLong(fields[5]) : 0);
+            return new long[]{total, idle};
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the 1-minute load average, null if not available.
+     */
+    @Nullable
+    private static Double readLoadAverage() {
+        try {
+            return Double.parseDouble(Files.readString(Path.of("/proc/loadavg")).split(" ")[0]);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        detachAll();
+        sampler.shutdown();
+        while (!sampler.awaitTermination(1, TimeUnit.DAYS)) {}
+    }
+}
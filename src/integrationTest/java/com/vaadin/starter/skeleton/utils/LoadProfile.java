@@ -0,0 +1,243 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Describes how the number of active users changes over time, as a sequence of phases. Example:
+ * <pre>
+ * new LoadProfile()
+ *     .ramp("ramp-up", 200, Duration.ofMinutes(5))
+ *     .hold("hold", Duration.ofMinutes(30))
+ *     .spike("spike", 400, Duration.ofMinutes(1))
+ *     .hold("cool-down", Duration.ofMinutes(5));
+ * </pre>
+ * The profile starts with 0 users. Run it via {@link ParallelPlaywright#runLoadProfile}; the stats are collected per phase.
+ * Not thread-safe while being built; don't modify the profile while it's running.
+ */
+public final class LoadProfile {
+    /**
+     * A single phase: during the phase, the number of users changes linearly from {@link #fromUsers} to {@link #toUsers}.
+     */
+    public static final class Phase {
+        @NotNull
+        public final String name;
+        public final int fromUsers;
+        public final int toUsers;
+        @NotNull
+        public final Duration duration;
+
+        Phase(@NotNull String name, int fromUsers, int toUsers, @NotNull Duration duration) {
+            this.name = Objects.requireNonNull(name);
+            this.fromUsers = fromUsers;
+            this.toUsers = toUsers;
+            this.duration = Objects.requireNonNull(duration);
+            if (fromUsers < 0 || toUsers < 0) {
+                throw new IllegalArgumentException("Phase " + name + ": number of users must be 0 or higher");
+            }
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Phase " + name + ": invalid duration " + duration + ": must be positive");
+            }
+        }
+
+        /**
+         * @param elapsedNanos the time since the start of this phase.
+         * @return the number of users which should be active at given time.
+         */
+        public int usersAt(long elapsedNanos) {
+            final double progress = Math.min(1d, (double) elapsedNanos / duration.toNanos());
+            return (int) Math.round(fromUsers + (toUsers - fromUsers) * progress);
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + fromUsers + "->" + toUsers + " users over " + duration + "]";
+        }
+    }
+
+    @NotNull
+    private final List<Phase> phases = new ArrayList<>();
+    /**
+     * The number of users the next phase starts with.
+     */
+    private int level = 0;
+
+    /**
+     * Changes the number of users linearly from the current number to given number.
+     * @param name the phase name, the stats are tagged with it.
+     * @param toUsers the number of users at the end of the phase.
+     * @param duration the phase duration.
+     * @return this
+     */
+    @NotNull
+    public LoadProfile ramp(@NotNull String name, int toUsers, @NotNull Duration duration) {
+        phases.add(new Phase(name, level, toUsers, duration));
+        level = toUsers;
+        return this;
+    }
+
+    /**
+     * Keeps the current number of users.
+     * @param name the phase name, the stats are tagged with it.
+     * @param duration the phase duration.
+     * @return this
+     */
+    @NotNull
+    public LoadProfile hold(@NotNull String name, @NotNull Duration duration) {
+        return ramp(name, level, duration);
+    }
+
+    /**
+     * Immediately changes the number of users to given number, and keeps it for the duration of the phase.
+     * @param name the phase name, the stats are tagged with it.
+     * @param users the number of users.
+     * @param duration the phase duration.
+     * @return this
+     */
+    @NotNull
+    public LoadProfile step(@NotNull String name, int users, @NotNull Duration duration) {
+        phases.add(new Phase(name, users, users, duration));
+        level = users;
+        return this;
+    }
+
+    /**
+     * Immediately changes the number of users to given number for the duration of the phase; then the number of users
+     * returns back to the original number.
+     * @param name the phase name, the stats are tagged with it.
+     * @param users the number of users.
+     * @param duration the phase duration.
+     * @return this
+     */
+    @NotNull
+    public LoadProfile spike(@NotNull String name, int users, @NotNull Duration duration) {
+        phases.add(new Phase(name, users, users, duration));
+        return this;
+    }
+
+    /**
+     * @return the phases, in order. Unmodifiable.
+     */
+    @NotNull
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     * Creates empty stats for every phase, to be passed to {@link ParallelPlaywright#runLoadProfile}.
+     * @return maps phase name to the stats of that phase, in the order of phases.
+     */
+    @NotNull
+    public Map<String, MeasureTime> newPhaseStats() {
+        final Map<String, MeasureTime> statsByPhase = new LinkedHashMap<>();
+        for (Phase phase : phases) {
+            statsByPhase.computeIfAbsent(phase.name, name -> new MeasureTime("Phase " + name));
+        }
+        return statsByPhase;
+    }
+
+    /**
+     * @return the largest number of users active at any time.
+     */
+    public int getMaxUsers() {
+        return phases.stream().mapToInt(p -> Math.max(p.fromUsers, p.toUsers)).max().orElse(0);
+    }
+
+    /**
+     * @return the total duration of all phases.
+     */
+    @NotNull
+    public Duration getDuration() {
+        return phases.stream().map(p -> p.duration).reduce(Duration.ZERO, Duration::plus);
+    }
+
+    /**
+     * @param elapsedNanos the time since the start of the profile.
+     * @return the phase running at given time, null if the profile has finished.
+     */
+    @Nullable
+    public Phase phaseAt(long elapsedNanos) {
+        long phaseStart = 0;
+        for (Phase phase : phases) {
+            final long phaseEnd = phaseStart + phase.duration.toNanos();
+            if (elapsedNanos < phaseEnd) {
+                return phase;
+            }
+            phaseStart = phaseEnd;
+        }
+        return null;
+    }
+
+    /**
+     * @param elapsedNanos the time since the start of the profile.
+     * @return the number of users which should be active at given time; 0 if the profile has finished.
+     */
+    public int usersAt(long elapsedNanos) {
+        long phaseStart = 0;
+        for (Phase phase : phases) {
+            final long phaseEnd = phaseStart + phase.duration.toNanos();
+            if (elapsedNanos < phaseEnd) {
+                return phase.usersAt(elapsedNanos - phaseStart);
+            }
+            phaseStart = phaseEnd;
+        }
+        return 0;
+    }
+
+    /**
+     * Encodes this profile into a string, e.g. to pass it to another JVM. Parse via {@link #parse(String)}.
+     * @return the phases separated by commas; every phase as <code>name:fromUsers-&gt;toUsers@duration</code>, the duration in
+     * the ISO-8601 format, e.g. <code>ramp-up:0-&gt;5@PT20S,hold:5-&gt;5@PT30S</code>.
+     */
+    @NotNull
+    public String toSpec() {
+        final StringBuilder sb = new StringBuilder();
+        for (Phase phase : phases) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(phase.name).append(':').append(phase.fromUsers).append("->").append(phase.toUsers).append('@').append(phase.duration);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a profile encoded via {@link #toSpec()}.
+     * @param spec the encoded profile.
+     * @return the profile, not null.
+     */
+    @NotNull
+    public static LoadProfile parse(@NotNull String spec) {
+        final LoadProfile profile = new LoadProfile();
+        try {
+            for (String phase : spec.split(",")) {
+                final int colon = phase.lastIndexOf(':');
+                final int arrow = phase.indexOf("->", colon);
+                final int at = phase.indexOf('@', arrow);
+                if (colon < 1 || arrow < 0 || at < 0) {
+                    throw new IllegalArgumentException("expected name:from->to@duration but got " + phase);
+                }
+                final int toUsers = Integer.parseInt(phase.substring(arrow + 2, at));
+                profile.phases.add(new Phase(phase.substring(0, colon), Integer.parseInt(phase.substring(colon + 1, arrow)), toUsers,
+                        Duration.parse(phase.substring(at + 1))));
+                profile.level = toUsers;
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Parameter spec: invalid value " + spec + ": " + e.getMessage(), e);
+        }
+        return profile;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadProfile" + phases;
+    }
+}
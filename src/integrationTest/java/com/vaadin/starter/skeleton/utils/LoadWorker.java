@@ -0,0 +1,230 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoft.playwright.Page;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A load-generating worker JVM, controlled by a {@link DistributedLoad} coordinator. Runs its own {@link ParallelPlaywright},
+ * and streams the measured durations back to the coordinator as mergeable histograms, one message per time window,
+ * rather than as raw samples. Start with the coordinator host, port and a unique worker id:
+ * <pre>
+ * java -cp &lt;integration test classpath&gt; com.vaadin.starter.skeleton.utils.LoadWorker coordinator-host 4000 1
+ * </pre>
+ * The conversation with the coordinator, one JSON object per line:
+ * <ol>
+ *     <li>worker: <code>hello</code>; coordinator: <code>assign</code> with the scenario, the URL, the number of browsers and the load profile;</li>
+ *     <li>the worker launches its browsers; worker: <code>ready</code>;</li>
+ *     <li>once all workers are ready, coordinator: <code>start</code> with the wall-clock start time shared by all workers;</li>
+ *     <li>the worker runs the load profile; worker: a <code>window</code> per time window; then <code>done</code>, or <code>error</code> on failure.</li>
+ * </ol>
+ * The windows are aligned to the shared start time, so that the windows of all workers can be merged. For workers on other machines,
+ * the clocks must be synchronized (e.g. via NTP). The worker honors <code>perf.recovery</code>, <code>perf.stepTimeoutMs</code> and <code>perf.maxFailureRate</code>
+ * of its own JVM, see {@link BrowserFleetExtension}.
+ */
+public final class LoadWorker {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(LoadWorker.class);
+
+    /**
+     * A scenario the workers can run. Implemented by an enum, so that the workers can look it up by name.
+     */
+    public interface Scenario {
+        /**
+         * A single iteration of the scenario, without think time.
+         * @param executor the browsers.
+         * @param page the page to run the iteration in.
+         * @param stats the stats of the current load profile phase.
+         */
+        void iteration(@NotNull ParallelPlaywright executor, @NotNull Page page, @NotNull MeasureTime stats);
+    }
+
+    private final int workerId;
+    @NotNull
+    private final BufferedReader in;
+    @NotNull
+    private final Writer out;
+
+    private LoadWorker(int workerId, @NotNull Socket socket) throws IOException {
+        this.workerId = workerId;
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    public static void main(@NotNull String[] args) throws Exception {
+        if (args.length != 3) {
+            System.err.println("Usage: LoadWorker coordinator-host coordinator-port worker-id");
+            System.exit(2);
+        }
+        final int workerId = Integer.parseInt(args[2]);
+        try (Socket socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            final LoadWorker worker = new LoadWorker(workerId, socket);
+            try {
+                worker.run();
+            } catch (Throwable t) {
+                log.error("Worker " + workerId + " failed", t);
+                final JsonObject error = message("error");
+                error.addProperty("message", String.valueOf(t));
+                worker.send(error);
+                System.exit(1);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        final JsonObject hello = message("hello");
+        send(hello);
+        final JsonObject assign = receive("assign");
+        final Scenario scenario = resolveScenario(assign.get("scenarioClass").getAsString(), assign.get("scenario").getAsString());
+        final LoadProfile profile = LoadProfile.parse(assign.get("profile").getAsString());
+        final long windowMillis = assign.get("windowMillis").getAsLong();
+        log.info("Worker " + workerId + ": scenario " + scenario + ", " + profile);
+
+        try (ParallelPlaywright executor = new ParallelPlaywright(assign.get("browsers").getAsInt(), assign.get("url").getAsString())) {
+            executor.setBrowserProfile(BrowserProfile.parse(assign.get("browserProfile").getAsString()));
+            executor.setUidlTiming(true);
+            executor.setTailCapture(TailCapture.fromSystemProperties());
+            executor.setRecovery(BrowserFleetExtension.RECOVERY);
+            executor.setStepTimeout(BrowserFleetExtension.STEP_TIMEOUT);
+            executor.setMaxFailureRate(BrowserFleetExtension.MAX_FAILURE_RATE);
+            executor.initialize();
+            send(message("ready"));
+
+            final long startAtMillis = receive("start").get("startAtEpochMillis").getAsLong();
+            final long wait = startAtMillis - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+            final Map<String, MeasureTime> statsByPhase = profile.newPhaseStats();
+            try (WindowStream windows = new WindowStream(windowMillis)) {
+                statsByPhase.forEach((phase, stats) -> stats.addListener(new MeasureTime.SampleListener() {
+                    @Override
+                    public void onSample(@NotNull String workItemName, long endNanos, long durationNanos, boolean failed) {
+                        // the failures go to onFailure().
+                        windows.record(phase + ": " + workItemName, endNanos, durationNanos);
+                    }
+
+                    @Override
+                    public void onFailure(@NotNull String workItemName, long endNanos, long durationNanos, @NotNull ErrorKind kind) {
+                        windows.record(phase + ": " + workItemName + " (" + kind.label + ")", endNanos, durationNanos);
+                    }
+                }));
+                executor.runLoadProfile(profile, statsByPhase, (page, stats) -> executor.runIteration(() -> scenario.iteration(executor, page, stats)));
+            }
+            send(message("done"));
+        }
+    }
+
+    @NotNull
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Scenario resolveScenario(@NotNull String scenarioClass, @NotNull String name) throws ClassNotFoundException {
+        final Class enumClass = Class.forName(scenarioClass);
+        return (Scenario) Enum.valueOf(enumClass, name);
+    }
+
+    @NotNull
+    static JsonObject message(@NotNull String type) {
+        final JsonObject message = new JsonObject();
+        message.addProperty("type", type);
+        return message;
+    }
+
+    private void send(@NotNull JsonObject message) throws IOException {
+        message.addProperty("worker", workerId);
+        synchronized (out) {
+            out.write(message + "\n");
+            out.flush();
+        }
+    }
+
+    @NotNull
+    private JsonObject receive(@NotNull String expectedType) throws IOException {
+        final String line = in.readLine();
+        if (line == null) {
+            throw new IOException("Coordinator closed the connection while waiting for " + expectedType);
+        }
+        final JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+        final String type = message.get("type").getAsString();
+        if (!type.equals(expectedType)) {
+            throw new IOException("Expected " + expectedType + " from the coordinator but got " + line);
+        }
+        return message;
+    }
+
+    /**
+     * Collects the samples into time windows aligned to its creation, and sends every window to the coordinator
+     * one window after it has closed, to give in-flight samples a chance to arrive. Close to send the remaining windows.
+     */
+    private final class WindowStream implements AutoCloseable {
+        private final long windowNanos;
+        private final long originNanos = System.nanoTime();
+        /**
+         * Maps window index to work item name to the durations.
+         */
+        @NotNull
+        private final ConcurrentHashMap<Long, ConcurrentHashMap<String, LatencyHistogram>> windows = new ConcurrentHashMap<>();
+        @NotNull
+        private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+
+        WindowStream(long windowMillis) {
+            windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+            sender.scheduleAtFixedRate(() -> sendWindowsBefore(currentWindow() - 1), windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private long currentWindow() {
+            return (System.nanoTime() - originNanos) / windowNanos;
+        }
+
+        void record(@NotNull String workItemName, long endNanos, long durationNanos) {
+            final long index = Math.max(0, (endNanos - originNanos) / windowNanos);
+            windows.computeIfAbsent(index, i -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(workItemName, name -> new LatencyHistogram())
+                    .record(durationNanos);
+        }
+
+        private void sendWindowsBefore(long windowIndex) {
+            for (Long index : windows.keySet().stream().filter(i -> i < windowIndex).sorted().toList()) {
+                final Map<String, LatencyHistogram> window = windows.remove(index);
+                final JsonObject message = message("window");
+                message.addProperty("index", index);
+                final JsonObject items = new JsonObject();
+                window.forEach((name, histogram) -> items.addProperty(name, histogram.encode()));
+                message.add("items", items);
+                try {
+                    send(message);
+                } catch (IOException e) {
+                    log.error("Failed to send window " + index, e);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            sender.shutdown();
+            sender.awaitTermination(10, TimeUnit.SECONDS);
+            sendWindowsBefore(Long.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LoadWorker{" + workerId + "}";
+    }
+}
@@ -1,15 +1,30 @@
 package com.vaadin.starter.skeleton.utils;
 
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Measures work. The work consists of several work items, each logged via [log].
  * Assumes that a work item starts right away. Thread-safe.
+ * <p></p>
+ * Durations are measured in nanoseconds and recorded into {@link LatencyHistogram}s; the memory consumption
+ * therefore doesn't grow with the number of logged work items, even for multi-hour runs.
+ * <p></p>
+ * If a {@link #setWarmUp(WarmUp) warm-up} is set, the warm-up samples are recorded into separate series, named <code>workItemName (warm-up)</code>.
+ * <p></p>
+ * Failed work items are recorded into separate series as well, one per {@link ErrorKind}, e.g. <code>workItemName (timeout)</code>;
+ * see {@link #step(String, Runnable)}.
  */
 public final class MeasureTime {
     /**
@@ -25,76 +40,349 @@ public final class MeasureTime {
     @NotNull
     private final String name;
     /**
-     * The start of the work.
+     * The start of the work, as {@link System#nanoTime()}.
      */
-    private final long start = System.currentTimeMillis();
+    private final long start = System.nanoTime();
     /**
-     * The start of the last work item.
+     * Per thread: the start of the last work item, as {@link System#nanoTime()}, and the index of the current iteration, see {@link #start(long)};
+     * -1 before the first iteration. Held in an array so that logging doesn't box.
      */
-    private final ThreadLocal<Long> startOfLastWorkItem = new ThreadLocal<>();
+    private final ThreadLocal<long[]> threadState = ThreadLocal.withInitial(() -> new long[]{start, -1});
+    /**
+     * Tells the warm-up samples from the steady-state samples; null if all samples are steady-state.
+     */
+    @Nullable
+    private volatile WarmUp warmUp;
+
+    /**
+     * Maps work item name to the activity durations.
+     */
+    @NotNull
+    private final ConcurrentHashMap<String, Measurements> log = new ConcurrentHashMap<>();
+    /**
+     * Notified of every sample.
+     */
+    @NotNull
+    private final List<SampleListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Notified of every sample logged into {@link MeasureTime}, from the thread which logged the sample.
+     * Must be thread-safe and fast.
+     */
+    public interface SampleListener {
+        /**
+         * A work item has been logged.
+         * @param workItemName the work item name.
+         * @param endNanos when the work item finished, as {@link System#nanoTime()}.
+         * @param durationNanos the duration of the work item.
+         * @param failed true if the work item failed, see {@link #logFailure(String)}.
+         */
+        void onSample(@NotNull String workItemName, long endNanos, long durationNanos, boolean failed);
 
-    private long getStartOfLastWorkItem() {
-        final Long last = startOfLastWorkItem.get();
-        return last == null ? start : last;
+        /**
+         * A work item has failed. Calls {@link #onSample(String, long, long, boolean)} by default; override to tell the kinds of failures apart.
+         * @param workItemName the work item name.
+         * @param endNanos when the work item failed, as {@link System#nanoTime()}.
+         * @param durationNanos the duration of the work item.
+         * @param kind why the work item failed.
+         */
+        default void onFailure(@NotNull String workItemName, long endNanos, long durationNanos, @NotNull ErrorKind kind) {
+            onSample(workItemName, endNanos, durationNanos, true);
+        }
     }
 
     /**
-     * Maps work item name to the total activity duration.
+     * @return the work name.
      */
     @NotNull
-    private final ConcurrentHashMap<String, Measurements> log = new ConcurrentHashMap<>();
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records the warm-up samples logged from now on into separate series. Call before the work starts.
+     * @param warmUp the warm-up, not shared with other stats; null to disable.
+     * @return this
+     */
+    @NotNull
+    public MeasureTime setWarmUp(@Nullable WarmUp warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
+
+    /**
+     * @return the warm-up, null if not set.
+     */
+    @Nullable
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * Registers a listener, notified of all samples logged from now on.
+     * @param listener the listener, not null.
+     */
+    public void addListener(@NotNull SampleListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Unregisters a listener previously registered via {@link #addListener(SampleListener)}.
+     * @param listener the listener, not null.
+     */
+    public void removeListener(@NotNull SampleListener listener) {
+        listeners.remove(listener);
+    }
 
     /**
      * A work item is done. Log the duration of the work item (calculated from the end of the previous work item).
      * @param workItemName the work item name, not null.
+     * @return the duration of the work item, in nanoseconds.
+     */
+    public long log(@NotNull String workItemName) {
+        Objects.requireNonNull(workItemName);
+        final long now = System.nanoTime();
+        final long[] state = threadState.get();
+        final long duration = now - state[0];
+        getMeasurements(seriesName(workItemName, now, duration, state, null)).log(duration);
+        fireSample(workItemName, now, duration);
+        state[0] = now;
+        return duration;
+    }
+
+    /**
+     * A work item has failed. Log the duration of the work item (calculated from the end of the previous work item) into
+     * a separate series, named <code>workItemName (failed)</code>.
+     * @param workItemName the work item name, not null.
+     */
+    public void logFailure(@NotNull String workItemName) {
+        logFailure(workItemName, ErrorKind.OTHER);
+    }
+
+    /**
+     * A work item has failed. Log the duration of the work item (calculated from the end of the previous work item) into
+     * a separate series, named after the kind of the failure, e.g. <code>workItemName (timeout)</code>.
+     * @param workItemName the work item name, not null.
+     * @param kind why the work item failed, not null.
+     */
+    public void logFailure(@NotNull String workItemName, @NotNull ErrorKind kind) {
+        Objects.requireNonNull(workItemName);
+        Objects.requireNonNull(kind);
+        final long now = System.nanoTime();
+        final long[] state = threadState.get();
+        final long duration = now - state[0];
+        getMeasurements(seriesName(workItemName, now, duration, state, kind)).log(duration);
+        for (SampleListener listener : listeners) {
+            listener.onFailure(workItemName, now, duration, kind);
+        }
+        state[0] = now;
+    }
+
+    /**
+     * Runs one step of the scenario and logs its duration (calculated from the end of the previous work item). If the step fails,
+     * the failure is {@link ErrorKind#classify(Throwable) classified} and logged via {@link #logFailure(String, ErrorKind)}, so that
+     * the slow failures (typically timeouts) show up in the stats instead of silently disappearing; then {@link StepFailedException} is
+     * thrown, which aborts the rest of the iteration. A failure of a nested step has already been logged by that step, and is only rethrown.
+     * <p></p>
+     * An HTTP 5xx response received during the step classifies its failure as {@link ErrorKind#SERVER_ERROR}; the response is forgotten
+     * when the step ends, so that it isn't blamed for a later failure.
+     * @param workItemName the work item name, not null.
+     * @param action the step, e.g. <code>button::click</code>.
+     * @return the duration of the step, in nanoseconds.
+     * @throws StepFailedException if the step failed.
+     */
+    public long step(@NotNull String workItemName, @NotNull Runnable action) {
+        Objects.requireNonNull(workItemName);
+        final String outerServerError = ErrorKind.getServerError();
+        ErrorKind.clearServerError();
+        try {
+            action.run();
+        } catch (StepFailedException e) {
+            // a nested step failed, and has already logged the failure.
+            throw e;
+        } catch (RuntimeException | AssertionError e) {
+            final String serverError = ErrorKind.getServerError();
+            final ErrorKind kind = ErrorKind.classify(e, serverError);
+            logFailure(workItemName, kind);
+            final StepFailedException ex = new StepFailedException(workItemName, kind, e);
+            if (serverError != null) {
+                ex.addSuppressed(new IllegalStateException("The server responded with " + serverError));
+            }
+            throw ex;
+        } finally {
+            ErrorKind.restoreServerError(outerServerError);
+        }
+        return log(workItemName);
+    }
+
+    /**
+     * @return the name of the series the sample belongs to: the work item name, suffixed by the kind of the failure, e.g. <code> (failed)</code>,
+     * and <code> (warm-up)</code>.
+     */
+    @NotNull
+    private String seriesName(@NotNull String workItemName, long endNanos, long durationNanos, @NotNull long[] state, @Nullable ErrorKind failure) {
+        final String name = failure != null ? workItemName + " (" + failure.label + ")" : workItemName;
+        final WarmUp warmUp = this.warmUp;
+        if (warmUp != null && warmUp.isWarmUp(workItemName, endNanos, durationNanos, (int) Math.max(0, state[1]), failure != null)) {
+            return name + " (warm-up)";
+        }
+        return name;
+    }
+
+    private void fireSample(@NotNull String workItemName, long endNanos, long durationNanos) {
+        for (SampleListener listener : listeners) {
+            listener.onSample(workItemName, endNanos, durationNanos, false);
+        }
+    }
+
+    /**
+     * Marks the start of an iteration in the current thread: the next work item logged by this thread via {@link #log(String)}
+     * is measured from given time. Useful when the work was supposed to start at a different time than the one it actually
+     * started, e.g. when the work was queued. Also counts the iterations of the thread, see {@link WarmUp}.
+     * @param startNanos the start of the work, as {@link System#nanoTime()}.
+     */
+    public void start(long startNanos) {
+        final long[] state = threadState.get();
+        state[0] = startNanos;
+        state[1]++;
+    }
+
+    /**
+     * Records a work item with an explicitly measured duration. Doesn't affect the start of the next work item logged via {@link #log(String)}.
+     * @param workItemName the work item name, not null.
+     * @param durationNanos the duration of the work item, in nanoseconds.
      */
-    public void log(@NotNull String workItemName) {
+    public void record(@NotNull String workItemName, long durationNanos) {
         Objects.requireNonNull(workItemName);
-        final long now = System.currentTimeMillis();
-        final long duration = now - getStartOfLastWorkItem();
-        log.computeIfAbsent(workItemName, (key) -> new Measurements()).log(duration);
-        startOfLastWorkItem.set(now);
+        final long now = System.nanoTime();
+        getMeasurements(seriesName(workItemName, now, durationNanos, threadState.get(), null)).log(durationNanos);
+        fireSample(workItemName, now, durationNanos);
+    }
+
+    /**
+     * Records a failed work item with an explicitly measured duration, into the same series as {@link #logFailure(String, ErrorKind)},
+     * e.g. <code>workItemName (failed)</code>. Doesn't affect the start of the next work item logged via {@link #log(String)}.
+     * @param workItemName the work item name, not null.
+     * @param durationNanos the duration of the work item, in nanoseconds.
+     * @param kind why the work item failed, not null.
+     */
+    public void record(@NotNull String workItemName, long durationNanos, @NotNull ErrorKind kind) {
+        Objects.requireNonNull(workItemName);
+        Objects.requireNonNull(kind);
+        final long now = System.nanoTime();
+        getMeasurements(seriesName(workItemName, now, durationNanos, threadState.get(), kind)).log(durationNanos);
+        for (SampleListener listener : listeners) {
+            listener.onFailure(workItemName, now, durationNanos, kind);
+        }
+    }
+
+    /**
+     * Adds all durations of given histogram to given work item, e.g. durations measured elsewhere. Doesn't notify the listeners.
+     * @param workItemName the work item name, not null.
+     * @param durations the durations in nanoseconds, not modified.
+     */
+    public void add(@NotNull String workItemName, @NotNull LatencyHistogram durations) {
+        getMeasurements(Objects.requireNonNull(workItemName)).add(durations);
+    }
+
+    @NotNull
+    private Measurements getMeasurements(@NotNull String workItemName) {
+        final Measurements measurements = log.get(workItemName);
+        return measurements != null ? measurements : log.computeIfAbsent(workItemName, (key) -> new Measurements());
+    }
+
+    /**
+     * @param workItemName the work item name, not null.
+     * @return a copy of the durations of given work item; empty if no such work item has been logged.
+     */
+    @NotNull
+    public LatencyHistogram snapshot(@NotNull String workItemName) {
+        final Measurements measurements = log.get(Objects.requireNonNull(workItemName));
+        return measurements == null ? new LatencyHistogram() : measurements.snapshot();
+    }
+
+    /**
+     * @return the names of all work items logged so far, sorted.
+     */
+    @NotNull
+    public Set<String> getWorkItemNames() {
+        return new TreeSet<>(log.keySet());
+    }
+
+    /**
+     * @return the time since this object has been created, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return the time since the last warm-up sample, in nanoseconds; the same as {@link #getElapsedNanos()} if there was no warm-up.
+     */
+    public long getSteadyStateElapsedNanos() {
+        final WarmUp warmUp = this.warmUp;
+        final long steadyStart = warmUp == null ? start : Math.max(start, warmUp.getWarmUpEndNanos());
+        return System.nanoTime() - steadyStart;
     }
 
     @NotNull
     public String format() {
-        return name + log + " TOTAL=" + (System.currentTimeMillis() - start);
+        final WarmUp warmUp = this.warmUp;
+        return name + new TreeMap<>(log) + " TOTAL=" + formatMs(System.nanoTime() - start) + (warmUp == null ? "" : "\n" + warmUp.format());
     }
 
     @Override
     public String toString() {
-        return name + log.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue().getTotalDuration()) + " TOTAL=" + (System.currentTimeMillis() - start);
+        final Map<String, String> totals = new TreeMap<>();
+        log.forEach((key, value) -> totals.put(key, formatMs(value.snapshot().getTotal())));
+        return name + totals + " TOTAL=" + formatMs(System.nanoTime() - start);
     }
 
     /**
-     * Thread-safe. Remembers a bunch of measurements and provides min/max/avg/median. Call {@link #format()} to obtain a nicely formatted string.
+     * Formats given duration as milliseconds, with a microsecond precision.
+     * @param nanos the duration in nanoseconds.
+     * @return e.g. <code>12.345</code>.
      */
-    private static class Measurements {
-        // thread-safe.
-        private final BlockingQueue<Long> measurements = new LinkedBlockingQueue<>();
-
-        public void log(long durationMs) {
-            measurements.add(durationMs);
-        }
+    @NotNull
+    static String formatMs(long nanos) {
+        return String.format(Locale.ROOT, "%d.%03d", nanos / 1_000_000, (nanos / 1000) % 1000);
+    }
 
-        public long getTotalDuration() {
-            return measurements.stream().reduce(0L, Long::sum);
-        }
+    /**
+     * Thread-safe. Remembers a bunch of measurements and provides min/max/avg/percentiles. Call {@link #format()} to obtain a nicely formatted string.
+     * <p></p>
+     * The measurements are recorded into several histograms (stripes); every thread writes into the stripe selected by its ID, which avoids
+     * contention between threads. The stripes are merged when the stats are formatted.
+     */
+    private static class Measurements {
+        private static final int STRIPES = Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        @NotNull
+        private final LatencyHistogram[] stripes = new LatencyHistogram[STRIPES];
 
-        public long getAvgDuration() {
-            return getTotalDuration() / measurements.size();
+        Measurements() {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new LatencyHistogram();
+            }
         }
 
-        public long getMinDuration() {
-            return measurements.stream().min(Long::compareTo).get();
+        public void log(long durationNanos) {
+            stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].record(durationNanos);
         }
 
-        public long getMaxDuration() {
-            return measurements.stream().max(Long::compareTo).get();
+        public void add(@NotNull LatencyHistogram durations) {
+            stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].add(durations);
         }
 
-        public long getMedianDuration() {
-            return Utils.calculateMedian(measurements);
+        /**
+         * @return all stripes merged into one histogram.
+         */
+        @NotNull
+        public LatencyHistogram snapshot() {
+            final LatencyHistogram result = new LatencyHistogram();
+            for (LatencyHistogram stripe : stripes) {
+                result.add(stripe);
+            }
+            return result;
         }
 
         @Override
@@ -102,19 +390,15 @@ public final class MeasureTime {
             return format();
         }
 
-        public int getCount() {
-            return measurements.size();
-        }
-
         @NotNull
         public String format() {
-            if (measurements.isEmpty()) {
+            final LatencyHistogram h = snapshot();
+            if (h.isEmpty()) {
                 return "N/A";
             }
-            if (measurements.size() == 1) {
-                return measurements.toString();
-            }
-            return "min=" + getMinDuration() + "/max=" + getMaxDuration() + "/avg=" + getAvgDuration() + "/median=" + getMedianDuration() + "/total=" + getTotalDuration() + "/count=" + getCount();
+            return "min=" + formatMs(h.getMin()) + "/p50=" + formatMs(h.getValueAtPercentile(50)) + "/p90=" + formatMs(h.getValueAtPercentile(90))
+                    + "/p99=" + formatMs(h.getValueAtPercentile(99)) + "/p99.9=" + formatMs(h.getValueAtPercentile(99.9)) + "/max=" + formatMs(h.getMax())
+                    + "/avg=" + formatMs(h.getMean()) + "/total=" + formatMs(h.getTotal()) + "/count=" + h.getCount();
         }
     }
 }
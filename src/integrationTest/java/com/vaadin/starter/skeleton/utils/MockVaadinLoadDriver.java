@@ -0,0 +1,183 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.MockVaadinServlet;
+import com.github.mvysny.kaributesting.v10.MockedUI;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.internal.CurrentInstance;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServlet;
+import com.vaadin.flow.server.VaadinSession;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An in-JVM counterpart of {@link ParallelPlaywright}: maintains a number of Vaadin sessions mocked by
+ * <a href="https://github.com/mvysny/karibu-testing">Karibu-Testing</a>'s {@link MockVaadin}, each with its own UI running the real views
+ * and services. There's no browser, no network and no servlet container, so the measured numbers are the pure server-side cost
+ * of an interaction; see {@link ServerCost}.
+ * <p></p>
+ * {@link MockVaadin} keeps the mocked session locked by the thread which set it up, and exposes it via thread-locals
+ * ({@link UI#getCurrent()} and friends). Every session is therefore pinned to one worker thread; a worker owns many sessions and switches
+ * between them by swapping the {@link CurrentInstance}s. Use about as many workers as there are CPU cores: more workers only
+ * add scheduling noise to the measurements.
+ * <p></p>
+ * When closed, this object will tear down all sessions and shut down all threads.
+ */
+public final class MockVaadinLoadDriver implements AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(MockVaadinLoadDriver.class);
+    @NotNull
+    private final Routes routes;
+    /**
+     * The number of sessions as given in the constructor.
+     */
+    private final int sessions;
+    /**
+     * Each worker is a single thread, owning the sessions at the same index in {@link #sessionsByWorker}.
+     */
+    @NotNull
+    private final List<ExecutorService> workers = new ArrayList<>();
+    @NotNull
+    private final List<List<MockSession>> sessionsByWorker = new ArrayList<>();
+
+    /**
+     * Creates the session manager. Don't forget to call {@link #initialize()} to set up the sessions.
+     * @param routes the routes, e.g. <code>new Routes().autoDiscoverViews("com.vaadin.starter.skeleton")</code>. Discover them once and reuse them:
+     *               the discovery is expensive.
+     * @param sessions the number of mocked sessions.
+     * @param workerThreads the number of worker threads, e.g. the number of CPU cores.
+     */
+    public MockVaadinLoadDriver(@NotNull Routes routes, int sessions, int workerThreads) {
+        this.routes = Objects.requireNonNull(routes);
+        this.sessions = sessions;
+        if (sessions < 1) {
+            throw new IllegalArgumentException("Parameter sessions: invalid value " + sessions + ": must be 1 or higher");
+        }
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("Parameter workerThreads: invalid value " + workerThreads + ": must be 1 or higher");
+        }
+        for (int i = 0; i < Math.min(sessions, workerThreads); i++) {
+            workers.add(Executors.newSingleThreadExecutor());
+            sessionsByWorker.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Sets up all sessions: every session gets a new UI navigated to the root route.
+     * <p></p>
+     * Every worker sets up a single servlet and its Vaadin service, shared by all sessions of the worker: {@link VaadinServlet#init}
+     * does nothing on an already initialized servlet, so {@link MockVaadin#setup(kotlin.jvm.functions.Function0, VaadinServlet)}
+     * only creates a new session and UI. The mocked servlet context is still created anew for every session, which is cheap.
+     */
+    public void initialize() {
+        final MeasureTime mt = new MeasureTime("Overall MockVaadin setup stats");
+        runInAllWorkersAndWait(worker -> {
+            final List<MockSession> owned = sessionsByWorker.get(worker);
+            final MockVaadinServlet servlet = new MockVaadinServlet(routes);
+            for (int i = worker; i < sessions; i += workers.size()) {
+                mt.start(System.nanoTime());
+                MockVaadin.setup(MockedUI::new, servlet);
+                owned.add(new MockSession());
+                // detach the session from this thread, so that the next setup doesn't touch it.
+                CurrentInstance.clearAll();
+                mt.log("Session setup");
+            }
+        });
+        log.info(sessions + " mocked sessions initialized over " + workers.size() + " threads: " + mt.format());
+    }
+
+    /**
+     * Runs given block once for every session. The sessions owned by the same worker run one after another, the workers run in parallel.
+     * While the block runs, its session is the current one: {@link UI#getCurrent()}, {@link VaadinSession#getCurrent()} and the Karibu
+     * functions such as <code>_get()</code> and <code>_click()</code> work as usual. Awaits until all blocks have
+     * finished their execution. If any of the blocks fail, this function fails too.
+     * @param testBlock the test block to run for all sessions.
+     */
+    public void runInAllSessionsAndWait(@NotNull Runnable testBlock) {
+        Objects.requireNonNull(testBlock);
+        runInAllWorkersAndWait(worker -> {
+            for (MockSession session : sessionsByWorker.get(worker)) {
+                session.run(testBlock);
+            }
+        });
+    }
+
+    private void runInAllWorkersAndWait(@NotNull WorkerTask task) {
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers.size(); i++) {
+            final int worker = i;
+            futures.add(workers.get(i).submit(() -> task.run(worker)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface WorkerTask {
+        void run(int worker);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            runInAllWorkersAndWait(worker -> {
+                for (MockSession session : sessionsByWorker.get(worker)) {
+                    session.run(MockVaadin::tearDown);
+                }
+                sessionsByWorker.get(worker).clear();
+            });
+        } finally {
+            for (ExecutorService worker : workers) {
+                new BetterExecutor(worker).close();
+            }
+        }
+    }
+
+    /**
+     * A single mocked session, captured right after {@link MockVaadin#setup(kotlin.jvm.functions.Function0, VaadinServlet)}. Only accessed by the owning worker thread.
+     */
+    private static final class MockSession {
+        @NotNull
+        private final Map<Class<?>, CurrentInstance> instances;
+        /**
+         * {@link CurrentInstance} only holds weak references; keep the session alive while it's detached from the thread.
+         */
+        @NotNull
+        private final List<Object> strongReferences;
+
+        MockSession() {
+            instances = CurrentInstance.getInstances();
+            strongReferences = Arrays.asList(UI.getCurrent(), VaadinSession.getCurrent(), VaadinService.getCurrent(),
+                    VaadinRequest.getCurrent(), VaadinResponse.getCurrent());
+        }
+
+        void run(@NotNull Runnable block) {
+            CurrentInstance.restoreInstances(instances);
+            try {
+                block.run();
+            } finally {
+                CurrentInstance.clearAll();
+            }
+        }
+    }
+}
@@ -4,23 +4,49 @@ import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.Playwright;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IntSummaryStatistics;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Maintains a thread pool, each thread having a Playwright instance available.
  * You can submit a test tasks as Runnables - the runnable will be run in parallel
  * in all threads.
  * <p></p>
+ * Every thread starts its own Playwright and its own Chromium, which costs roughly 256MB per user; the actual cost is logged
+ * by {@link #initialize()}, see {@link ProcessTreeStats}. Playwright isn't thread-safe, so users can't share a Playwright
+ * (and therefore a Chromium) without running one after another.
+ * <p></p>
+ * By default, a single failed iteration fails the whole run. Call {@link #setRecovery(Recovery)} to keep the run going instead:
+ * the failed iteration is counted by its {@link ErrorKind}, the browser recovers and goes on with the next iteration.
+ * <p></p>
  * When closed, this object will close all Playwrights and shutdown all threads.
  */
 public class ParallelPlaywright implements AutoCloseable {
@@ -38,8 +64,67 @@ public class ParallelPlaywright implements AutoCloseable {
      * The number of threads as given in the constructor.
      */
     private final int concurrentBrowsers;
+    /**
+     * All browsers are navigated to this URL; changed by {@link #reset(String)}.
+     */
+    @NotNull
+    private volatile String url;
+    /**
+     * How the browsers are launched and which assets they load.
+     */
+    @NotNull
+    private BrowserProfile browserProfile = BrowserProfile.DEFAULT;
+    /**
+     * Serves the static assets to all browsers, if the {@link #browserProfile} says so.
+     */
+    @NotNull
+    private final StaticAssetCache assetCache = new StaticAssetCache();
+    /**
+     * If true, every page collects the network timing of its UIDL requests.
+     */
+    private boolean uidlTiming = false;
+    /**
+     * If not null, limits the number of active users while the load generator is saturated.
+     */
+    @Nullable
+    private LoadGeneratorGovernor governor;
+    /**
+     * If not null, every page records the iterations and keeps those of the outliers.
+     */
+    @Nullable
+    private TailCapture tailCapture;
+    /**
+     * The default timeout of the Playwright actions and navigations; null to keep the Playwright default of 30 seconds.
+     */
+    @Nullable
+    private Duration stepTimeout;
+    /**
+     * What a browser does after one of its iterations failed.
+     */
+    @NotNull
+    private volatile Recovery recovery = Recovery.ABORT;
+    /**
+     * The number of iterations which failed and were recovered from, indexed by {@link ErrorKind#ordinal()}.
+     */
+    @NotNull
+    private final AtomicLongArray failures = new AtomicLongArray(ErrorKind.values().length);
+    /**
+     * The number of iterations run via {@link #runIteration(Runnable)}, failed or not.
+     */
     @NotNull
-    private final String url;
+    private final AtomicLong iterations = new AtomicLong();
+    /**
+     * The highest ratio of failed iterations a run may have, see {@link #runInAllBrowsersAndWait(Consumer)}.
+     */
+    private volatile double maxFailureRate = 0;
+    /**
+     * A browser whose iterations failed this many times in a row gives up and fails the run: the app is most likely broken.
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+    /**
+     * Only the first few failures of every kind are logged with the stack trace, to keep the log readable.
+     */
+    private static final int MAX_LOGGED_FAILURES = 3;
 
     /**
      * Creates the playwright browser manager. Don't forget to call {@link #initialize()} to create the browsers.
@@ -56,47 +141,585 @@ public class ParallelPlaywright implements AutoCloseable {
         executor = new BetterExecutor(Executors.newFixedThreadPool(concurrentBrowsers));
     }
 
+    /**
+     * Selects how the browsers are launched and which assets they load. Must be called before {@link #initialize()}.
+     * @param browserProfile the profile, {@link BrowserProfile#DEFAULT} by default.
+     */
+    public void setBrowserProfile(@NotNull BrowserProfile browserProfile) {
+        this.browserProfile = Objects.requireNonNull(browserProfile);
+    }
+
+    /**
+     * @return the cache of the static assets, used by the lean {@link BrowserProfile}s.
+     */
+    @NotNull
+    public StaticAssetCache getAssetCache() {
+        return assetCache;
+    }
+
+    /**
+     * If enabled, every page collects the browser-side network timing of the Vaadin UIDL requests, see {@link #getUidlTimings()}.
+     * Must be called before {@link #initialize()}.
+     * @param uidlTiming true to enable, false by default.
+     */
+    public void setUidlTiming(boolean uidlTiming) {
+        this.uidlTiming = uidlTiming;
+    }
+
+    /**
+     * Lets given governor limit the number of active users in {@link #runLoadProfile} while the load generator is saturated,
+     * according to the governor's policy. The other run modes don't consult the governor, see {@link LoadGeneratorGovernor}
+     * for why; there, a saturated generator is only visible in the governor's warnings and the invalid {@link WindowedMetrics} windows.
+     * @param governor the governor, null to remove.
+     */
+    public void setGovernor(@Nullable LoadGeneratorGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Captures a Playwright trace of the outlier iterations, see {@link TailCapture}. Must be called before {@link #initialize()}.
+     * The iterations are marked by {@link #runIteration(Runnable)}.
+     * @param tailCapture the capture, null to disable (the default).
+     */
+    public void setTailCapture(@Nullable TailCapture tailCapture) {
+        this.tailCapture = tailCapture;
+    }
+
+    /**
+     * Sets the default timeout of all Playwright actions and navigations, e.g. clicks and waiting for an element. An action which
+     * times out fails its step with {@link ErrorKind#TIMEOUT}, see {@link MeasureTime#step(String, Runnable)}. Must be called before {@link #initialize()}.
+     * @param stepTimeout the timeout, null to keep the Playwright default of 30 seconds.
+     */
+    public void setStepTimeout(@Nullable Duration stepTimeout) {
+        if (stepTimeout != null && (stepTimeout.isNegative() || stepTimeout.isZero())) {
+            throw new IllegalArgumentException("Parameter stepTimeout: invalid value " + stepTimeout + ": must be positive");
+        }
+        this.stepTimeout = stepTimeout;
+    }
+
+    /**
+     * Selects what a browser does after one of its iterations failed, see {@link #runIteration(Runnable)}.
+     * @param recovery the policy, {@link Recovery#ABORT} by default.
+     */
+    public void setRecovery(@NotNull Recovery recovery) {
+        this.recovery = Objects.requireNonNull(recovery);
+    }
+
+    /**
+     * Limits the failed iterations a run may recover from: if more than this ratio of the iterations of a run failed, the run fails
+     * once it's done, see {@link #runInAllBrowsersAndWait(Consumer)}. Otherwise a run where a third of the clicks time out would
+     * pass, only with a few extra failure series in the stats.
+     * @param maxFailureRate the ratio, between 0 and 1; 0 by default: every failure fails the run, but only after the run finishes.
+     */
+    public void setMaxFailureRate(double maxFailureRate) {
+        if (!(maxFailureRate >= 0 && maxFailureRate <= 1)) {
+            throw new IllegalArgumentException("Parameter maxFailureRate: invalid value " + maxFailureRate + ": must be between 0 and 1");
+        }
+        this.maxFailureRate = maxFailureRate;
+    }
+
+    /**
+     * @return the number of iterations which failed and were recovered from since the last {@link #reset(String)}, by kind;
+     * only the kinds which occurred.
+     */
+    @NotNull
+    public Map<ErrorKind, Long> getFailures() {
+        final Map<ErrorKind, Long> result = new EnumMap<>(ErrorKind.class);
+        for (ErrorKind kind : ErrorKind.values()) {
+            final long count = failures.get(kind.ordinal());
+            if (count > 0) {
+                result.put(kind, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs a single scenario iteration in the page owned by the current thread, marking the iteration for the {@link #setTailCapture(TailCapture) tail capture}:
+     * if the iteration turns out to be an outlier or fails, its trace is kept. Call from the test block, e.g. from {@link #runInAllBrowsersAndWait(Consumer)}.
+     * {@link #runAtFixedRate} and {@link #runVirtualUsers} mark their iterations themselves; nested calls only run the iteration.
+     * <p></p>
+     * If the iteration fails, the {@link #setRecovery(Recovery) recovery} policy applies: unless it's {@link Recovery#ABORT}, the failure is
+     * counted (see {@link #getFailures()}), the page recovers and false is returned. The failure is rethrown anyway if the page failed
+     * {@value #MAX_CONSECUTIVE_FAILURES} iterations in a row, or if the recovery itself failed.
+     * @param iteration the iteration, without think time.
+     * @return true if the iteration succeeded, false if it failed and the page recovered.
+     */
+    public boolean runIteration(@NotNull Runnable iteration) {
+        final PlaywrightAndPage playwright = playwrightThreadLocal.get();
+        if (playwright == null || playwright.inIteration) {
+            iteration.run();
+            return true;
+        }
+        final TailCapture.Recorder recorder = playwright.recorder;
+        final Recovery recovery = this.recovery;
+        iterations.incrementAndGet();
+        playwright.inIteration = true;
+        if (recorder != null) {
+            recorder.beginIteration();
+        }
+        ErrorKind.clearServerError();
+        Throwable failure = null;
+        try {
+            iteration.run();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            if (recovery == Recovery.ABORT || !(e instanceof RuntimeException || e instanceof AssertionError)) {
+                throw e;
+            }
+        } finally {
+            playwright.inIteration = false;
+            if (recorder != null) {
+                recorder.endIteration(failure);
+            }
+        }
+        if (failure == null) {
+            playwright.consecutiveFailures = 0;
+            return true;
+        }
+        recover(playwright, failure, recovery);
+        return false;
+    }
+
+    /**
+     * Counts the failed iteration and recovers the page according to given policy.
+     * @throws RuntimeException if the page failed too many iterations in a row, or if the recovery failed.
+     */
+    private void recover(@NotNull PlaywrightAndPage playwright, @NotNull Throwable failure, @NotNull Recovery recovery) {
+        // the 5xx responses seen by the steps have been forgotten; only those outside of the steps remain.
+        final ErrorKind kind = ErrorKind.classify(failure, ErrorKind.getServerError());
+        if (failures.incrementAndGet(kind.ordinal()) <= MAX_LOGGED_FAILURES) {
+            log.warn("Iteration failed (" + kind.label + "), recovering: " + recovery, failure);
+        }
+        if (++playwright.consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+            throw new IllegalStateException("The last " + MAX_CONSECUTIVE_FAILURES + " iterations of a browser failed, giving up", failure);
+        }
+        try {
+            switch (recovery) {
+                case NEW_SESSION:
+                    playwright.page.context().clearCookies();
+                    playwright.page.navigate(url);
+                    break;
+                case RENAVIGATE:
+                    playwright.page.navigate(url);
+                    break;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            e.addSuppressed(failure);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the UIDL network timing of the page owned by the current thread. Call from the test block,
+     * e.g. from {@link #runInAllBrowsersAndWait(Consumer)}.
+     * @return the timings, null if not enabled via {@link #setUidlTiming(boolean)}.
+     */
+    @Nullable
+    public UidlTimings getUidlTimings() {
+        final PlaywrightAndPage playwright = playwrightThreadLocal.get();
+        return playwright == null ? null : playwright.uidlTimings;
+    }
+
     /**
      * Creates the browsers. Might take a long time to execute.
+     * <p></p>
+     * Starting a browser goes through stages: the Playwright driver start, the browser launch,
+     * the page creation and the navigation. The CPU-heavy stages (the driver start and the browser launch) are each limited to half of
+     * the CPU cores; the rest are not limited. Since every stage has its own limit, the stages of different users overlap:
+     * while one user navigates, the next one launches its browser and another one starts its driver. Only the very first
+     * driver start runs alone, since it unpacks the driver on first use. The time spent in every stage, and waiting for it, is logged.
      */
     public void initialize() {
-        // Playwright warm-up
-        final MeasureTime mtWarmup = new MeasureTime("Playwright Warmup");
-        PlaywrightAndPage.create(mtWarmup, url).close();
-        log.info(mtWarmup.format());
-
-        // Warm-up succeeded, create the browsers en-masse.
         final int cpuCores = Runtime.getRuntime().availableProcessors();
-        final int permits = cpuCores / 2;
-        final int rate = permits < 1 ? 1 : permits;
-        final Semaphore playwrightInitSemaphore = new Semaphore(rate);
-        log.info("CPU cores: " + cpuCores + "; Playwright initialization rate limited to " + rate + " concurrent inits");
-        final MeasureTime mt = new MeasureTime("Overall Playwright stats");
+        final int permits = Math.max(1, cpuCores / 2);
+        log.info("CPU cores: " + cpuCores + "; driver starts and browser launches limited to " + permits + " concurrent each; browser profile "
+                + browserProfile);
+        final StartupPipeline pipeline = new StartupPipeline(new MeasureTime("Browser startup stages"), permits, browserProfile, assetCache);
+        final long start = System.nanoTime();
+        final AtomicInteger userIndex = new AtomicInteger();
         runInAllThreadsAndWait(() -> {
-            try {
-                playwrightInitSemaphore.acquire();
-                try {
-                    playwrightThreadLocal.set(PlaywrightAndPage.create(mt, url));
-                } finally {
-                    playwrightInitSemaphore.release();
+            final PlaywrightAndPage playwright = PlaywrightAndPage.create(pipeline, userIndex.getAndIncrement(), url);
+            if (uidlTiming) {
+                playwright.uidlTimings = new UidlTimings();
+                playwright.page.onRequestFinished(playwright.uidlTimings);
+            }
+            if (tailCapture != null) {
+                playwright.recorder = tailCapture.record(playwright.page);
+            }
+            if (stepTimeout != null) {
+                playwright.page.setDefaultTimeout(stepTimeout.toMillis());
+                playwright.page.setDefaultNavigationTimeout(stepTimeout.toMillis());
+            }
+            // the response events are dispatched in the thread which owns the page, while it waits for Playwright.
+            playwright.page.onResponse(response -> {
+                if (response.status() >= 500) {
+                    ErrorKind.serverErrorSeen(response.status() + " " + response.url());
                 }
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            });
+            playwrightThreadLocal.set(playwright);
+        });
+        log.info(concurrentBrowsers + " Playwright browsers initialized in " + Duration.ofNanos(System.nanoTime() - start).toMillis()
+                + "ms: " + pipeline.mt.format());
+        log.info(ProcessTreeStats.sample().format(concurrentBrowsers));
+        if (browserProfile != BrowserProfile.DEFAULT) {
+            log.info(assetCache.format());
+        }
+        if (tailCapture != null) {
+            log.info("Recording the iterations; keeping the outliers. " + tailCapture.format());
+        }
+        if (recovery != Recovery.ABORT || stepTimeout != null) {
+            log.info("Failed iterations: " + recovery + "; step timeout " + (stepTimeout == null ? "default" : stepTimeout.toMillis() + "ms"));
+        }
+    }
+
+    /**
+     * Every page leaves the app: it navigates to <code>about:blank</code>, which lets the Vaadin client close its UI on the server,
+     * and forgets its cookies and therefore its Vaadin session. The forgotten sessions stay on the server until they expire;
+     * close them via {@link ServerMetricsClient#closeSessions()} after this call, so that they don't overlap with the next test.
+     * The browsers no longer talk to the server until {@link #reset(String)}.
+     */
+    public void leave() {
+        final MeasureTime mt = new MeasureTime("Browser leave");
+        final long start = System.nanoTime();
+        runInAllThreadsAndWait(() -> {
+            final PlaywrightAndPage playwright = playwrightThreadLocal.get();
+            mt.start(System.nanoTime());
+            playwright.page.navigate("about:blank");
+            mt.log("Leave app");
+            playwright.page.context().clearCookies();
+            mt.log("Clear cookies");
+        });
+        log.info(concurrentBrowsers + " Playwright browsers left " + url + " in "
+                + Duration.ofNanos(System.nanoTime() - start).toMillis() + "ms: " + mt.format());
+    }
+
+    /**
+     * Prepares the browsers for another test without relaunching them: every page {@link #leave() leaves the app} and is navigated
+     * to given URL, starting a fresh Vaadin session. Call {@link #leave()} and {@link ServerMetricsClient#closeSessions()} first
+     * to get rid of the previous sessions, otherwise they stay on the server until they expire.
+     * <p></p>
+     * The pending UIDL timings are discarded, the {@link #getFailures() failure counts} are zeroed and
+     * the {@link #setGovernor(LoadGeneratorGovernor) governor} is removed. Much faster than closing this object and initializing a new one.
+     * @param url the URL to navigate all browsers to; also used by {@link #runVirtualUsers} from now on.
+     */
+    public void reset(@NotNull String url) {
+        this.url = Objects.requireNonNull(url);
+        governor = null;
+        for (int i = 0; i < failures.length(); i++) {
+            failures.set(i, 0);
+        }
+        final MeasureTime mt = new MeasureTime("Browser reset");
+        final long start = System.nanoTime();
+        runInAllThreadsAndWait(() -> {
+            final PlaywrightAndPage playwright = playwrightThreadLocal.get();
+            mt.start(System.nanoTime());
+            playwright.page.navigate("about:blank");
+            mt.log("Leave app");
+            playwright.page.context().clearCookies();
+            mt.log("Clear cookies");
+            playwright.page.navigate(url);
+            mt.log("Navigate");
+            if (playwright.uidlTimings != null) {
+                playwright.uidlTimings.clear();
             }
         });
-        log.info(concurrentBrowsers + " Playwright browsers initialized: " + mt.format());
+        log.info(concurrentBrowsers + " Playwright browsers reset to " + url + " in "
+                + Duration.ofNanos(System.nanoTime() - start).toMillis() + "ms: " + mt.format());
+    }
+
+    /**
+     * @return the number of browsers, as given in the constructor.
+     */
+    public int getConcurrentBrowsers() {
+        return concurrentBrowsers;
     }
 
     /**
      * Runs given block on all browsers in parallel. Awaits until all runnables have
-     * finished their execution. If any of the blocks fail, this function fails too.
+     * finished their execution. If any of the blocks fail, this function fails too; wrap every iteration in {@link #runIteration(Runnable)}
+     * to recover from failed iterations instead. The run fails anyway once it's done if more than the {@link #setMaxFailureRate(double) maximum
+     * failure rate} of its iterations failed.
      * @param testBlock the test block to run on all browsers, it receives the Playwright browser page already navigated to given URL.
      */
     public void runInAllBrowsersAndWait(@NotNull Consumer<Page> testBlock) {
+        final Map<ErrorKind, Long> failuresBefore = getFailures();
+        final long iterationsBefore = iterations.get();
         runInAllThreadsAndWait(() -> {
             final Page page = Objects.requireNonNull(playwrightThreadLocal.get().page);
             testBlock.accept(page);
         });
+        final Map<ErrorKind, Long> failed = getFailures();
+        failed.replaceAll((kind, count) -> count - failuresBefore.getOrDefault(kind, 0L));
+        failed.values().removeIf(count -> count == 0);
+        if (failed.isEmpty()) {
+            return;
+        }
+        final long failedCount = failed.values().stream().mapToLong(Long::longValue).sum();
+        final long iterationCount = iterations.get() - iterationsBefore;
+        final String summary = String.format(Locale.ROOT, "%d of %d iterations failed %s (%.1f%%), the maximum failure rate is %.1f%%",
+                failedCount, iterationCount, failed, failedCount * 100d / iterationCount, maxFailureRate * 100);
+        if (failedCount > maxFailureRate * iterationCount) {
+            throw new IllegalStateException(summary + "; see the failure series in the stats");
+        }
+        log.warn(summary + "; see the failure series in the stats");
+    }
+
+    /**
+     * Runs iterations at a fixed arrival rate (an open-model load), regardless of how fast the server responds.
+     * <p></p>
+     * A dispatcher thread schedules iteration starts at the target rate; every start is picked up by the next idle page.
+     * If no page is idle, the start waits in a backlog; if the backlog is full, the start is dropped: it's counted
+     * and recorded as the failure "Iteration (dropped)", so that it shows in the error rate.
+     * The latency of every iteration is measured from its <em>intended</em> start time rather than from the actual one, which corrects
+     * for coordinated omission: when the server slows down, the waiting time is included in the latency instead of being hidden.
+     * The first work item logged by <code>iteration</code> into <code>stats</code> is measured from the intended start as well.
+     * Additionally, the work items "Iteration (intended start)" and "Iteration (service time)" are recorded into <code>stats</code>;
+     * failed iterations are recorded as the failure "Iteration (failed)" instead, via {@link MeasureTime#record(String, long, ErrorKind)}; see also {@link #setRecovery(Recovery)}.
+     * <p></p>
+     * Awaits until all iterations finish. If any of the iterations fail, this function fails too, unless there's a {@link #setRecovery(Recovery) recovery}.
+     * @param iterationsPerSecond the target arrival rate, iterations per second across all browsers.
+     * @param duration for how long to generate the starts.
+     * @param maxBacklog the maximum number of starts waiting for an idle page, further starts are dropped.
+     * @param stats the iteration stats.
+     * @param iteration a single scenario iteration; receives the Playwright browser page, already navigated to the URL.
+     * @return the arrival stats, not null.
+     */
+    @NotNull
+    public ArrivalStats runAtFixedRate(double iterationsPerSecond, @NotNull Duration duration, int maxBacklog,
+                                       @NotNull MeasureTime stats, @NotNull Consumer<Page> iteration) {
+        if (!(iterationsPerSecond > 0)) {
+            throw new IllegalArgumentException("Parameter iterationsPerSecond: invalid value " + iterationsPerSecond + ": must be greater than 0");
+        }
+        if (maxBacklog < 1) {
+            throw new IllegalArgumentException("Parameter maxBacklog: invalid value " + maxBacklog + ": must be 1 or higher");
+        }
+        final long intervalNanos = (long) (1_000_000_000d / iterationsPerSecond);
+        final int scheduled = (int) (duration.toNanos() / intervalNanos);
+        final ArrivalStats arrivalStats = new ArrivalStats(iterationsPerSecond, scheduled);
+        final BlockingQueue<Long> backlog = new ArrayBlockingQueue<>(maxBacklog);
+        final AtomicBoolean dispatching = new AtomicBoolean(true);
+        final Thread dispatcher = new Thread(() -> {
+            try {
+                final long firstStart = System.nanoTime();
+                for (int i = 0; i < scheduled && !Thread.currentThread().isInterrupted(); i++) {
+                    final long intendedStart = firstStart + i * intervalNanos;
+                    long wait;
+                    while ((wait = intendedStart - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                        if (Thread.currentThread().isInterrupted()) {
+                            // parkNanos returns immediately while interrupted.
+                            return;
+                        }
+                    }
+                    if (!backlog.offer(intendedStart)) {
+                        arrivalStats.dropped.incrementAndGet();
+                        stats.record("Iteration", 0, ErrorKind.DROPPED);
+                    }
+                    arrivalStats.maxBacklog.accumulateAndGet(backlog.size(), Math::max);
+                }
+            } finally {
+                dispatching.set(false);
+            }
+        }, "arrival-rate-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        try {
+            runInAllBrowsersAndWait(page -> {
+                try {
+                    while (dispatching.get() || !backlog.isEmpty()) {
+                        final Long intendedStart = backlog.poll(50, TimeUnit.MILLISECONDS);
+                        if (intendedStart == null) {
+                            continue;
+                        }
+                        final long actualStart = System.nanoTime();
+                        arrivalStats.started.incrementAndGet();
+                        arrivalStats.startLag.record(actualStart - intendedStart);
+                        stats.start(intendedStart);
+                        if (runIteration(() -> iteration.accept(page))) {
+                            final long end = System.nanoTime();
+                            stats.record("Iteration (intended start)", end - intendedStart);
+                            stats.record("Iteration (service time)", end - actualStart);
+                            arrivalStats.completed.incrementAndGet();
+                        } else {
+                            // includes the recovery: the page was busy with it.
+                            stats.record("Iteration", System.nanoTime() - intendedStart, ErrorKind.OTHER);
+                            arrivalStats.failed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            dispatcher.interrupt();
+            arrivalStats.finish();
+        }
+        return arrivalStats;
+    }
+
+    /**
+     * Runs given load profile: the number of active users follows the profile, users are added and retired while the run is live.
+     * An active user repeatedly runs the iteration; a retired user finishes its current iteration and then idles. Users are
+     * activated in a fixed order, so that the first user is the last one to be retired.
+     * <p></p>
+     * The users come and go on the server too. A retired user leaves the app: its page navigates to <code>about:blank</code>, which
+     * lets the Vaadin client close its UI on the server, and forgets its cookies; this is logged as "Retire user". An activated user
+     * which isn't in the app starts a new Vaadin session: its cookies are cleared and the page is navigated to the URL; this is logged
+     * as "Activate user". The sessions of the retired users stay on the server without UIs until they expire. If a {@link #setGovernor(LoadGeneratorGovernor) governor}
+     * is set, it may keep the number of active users below the profile while the load generator is saturated.
+     * <p></p>
+     * The samples are tagged with the phase the iteration started in: every phase has its own {@link MeasureTime}, which
+     * is passed to the iteration. Awaits until the profile finishes. If any of the iterations fail, this function fails too,
+     * unless they're wrapped in {@link #runIteration(Runnable)} and there's a {@link #setRecovery(Recovery) recovery}.
+     * @param profile the load profile; its maximum number of users must not exceed the number of browsers.
+     * @param statsByPhase maps phase name to the stats of that phase, see {@link LoadProfile#newPhaseStats()}.
+     * @param iteration a single scenario iteration including any think time; receives the Playwright browser page
+     *                  and the stats of the current phase. Wrap the iteration itself, without the think time, in {@link #runIteration(Runnable)}
+     *                  to enable the {@link #setTailCapture(TailCapture) tail capture}.
+     */
+    public void runLoadProfile(@NotNull LoadProfile profile, @NotNull Map<String, MeasureTime> statsByPhase, @NotNull BiConsumer<Page, MeasureTime> iteration) {
+        if (profile.getMaxUsers() > concurrentBrowsers) {
+            throw new IllegalArgumentException("Parameter profile: needs " + profile.getMaxUsers() + " users but only " + concurrentBrowsers + " browsers are available");
+        }
+        for (LoadProfile.Phase phase : profile.getPhases()) {
+            if (!statsByPhase.containsKey(phase.name)) {
+                throw new IllegalArgumentException("Parameter statsByPhase: no stats for phase " + phase.name);
+            }
+        }
+        final AtomicInteger userIndex = new AtomicInteger();
+        final long start = System.nanoTime();
+        final ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> {
+            final long elapsed = System.nanoTime() - start;
+            log.info("Load profile: phase " + profile.phaseAt(elapsed) + ", " + profile.usersAt(elapsed) + " active users");
+        }, 0, 10, TimeUnit.SECONDS);
+        try {
+            runInAllBrowsersAndWait(page -> {
+                final int index = userIndex.getAndIncrement();
+                // the page was navigated to the URL by initialize() or reset().
+                boolean inApp = true;
+                while (true) {
+                    final long elapsed = System.nanoTime() - start;
+                    final LoadProfile.Phase phase = profile.phaseAt(elapsed);
+                    if (phase == null) {
+                        break;
+                    }
+                    final MeasureTime stats = statsByPhase.get(phase.name);
+                    final int targetUsers = profile.usersAt(elapsed);
+                    if (index >= (governor == null ? targetUsers : governor.limitUsers(targetUsers))) {
+                        if (inApp) {
+                            stats.start(System.nanoTime());
+                            page.navigate("about:blank");
+                            page.context().clearCookies();
+                            stats.log("Retire user");
+                            inApp = false;
+                        }
+                        Utils.sleep(100L);
+                        continue;
+                    }
+                    if (!inApp) {
+                        stats.start(System.nanoTime());
+                        page.context().clearCookies();
+                        page.navigate(url);
+                        stats.log("Activate user");
+                        final UidlTimings uidlTimings = getUidlTimings();
+                        if (uidlTimings != null) {
+                            // the bootstrap of the new session isn't part of the iteration.
+                            uidlTimings.clear();
+                        }
+                        inApp = true;
+                    }
+                    stats.start(System.nanoTime());
+                    iteration.accept(page, stats);
+                }
+            });
+        } finally {
+            progress.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs given number of virtual users, multiplexed over the browser pages. Every virtual user has its own cookies and therefore
+     * its own Vaadin session, but only occupies a page while it acts: then it thinks for <code>thinkTime</code> without blocking
+     * a page or a thread. That way, many mostly-idle users can be modelled with only as many browsers as there are concurrently active users.
+     * <p></p>
+     * When a user is attached to a page previously used by another user, the page is first navigated to <code>about:blank</code>: the unload
+     * lets the Vaadin client close the previous user's UI right away, instead of leaving it on the server until the heartbeat expires.
+     * This is logged as "Detach virtual user". Then the page's cookies are replaced with the user's cookies and the page is re-navigated to
+     * the URL, which bootstraps a new UI in the user's session; this is logged as "Attach virtual user". A virtual user therefore doesn't
+     * keep one long-lived UI: every attach costs a bootstrap, which shows up in "Attach virtual user" rather than in the iteration steps.
+     * The time a user waited for an idle page after its think time has elapsed is recorded as "Virtual user wake-up lag":
+     * if this grows, more browsers are needed.
+     * <p></p>
+     * Awaits until the duration elapses and all iterations in progress finish. If any of the iterations fail, this function fails too,
+     * unless there's a {@link #setRecovery(Recovery) recovery}; only the successful iterations count towards {@link VirtualUser#getIterations()}.
+     * @param virtualUsers the number of virtual users, may be much higher than the number of browsers.
+     * @param thinkTime how long every user thinks between iterations.
+     * @param duration how long to run.
+     * @param stats the iteration stats.
+     * @param iteration a single scenario iteration without think time; receives the page the user is attached to, and the user.
+     * @return the virtual users, e.g. to check how many iterations they performed.
+     */
+    @NotNull
+    public List<VirtualUser> runVirtualUsers(int virtualUsers, @NotNull Duration thinkTime, @NotNull Duration duration,
+                                             @NotNull MeasureTime stats, @NotNull BiConsumer<Page, VirtualUser> iteration) {
+        if (virtualUsers < 1) {
+            throw new IllegalArgumentException("Parameter virtualUsers: invalid value " + virtualUsers + ": must be 1 or higher");
+        }
+        final long thinkTimeNanos = thinkTime.toNanos();
+        final long start = System.nanoTime();
+        final long deadline = start + duration.toNanos();
+        final DelayQueue<VirtualUser> thinking = new DelayQueue<>();
+        final List<VirtualUser> users = new ArrayList<>(virtualUsers);
+        for (int i = 0; i < virtualUsers; i++) {
+            // spread the first wake-ups evenly over the think time, to avoid a thundering herd.
+            final VirtualUser user = new VirtualUser(i, start + thinkTimeNanos * i / virtualUsers);
+            users.add(user);
+            thinking.add(user);
+        }
+        runInAllBrowsersAndWait(page -> {
+            VirtualUser attachedUser = null;
+            try {
+                while (System.nanoTime() < deadline) {
+                    final VirtualUser user = thinking.poll(100, TimeUnit.MILLISECONDS);
+                    if (user == null) {
+                        continue;
+                    }
+                    final long now = System.nanoTime();
+                    stats.record("Virtual user wake-up lag", now - user.wakeAt);
+                    stats.start(now);
+                    if (attachedUser != user) {
+                        if (attachedUser != null) {
+                            page.navigate("about:blank");
+                            stats.log("Detach virtual user");
+                        }
+                        page.context().clearCookies();
+                        if (!user.cookies.isEmpty()) {
+                            page.context().addCookies(user.cookies);
+                        }
+                        page.navigate(url);
+                        stats.log("Attach virtual user");
+                        attachedUser = user;
+                    }
+                    final VirtualUser currentUser = user;
+                    if (runIteration(() -> iteration.accept(page, currentUser))) {
+                        user.iterationDone();
+                    }
+                    user.cookies = page.context().cookies();
+                    user.wakeAt = System.nanoTime() + thinkTimeNanos;
+                    thinking.add(user);
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        final IntSummaryStatistics iterations = users.stream().mapToInt(VirtualUser::getIterations).summaryStatistics();
+        log.info(virtualUsers + " virtual users over " + concurrentBrowsers + " browsers: " + iterations.getSum()
+                + " iterations, per user min=" + iterations.getMin() + "/max=" + iterations.getMax() + "/avg=" + iterations.getAverage());
+        return users;
     }
 
     /**
@@ -143,25 +766,43 @@ public class ParallelPlaywright implements AutoCloseable {
         public final Playwright playwright;
         @NotNull
         public final Page page;
+        /**
+         * Not null if {@link #uidlTiming} is enabled.
+         */
+        @Nullable
+        public UidlTimings uidlTimings;
+        /**
+         * Not null if the {@link #tailCapture} is enabled.
+         */
+        @Nullable
+        public TailCapture.Recorder recorder;
+        /**
+         * True while {@link #runIteration(Runnable)} runs an iteration in this page.
+         */
+        public boolean inIteration;
+        /**
+         * The number of iterations which failed in a row in this page.
+         */
+        public int consecutiveFailures;
 
         private PlaywrightAndPage(@NotNull Playwright playwright, @NotNull Page page) {
             this.playwright = playwright;
             this.page = page;
         }
 
+        /**
+         * Starts a new Playwright and launches a new Chromium for it.
+         */
         @NotNull
-        public static PlaywrightAndPage create(@NotNull MeasureTime mt, @NotNull String url) {
-            mt.log("waiting");
-            final Playwright pw = Playwright.create();
-            mt.log("Playwright Init");
+        public static PlaywrightAndPage create(@NotNull StartupPipeline pipeline, int userIndex, @NotNull String url) {
+            final Playwright pw = pipeline.startDriver(userIndex);
             boolean initialized = false;
             try {
-                final Browser browser = pw.chromium().launch();
-                mt.log("Browser Launch");
-                final Page page = browser.newPage();
-                mt.log("New Page");
-                page.navigate(url);
-                mt.log("Navigate");
+                final Browser browser = pipeline.stage("Browser Launch", pipeline.browserLaunch,
+                        () -> pw.chromium().launch(pipeline.profile.launchOptions()));
+                final Page page = pipeline.stage("New Page", null, () -> browser.newPage(pipeline.profile.newPageOptions()));
+                pipeline.profile.install(page, pipeline.assetCache);
+                pipeline.stage("Navigate", null, () -> page.navigate(url));
                 initialized = true;
                 return new PlaywrightAndPage(pw, page);
             } finally {
@@ -180,4 +821,79 @@ public class ParallelPlaywright implements AutoCloseable {
             playwright.close();
         }
     }
+
+    /**
+     * The stages of {@link #initialize()}. Every stage may have its own concurrency limit; the time spent waiting for the limit
+     * is logged as "&lt;stage&gt; (queued)", the time spent in the stage as "&lt;stage&gt;".
+     */
+    private static final class StartupPipeline {
+        @NotNull
+        final MeasureTime mt;
+        @NotNull
+        final Semaphore driverStart;
+        @NotNull
+        final Semaphore browserLaunch;
+        @NotNull
+        final BrowserProfile profile;
+        @NotNull
+        final StaticAssetCache assetCache;
+        /**
+         * Released once the first driver has started (or failed to start).
+         */
+        @NotNull
+        private final CountDownLatch firstDriverStarted = new CountDownLatch(1);
+
+        StartupPipeline(@NotNull MeasureTime mt, int permits, @NotNull BrowserProfile profile, @NotNull StaticAssetCache assetCache) {
+            this.mt = Objects.requireNonNull(mt);
+            this.profile = Objects.requireNonNull(profile);
+            this.assetCache = Objects.requireNonNull(assetCache);
+            driverStart = new Semaphore(permits);
+            browserLaunch = new Semaphore(permits);
+        }
+
+        /**
+         * Starts the Playwright driver. The first user starts its driver alone: that unpacks the driver and,
+         * if necessary, downloads the browsers. All others wait for it.
+         */
+        @NotNull
+        Playwright startDriver(int userIndex) {
+            if (userIndex == 0) {
+                try {
+                    return stage("Playwright Init", driverStart, Playwright::create);
+                } finally {
+                    firstDriverStarted.countDown();
+                }
+            }
+            try {
+                firstDriverStarted.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return stage("Playwright Init", driverStart, Playwright::create);
+        }
+
+        /**
+         * Runs a stage.
+         * @param name the stage name.
+         * @param limit limits the number of users in this stage at the same time; null for no limit.
+         * @param work the stage itself.
+         * @return whatever the stage produced.
+         */
+        <T> T stage(@NotNull String name, @Nullable Semaphore limit, @NotNull Supplier<T> work) {
+            mt.start(System.nanoTime());
+            if (limit != null) {
+                limit.acquireUninterruptibly();
+            }
+            try {
+                mt.log(name + " (queued)");
+                final T result = work.get();
+                mt.log(name);
+                return result;
+            } finally {
+                if (limit != null) {
+                    limit.release();
+                }
+            }
+        }
+    }
 }
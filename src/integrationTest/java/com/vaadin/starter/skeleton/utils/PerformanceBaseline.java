@@ -0,0 +1,269 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A performance regression gate: compares the stats of a test with a stored baseline, and fails the test if a work item got
+ * significantly slower.
+ * <p></p>
+ * The baselines are stored in <code>perf-baselines/&lt;scenario&gt;.json</code>, one file per scenario, holding the full duration histogram
+ * of every work item; commit them along with the code. Every work item is checked for:
+ * <ul>
+ *     <li>p50: the candidate's median is more than the tolerance above the baseline's, and the one-sided Mann-Whitney U test says the whole
+ *     distribution shifted towards slower, at the significance level;</li>
+ *     <li>p99: the confidence interval of the candidate's p99 lies entirely above the confidence interval of the baseline's p99 plus the tolerance;</li>
+ *     <li>throughput: the rate of the work item dropped by more than the tolerance, and the drop is significant (Poisson rate test).</li>
+ * </ul>
+ * Work items with fewer than {@value #MIN_SAMPLES} samples, the {@link WarmUp warm-up} series, the {@value #THINK_TIME} series (the think time
+ * of the scenario, not the app's) and the failure series (e.g. <code>Button click (timeout)</code>) are reported but not checked; the failures are limited by {@link ParallelPlaywright#setMaxFailureRate(double)} instead. Configure via system properties:
+ * <ul>
+ *     <li><code>perf.baseline</code>: <code>compare</code> (the default) compares with the baseline, and fails if there's none;
+ *     <code>record</code> writes the baseline from this run, the only mode which does; <code>off</code> does nothing;</li>
+ *     <li><code>perf.baseline.tolerance</code>: the relative change considered noise, 0.1 (10%) by default;</li>
+ *     <li><code>perf.baseline.alpha</code>: the significance level of the tests, 0.01 by default.</li>
+ * </ul>
+ * The results of every run go to <code>build/perf/&lt;scenario&gt;.results.json</code>, in the baseline format; the diff report
+ * to <code>build/perf/&lt;scenario&gt;.baseline-diff.txt</code>. Baselines are only comparable on the same machine with the same
+ * number of browsers; a warning is logged if the host differs.
+ */
+public final class PerformanceBaseline {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(PerformanceBaseline.class);
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Work items with fewer samples are not checked.
+     */
+    static final int MIN_SAMPLES = 20;
+    /**
+     * The work item the scenarios log their think time into; it measures <code>Thread.sleep()</code>, not the app.
+     */
+    @NotNull
+    static final String THINK_TIME = "Sleep";
+    @NotNull
+    private static final Path BASELINE_DIR = Path.of("perf-baselines");
+    @NotNull
+    private static final Path RESULTS_DIR = Path.of("build", "perf");
+    @NotNull
+    private static final String MODE = System.getProperty("perf.baseline", "compare");
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("perf.baseline.tolerance", "0.1"));
+    private static final double ALPHA = Double.parseDouble(System.getProperty("perf.baseline.alpha", "0.01"));
+
+    private PerformanceBaseline() {
+    }
+
+    /**
+     * Compares given stats with the baseline of given scenario, according to <code>perf.baseline</code>. Fails the test on a regression,
+     * with a per-step diff report.
+     * @param scenario the scenario name, e.g. <code>closed-model</code>; the name of the baseline file.
+     * @param stats the stats of the run. If there are several (e.g. one per load profile phase), the work items are
+     *              prefixed by the name of their stats.
+     */
+    public static void verify(@NotNull String scenario, @NotNull MeasureTime... stats) {
+        if (MODE.equals("off")) {
+            return;
+        }
+        if (!MODE.equals("compare") && !MODE.equals("record")) {
+            throw new IllegalArgumentException("perf.baseline: invalid value " + MODE + ": expected compare, record or off");
+        }
+        final JsonObject results = toJson(scenario, stats);
+        final Path baselineFile = BASELINE_DIR.resolve(scenario + ".json");
+        write(RESULTS_DIR.resolve(scenario + ".results.json"), results);
+        if (MODE.equals("record")) {
+            write(baselineFile, results);
+            log.info("Recorded the performance baseline of " + scenario + " into " + baselineFile);
+            return;
+        }
+        if (!Files.exists(baselineFile)) {
+            Assertions.fail("No performance baseline of " + scenario + ": " + baselineFile.toAbsolutePath() + " doesn't exist. Record it via -Dperf.baseline=record"
+                    + " on the machine the gate runs on and commit it, or disable the gate via -Dperf.baseline=off");
+        }
+        final JsonObject baseline = read(baselineFile);
+        if (baseline.get("version").getAsInt() != FORMAT_VERSION) {
+            throw new IllegalStateException(baselineFile + ": unsupported version " + baseline.get("version") + "; re-record via -Dperf.baseline=record");
+        }
+        if (!baseline.get("host").equals(results.get("host"))) {
+            log.warn("The baseline of " + scenario + " was recorded on " + baseline.get("host") + ", this is " + results.get("host")
+                    + ": the numbers may not be comparable");
+        }
+        final Comparison comparison = new Comparison(scenario, baseline.getAsJsonObject("items"), results.getAsJsonObject("items"));
+        final String report = comparison.format();
+        writeString(RESULTS_DIR.resolve(scenario + ".baseline-diff.txt"), report);
+        if (comparison.regressions > 0) {
+            Assertions.fail(report);
+        }
+        log.info(report);
+    }
+
+    @NotNull
+    static JsonObject toJson(@NotNull String scenario, @NotNull MeasureTime... stats) {
+        final JsonObject items = new JsonObject();
+        for (MeasureTime s : stats) {
+            // the throughput of the steady-state series is measured over the steady state only.
+            final double elapsedSeconds = s.getSteadyStateElapsedNanos() / 1_000_000_000d;
+            for (String workItemName : s.getWorkItemNames()) {
+                final JsonObject item = new JsonObject();
+                item.addProperty("elapsedSeconds", elapsedSeconds);
+                item.addProperty("histogram", s.snapshot(workItemName).encode());
+                items.add(stats.length == 1 ? workItemName : s.getName() + ": " + workItemName, item);
+            }
+        }
+        final JsonObject result = new JsonObject();
+        result.addProperty("version", FORMAT_VERSION);
+        result.addProperty("scenario", scenario);
+        result.addProperty("recordedAt", Instant.now().toString());
+        result.addProperty("host", hostName());
+        result.addProperty("cpuCores", Runtime.getRuntime().availableProcessors());
+        result.add("items", items);
+        return result;
+    }
+
+    /**
+     * Compares the work items of a baseline and a candidate run.
+     */
+    static final class Comparison {
+        @NotNull
+        private final String scenario;
+        @NotNull
+        private final StringBuilder report = new StringBuilder();
+        int regressions = 0;
+
+        Comparison(@NotNull String scenario, @NotNull JsonObject baseline, @NotNull JsonObject candidate) {
+            this.scenario = scenario;
+            final double z = HistogramStatistics.normalQuantile(ALPHA);
+            final TreeSet<String> names = new TreeSet<>(baseline.keySet());
+            names.addAll(candidate.keySet());
+            for (String name : names) {
+                if (ErrorKind.ofSeriesName(name) != null) {
+                    // the failures are limited by the maximum failure rate of the run, see ParallelPlaywright.setMaxFailureRate().
+                    report.append(String.format(Locale.ROOT, "  %-40s %d failures, not checked\n", name,
+                            candidate.has(name) ? LatencyHistogram.decode(candidate.getAsJsonObject(name).get("histogram").getAsString()).getCount() : 0));
+                } else if (isThinkTime(name)) {
+                    report.append(String.format(Locale.ROOT, "  %-40s think time, not checked\n", name));
+                } else if (!candidate.has(name)) {
+                    report.append(String.format(Locale.ROOT, "  %-40s missing in this run\n", name));
+                } else if (!baseline.has(name)) {
+                    report.append(String.format(Locale.ROOT, "  %-40s new, not in the baseline\n", name));
+                } else if (name.endsWith(" (warm-up)")) {
+                    // the length of the warm-up varies from run to run, and so does the number of the warm-up samples.
+                    report.append(String.format(Locale.ROOT, "  %-40s warm-up, not checked\n", name));
+                } else {
+                    compare(name, baseline.getAsJsonObject(name), candidate.getAsJsonObject(name), z);
+                }
+            }
+        }
+
+        private void compare(@NotNull String name, @NotNull JsonObject baseline, @NotNull JsonObject candidate, double z) {
+            final LatencyHistogram b = LatencyHistogram.decode(baseline.get("histogram").getAsString());
+            final LatencyHistogram c = LatencyHistogram.decode(candidate.get("histogram").getAsString());
+            if (b.getCount() < MIN_SAMPLES || c.getCount() < MIN_SAMPLES) {
+                report.append(String.format(Locale.ROOT, "  %-40s too few samples (%d vs %d), not checked\n", name, b.getCount(), c.getCount()));
+                return;
+            }
+            final Map<String, String> problems = new TreeMap<>();
+
+            final long bP50 = b.getValueAtPercentile(50);
+            final long cP50 = c.getValueAtPercentile(50);
+            final double mannWhitney = HistogramStatistics.mannWhitneyPValue(b, c);
+            if (cP50 > bP50 * (1 + TOLERANCE) && mannWhitney < ALPHA) {
+                problems.put("p50", "p50 regressed");
+            }
+
+            final long[] bP99 = HistogramStatistics.percentileInterval(b, 99, z);
+            final long[] cP99 = HistogramStatistics.percentileInterval(c, 99, z);
+            if (cP99[0] > bP99[1] * (1 + TOLERANCE)) {
+                problems.put("p99", "p99 regressed");
+            }
+
+            final double bSeconds = baseline.get("elapsedSeconds").getAsDouble();
+            final double cSeconds = candidate.get("elapsedSeconds").getAsDouble();
+            final double bRate = b.getCount() / bSeconds;
+            final double cRate = c.getCount() / cSeconds;
+            if (cRate < bRate * (1 - TOLERANCE) && HistogramStatistics.rateDecreasePValue(b.getCount(), bSeconds, c.getCount(), cSeconds) < ALPHA) {
+                problems.put("throughput", "throughput regressed");
+            }
+
+            if (!problems.isEmpty()) {
+                regressions++;
+            }
+            report.append(String.format(Locale.ROOT, "%s %-40s %s\n", problems.isEmpty() ? " " : "!", name,
+                    problems.isEmpty() ? "ok" : String.join(", ", problems.values())));
+            report.append(String.format(Locale.ROOT, "      p50 %sms -> %sms (%+.1f%%), Mann-Whitney p=%.4f, P(slower)=%.2f\n",
+                    MeasureTime.formatMs(bP50), MeasureTime.formatMs(cP50), change(bP50, cP50), mannWhitney,
+                    HistogramStatistics.probabilityOfSlower(b, c)));
+            report.append(String.format(Locale.ROOT, "      p99 %sms [%s..%s] -> %sms [%s..%s] (%+.1f%%)\n",
+                    MeasureTime.formatMs(b.getValueAtPercentile(99)), MeasureTime.formatMs(bP99[0]), MeasureTime.formatMs(bP99[1]),
+                    MeasureTime.formatMs(c.getValueAtPercentile(99)), MeasureTime.formatMs(cP99[0]), MeasureTime.formatMs(cP99[1]),
+                    change(b.getValueAtPercentile(99), c.getValueAtPercentile(99))));
+            report.append(String.format(Locale.ROOT, "      throughput %.2f/s -> %.2f/s (%+.1f%%), samples %d -> %d\n",
+                    bRate, cRate, change(bRate, cRate), b.getCount(), c.getCount()));
+        }
+
+        /**
+         * @param name the series name, e.g. <code>Sleep</code>, <code>Sleep (warm-up)</code> or <code>Phase 1: Sleep</code>.
+         */
+        private static boolean isThinkTime(@NotNull String name) {
+            final String workItemName = name.endsWith(" (warm-up)") ? name.substring(0, name.length() - " (warm-up)".length()) : name;
+            return workItemName.equals(THINK_TIME) || workItemName.endsWith(": " + THINK_TIME);
+        }
+
+        private static double change(double baseline, double candidate) {
+            return baseline == 0 ? 0 : (candidate - baseline) / baseline * 100;
+        }
+
+        @NotNull
+        String format() {
+            return "Performance baseline " + scenario + ": " + (regressions == 0 ? "no regressions" : regressions + " work items regressed")
+                    + String.format(Locale.ROOT, " (tolerance %.0f%%, alpha %s)\n", TOLERANCE * 100, ALPHA) + report;
+        }
+    }
+
+    @NotNull
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    @NotNull
+    static JsonObject read(@NotNull Path file) {
+        try {
+            return JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void write(@NotNull Path file, @NotNull JsonObject json) {
+        writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(json) + "\n");
+    }
+
+    private static void writeString(@NotNull Path file, @NotNull String contents) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, contents, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
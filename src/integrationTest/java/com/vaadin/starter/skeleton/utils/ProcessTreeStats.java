@@ -0,0 +1,162 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A snapshot of the resident memory and the CPU time used by this JVM and all of its descendant processes
+ * (the Playwright drivers and the Chromium processes). Only works on Linux since the numbers are
+ * read from <code>/proc</code>; on other OSes all numbers are zero.
+ * <p></p>
+ * Both RSS and PSS are collected. RSS counts shared pages (e.g. Chromium's shared libraries) once
+ * per process and therefore over-estimates the real cost of running many browsers; PSS divides shared
+ * pages evenly among the processes sharing them, and is therefore the number to look at.
+ * <p></p>
+ * The CPU time only includes the processes alive at the time of the snapshot; compare two snapshots via {@link #minus(ProcessTreeStats)}
+ * to obtain the CPU time spent in between.
+ */
+public final class ProcessTreeStats {
+    /**
+     * The number of descendant processes.
+     */
+    public final int processes;
+    /**
+     * The RSS of this JVM, in bytes.
+     */
+    public final long jvmRss;
+    /**
+     * The summed RSS of all descendant processes, in bytes.
+     */
+    public final long childrenRss;
+    /**
+     * The summed PSS of all descendant processes, in bytes. Equals to {@link #childrenRss} if PSS is not available.
+     */
+    public final long childrenPss;
+    /**
+     * The summed user+system CPU time of all descendant processes, in nanoseconds.
+     */
+    public final long childrenCpuNanos;
+    /**
+     * The CPU time of the processes is counted in clock ticks; <code>USER_HZ</code> is 100 on all common Linux platforms.
+     */
+    private static final long NANOS_PER_TICK = 10_000_000;
+
+    private ProcessTreeStats(int processes, long jvmRss, long childrenRss, long childrenPss, long childrenCpuNanos) {
+        this.processes = processes;
+        this.jvmRss = jvmRss;
+        this.childrenRss = childrenRss;
+        this.childrenPss = childrenPss;
+        this.childrenCpuNanos = childrenCpuNanos;
+    }
+
+    /**
+     * Samples the memory of this JVM and all of its descendant processes.
+     * @return the snapshot, not null.
+     */
+    @NotNull
+    public static ProcessTreeStats sample() {
+        final List<ProcessHandle> children = ProcessHandle.current().descendants().toList();
+        long rss = 0;
+        long pss = 0;
+        long cpu = 0;
+        for (ProcessHandle child : children) {
+            final long childRss = readRss(child.pid());
+            rss += childRss;
+            final long childPss = readPss(child.pid());
+            pss += childPss < 0 ? childRss : childPss;
+            cpu += readCpuNanos(child.pid());
+        }
+        return new ProcessTreeStats(children.size(), readRss(ProcessHandle.current().pid()), rss, pss, cpu);
+    }
+
+    /**
+     * The difference between this snapshot and an earlier one, e.g. to isolate the cost of browsers launched in between
+     * from browsers which were already running.
+     * @param earlier the earlier snapshot.
+     * @return the difference; the JVM RSS is the one of this snapshot.
+     */
+    @NotNull
+    public ProcessTreeStats minus(@NotNull ProcessTreeStats earlier) {
+        return new ProcessTreeStats(processes - earlier.processes, jvmRss, childrenRss - earlier.childrenRss,
+                childrenPss - earlier.childrenPss, childrenCpuNanos - earlier.childrenCpuNanos);
+    }
+
+    /**
+     * Formats the memory stats, including the per-virtual-user cost.
+     * @param virtualUsers the number of virtual users (pages) currently alive.
+     * @return a nicely formatted string.
+     */
+    @NotNull
+    public String format(int virtualUsers) {
+        final int users = Math.max(1, virtualUsers);
+        return "Load generator memory: " + processes + " child processes, RSS=" + mb(childrenRss) + "MB, PSS=" + mb(childrenPss)
+                + "MB, JVM RSS=" + mb(jvmRss) + "MB, CPU=" + childrenCpuNanos / 1_000_000 + "ms; per virtual user (" + virtualUsers + "): RSS="
+                + mb(childrenRss / users) + "MB, PSS=" + mb(childrenPss / users) + "MB, PSS incl. JVM=" + mb((childrenPss + jvmRss) / users)
+                + "MB, CPU=" + childrenCpuNanos / users / 1_000_000 + "ms";
+    }
+
+    @Override
+    public String toString() {
+        return format(1);
+    }
+
+    private static long mb(long bytes) {
+        return bytes / 1024 / 1024;
+    }
+
+    /**
+     * @return the RSS of given process in bytes, 0 if not available.
+     */
+    private static long readRss(long pid) {
+        final Long kb = readKbField(Path.of("/proc", Long.toString(pid), "status"), "VmRSS:");
+        return kb == null ? 0 : kb * 1024;
+    }
+
+    /**
+     * @return the PSS of given process in bytes, -1 if not available (older kernels do not have <code>smaps_rollup</code>).
+     */
+    private static long readPss(long pid) {
+        final Long kb = readKbField(Path.of("/proc", Long.toString(pid), "smaps_rollup"), "Pss:");
+        return kb == null ? -1 : kb * 1024;
+    }
+
+    /**
+     * @return the user+system CPU time of given process in nanoseconds, 0 if not available.
+     */
+    private static long readCpuNanos(long pid) {
+        try {
+            final String stat = Files.readString(Path.of("/proc", Long.toString(pid), "stat"));
+            // the process name (2nd field) may contain spaces; the fields after it are space-separated: state is the 3rd field,
+            // utime the 14th and stime the 15th.
+            final String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return (Long.parseLong(fields[11]) + Long.parseLong(fields[12])) * NANOS_PER_TICK;
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads a line such as <code>VmRSS:   123456 kB</code> from a <code>/proc</code> file.
+     * @return the value in kB, null if the file or the field doesn't exist (e.g. the process has already terminated).
+     */
+    @Nullable
+    static Long readKbField(@NotNull Path file, @NotNull String fieldName) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith(fieldName)) {
+                    final String value = line.substring(fieldName.length()).trim();
+                    final int space = value.indexOf(' ');
+                    return Long.parseLong(space < 0 ? value : value.substring(0, space));
+                }
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
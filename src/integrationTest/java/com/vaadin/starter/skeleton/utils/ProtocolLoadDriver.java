@@ -0,0 +1,120 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.threads.VirtualThreads;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A browserless counterpart of {@link ParallelPlaywright}: maintains a number of virtual users, each one
+ * being a {@link VaadinProtocolClient} with its own Vaadin session. You can submit a test block - it will be run in parallel
+ * for all virtual users.
+ * <p></p>
+ * No browser is involved, therefore a single JVM can easily simulate 10k+ users. Every user is run in its own virtual thread
+ * if the JVM supports them (Java 21+); on older JVMs, platform threads are used instead, which limits the number of users
+ * by the amount of memory available for thread stacks.
+ * <p></p>
+ * When closed, this object will shut down all threads.
+ */
+public class ProtocolLoadDriver implements AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(ProtocolLoadDriver.class);
+    @NotNull
+    private final BetterExecutor executor;
+    @NotNull
+    private final HttpClient http;
+    /**
+     * The number of virtual users as given in the constructor.
+     */
+    private final int users;
+    @NotNull
+    private final String url;
+    @NotNull
+    private final List<VaadinProtocolClient> clients = new ArrayList<>();
+
+    /**
+     * Creates the virtual user manager. Don't forget to call {@link #initialize()} to bootstrap the users.
+     * @param users the number of virtual users.
+     * @param url the app URL.
+     */
+    public ProtocolLoadDriver(int users, @NotNull String url) {
+        this.users = users;
+        this.url = Objects.requireNonNull(url);
+        if (users < 1) {
+            throw new IllegalArgumentException("Parameter users: invalid value " + users + ": must be 1 or higher");
+        }
+        executor = new BetterExecutor(newVirtualThreadPerTaskExecutor());
+        http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    /**
+     * @return an executor running every task in a new virtual thread; falls back to a cached thread pool on JVMs without virtual threads.
+     */
+    @NotNull
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        final ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            log.warn("Virtual threads not available on Java " + Runtime.version() + ", falling back to platform threads: thousands of users need"
+                    + " thousands of thread stacks. Run on Java 21+, e.g. via ./gradlew integrationTest -PintegrationTestJava=21");
+            return Executors.newCachedThreadPool();
+        }
+        return executor;
+    }
+
+    /**
+     * Bootstraps all virtual users: every user loads the app and initializes its own UI in its own session.
+     */
+    public void initialize() {
+        final MeasureTime mt = new MeasureTime("Overall Protocol bootstrap stats");
+        final VaadinProtocolClient[] created = new VaadinProtocolClient[users];
+        final List<Runnable> tasks = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            final int index = i;
+            tasks.add(() -> {
+                final VaadinProtocolClient client = new VaadinProtocolClient(http, url);
+                client.bootstrap(mt);
+                created[index] = client;
+            });
+        }
+        submitAllAndWait(tasks);
+        clients.addAll(Arrays.asList(created));
+        log.info(users + " virtual users initialized: " + mt.format());
+    }
+
+    /**
+     * Runs given block for all virtual users in parallel. Awaits until all blocks have
+     * finished their execution. If any of the blocks fail, this function fails too.
+     * @param testBlock the test block to run for all users, it receives the already bootstrapped client.
+     */
+    public void runInAllUsersAndWait(@NotNull Consumer<VaadinProtocolClient> testBlock) {
+        Objects.requireNonNull(testBlock);
+        submitAllAndWait(clients.stream().map(client -> (Runnable) () -> testBlock.accept(client)).toList());
+    }
+
+    private void submitAllAndWait(@NotNull List<Runnable> tasks) {
+        try {
+            executor.submitAllAndWait(tasks);
+        } catch (ExecutionException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.close();
+    }
+}
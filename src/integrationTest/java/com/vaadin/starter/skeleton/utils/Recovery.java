@@ -0,0 +1,42 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+
+/**
+ * What a browser does after one of its iterations failed, see {@link ParallelPlaywright#setRecovery(Recovery)}. Whatever the policy,
+ * the failed step has already been recorded into its own series by {@link MeasureTime#step(String, Runnable)}.
+ */
+public enum Recovery {
+    /**
+     * The failure is rethrown: the whole run fails and its measurements are discarded. Best when debugging the scenario.
+     */
+    ABORT,
+    /**
+     * The next iteration runs in the page as it was left by the failed one. Only useful for scenarios which don't depend on the page state.
+     */
+    CONTINUE,
+    /**
+     * The page is navigated to the app URL again, which creates a new UI in the same Vaadin session.
+     */
+    RENAVIGATE,
+    /**
+     * The page forgets its cookies and is navigated to the app URL again, which creates a new Vaadin session:
+     * recovers from expired or broken sessions too, at the cost of the session creation.
+     */
+    NEW_SESSION;
+
+    /**
+     * @param value the policy name, case-insensitive, e.g. <code>renavigate</code> or <code>new-session</code>.
+     * @return the policy, not null.
+     */
+    @NotNull
+    public static Recovery parse(@NotNull String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid recovery '" + value + "': must be one of abort, continue, renavigate, new-session", e);
+        }
+    }
+}
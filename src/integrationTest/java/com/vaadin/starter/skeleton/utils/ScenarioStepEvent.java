@@ -0,0 +1,34 @@
+package com.vaadin.starter.skeleton.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import jdk.jfr.Timestamp;
+
+/**
+ * A scenario step performed by a browser, e.g. "Button click", as a JDK Flight Recorder event; see {@link FlightRecording}.
+ * Committed when the step ends: the event's start time is the end of the step, the step's own start and duration are in the fields.
+ */
+@Name("com.vaadin.starter.skeleton.ScenarioStep")
+@Label("Scenario Step")
+@Category("Load Test")
+@Description("A step of the load test scenario, as measured by the browser")
+@StackTrace(false)
+final class ScenarioStepEvent extends Event {
+    @Label("Test")
+    String test;
+    @Label("Step")
+    String step;
+    @Label("Step Start")
+    @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+    long stepStart;
+    @Label("Step Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long stepDuration;
+    @Label("Failed")
+    boolean failed;
+}
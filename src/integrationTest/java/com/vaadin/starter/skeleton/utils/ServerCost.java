@@ -0,0 +1,112 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the server-side cost of interactions run in the current thread, e.g. by {@link MockVaadinLoadDriver}: the wall-clock latency
+ * (recorded into a {@link MeasureTime}, so that all the usual reporting applies), the CPU time and the number of allocated bytes.
+ * <p></p>
+ * The CPU time and the allocation are measured per thread via {@link ThreadMXBean}; they're therefore only meaningful if the measured
+ * work runs entirely in the calling thread, which is the case for Vaadin listeners invoked under the session lock. The allocation
+ * is only measured on JVMs supporting <code>com.sun.management.ThreadMXBean</code> (HotSpot, OpenJ9).
+ * <p></p>
+ * Thread-safe.
+ */
+public final class ServerCost {
+    @NotNull
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    @Nullable
+    private static final com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+
+    @NotNull
+    private final MeasureTime latencies;
+    /**
+     * Maps work item name to its CPU time and allocation.
+     */
+    @NotNull
+    private final ConcurrentHashMap<String, Cost> costs = new ConcurrentHashMap<>();
+
+    /**
+     * @param latencies the wall-clock latency of every measured work item is recorded here.
+     */
+    public ServerCost(@NotNull MeasureTime latencies) {
+        this.latencies = Objects.requireNonNull(latencies);
+        if (!threads.isCurrentThreadCpuTimeSupported()) {
+            throw new IllegalStateException("Thread CPU time measurement not supported by this JVM");
+        }
+        if (!threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /**
+     * Runs given work in the current thread and records its cost.
+     * @param workItemName the work item name, not null.
+     * @param work the work to measure.
+     */
+    public void measure(@NotNull String workItemName, @NotNull Runnable work) {
+        Objects.requireNonNull(workItemName);
+        final long allocatedBefore = allocatedBytes();
+        final long cpuBefore = threads.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        work.run();
+        final long duration = System.nanoTime() - start;
+        final long cpu = threads.getCurrentThreadCpuTime() - cpuBefore;
+        final long allocated = allocatedBytes() - allocatedBefore;
+        latencies.record(workItemName, duration);
+        final Cost cost = costs.computeIfAbsent(workItemName, n -> new Cost());
+        cost.cpu.record(cpu);
+        if (allocations != null) {
+            cost.allocatedBytes.record(allocated);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return allocations == null ? 0 : allocations.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return the CPU time and the allocation per work item, e.g. <code>{Button click=cpu[p50=0.120/p99=0.480/avg=0.150ms] alloc[p50=14.2/p99=30.1/avg=15.0KB]}</code>.
+     */
+    @NotNull
+    public String format() {
+        return "Server cost" + new TreeMap<>(costs);
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    @NotNull
+    private static String formatKb(long bytes) {
+        return String.format(Locale.ROOT, "%.1f", bytes / 1024d);
+    }
+
+    private static final class Cost {
+        @NotNull
+        private final LatencyHistogram cpu = new LatencyHistogram();
+        @NotNull
+        private final LatencyHistogram allocatedBytes = new LatencyHistogram();
+
+        @Override
+        public String toString() {
+            String result = "cpu[p50=" + MeasureTime.formatMs(cpu.getValueAtPercentile(50)) + "/p99=" + MeasureTime.formatMs(cpu.getValueAtPercentile(99))
+                    + "/avg=" + MeasureTime.formatMs(cpu.getMean()) + "ms]";
+            if (!allocatedBytes.isEmpty()) {
+                result += " alloc[p50=" + formatKb(allocatedBytes.getValueAtPercentile(50)) + "/p99=" + formatKb(allocatedBytes.getValueAtPercentile(99))
+                        + "/avg=" + formatKb(allocatedBytes.getMean()) + "KB]";
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Scrapes the server-side metrics exposed by the app at <code>/metrics</code>, so that they can be shown next to the client-side stats.
+ * The server metrics are optional: if the app doesn't expose them (e.g. a different app is being tested), a warning is logged and
+ * the test goes on.
+ */
+public final class ServerMetricsClient {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(ServerMetricsClient.class);
+    @NotNull
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    @NotNull
+    private final String url;
+
+    /**
+     * @param url the app URL, e.g. <code>http://localhost:8080</code>.
+     */
+    public ServerMetricsClient(@NotNull String url) {
+        this.url = Objects.requireNonNull(url);
+    }
+
+    /**
+     * Resets the server-side timings, so that the next {@link #scrape()} only covers what happened since now.
+     */
+    public void reset() {
+        send(HttpRequest.newBuilder(URI.create(url + "/metrics/reset")).timeout(Duration.ofSeconds(10)).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    /**
+     * @return the server metrics as plain text, one metric per line; null if not available.
+     */
+    @Nullable
+    public String scrape() {
+        return send(HttpRequest.newBuilder(URI.create(url + "/metrics")).timeout(Duration.ofSeconds(10)).GET());
+    }
+
+    /**
+     * @return the server metrics as JSON, see <code>ServerMetrics.toJson()</code> in the app; null if not available.
+     */
+    @Nullable
+    public JsonObject scrapeJson() {
+        final String json = send(HttpRequest.newBuilder(URI.create(url + "/metrics?format=json")).timeout(Duration.ofSeconds(10)).GET());
+        return json == null ? null : JsonParser.parseString(json).getAsJsonObject();
+    }
+
+    /**
+     * Scrapes the server metrics and logs them.
+     * @param title what the metrics are for, e.g. the name of the client-side stats.
+     */
+    public void logMetrics(@NotNull String title) {
+        final String metrics = scrape();
+        if (metrics != null) {
+            log.info("Server metrics for " + title + ":\n" + metrics);
+        }
+    }
+
+    /**
+     * Measures the memory footprint of all sessions on the server and logs it: the serialized size distribution and the heap
+     * needed per 1000 users. Expensive: call after the load has finished, while the sessions are still alive.
+     */
+    public void logSessionMemory() {
+        final String report = send(HttpRequest.newBuilder(URI.create(url + "/metrics/sessions")).timeout(Duration.ofMinutes(5)).GET());
+        if (report != null) {
+            log.info("Server session memory:\n" + report);
+        }
+    }
+
+    /**
+     * Closes all sessions on the server, see <code>ServerMetrics.closeSessions()</code> in the app: their UIs are detached and stop
+     * consuming the server CPU and heap. The browsers still show the UIs; navigate them elsewhere, e.g. via {@link ParallelPlaywright#reset(String)}.
+     * Only works if the test runs on the same machine as the app.
+     */
+    public void closeSessions() {
+        final String closed = send(HttpRequest.newBuilder(URI.create(url + "/metrics/sessions/close")).timeout(Duration.ofMinutes(1)).POST(HttpRequest.BodyPublishers.noBody()));
+        if (closed != null) {
+            log.info("Closed the server sessions: " + closed.trim());
+        }
+    }
+
+    /**
+     * Measures the memory footprint of all sessions on the server, see {@link #logSessionMemory()}.
+     * @return the report as JSON, see <code>SessionMemoryReport.toJson()</code> in the app; null if not available.
+     */
+    @Nullable
+    public JsonObject measureSessionMemory() {
+        final String json = send(HttpRequest.newBuilder(URI.create(url + "/metrics/sessions?format=json")).timeout(Duration.ofMinutes(5)).GET());
+        return json == null ? null : JsonParser.parseString(json).getAsJsonObject();
+    }
+
+    @Nullable
+    private String send(@NotNull HttpRequest.Builder request) {
+        try {
+            final HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 300) {
+                log.warn("Server metrics not available: " + response.uri() + " returned " + response.statusCode());
+                return null;
+            }
+            return response.body();
+        } catch (IOException e) {
+            log.warn("Server metrics not available: " + e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonObject;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compares the runs of the same test against differently configured servers, e.g. with the requests handled
+ * by the Jetty thread pool and by virtual threads (see <code>VirtualThreadFilter</code> in the app). The server configuration is
+ * scraped from the server metrics, so the test itself doesn't need to know how the server was started.
+ * <p></p>
+ * Every run appends a row to a CSV file; the latest row of every server configuration with the same number of users is then
+ * logged side by side: the throughput and the percentiles of the given work item, and the heap, the heap per user and the thread count
+ * of the server. The heap per user is the growth of the heap after a GC since a measurement without sessions, divided by the sessions; it's
+ * measured while the users are still connected, see <code>SessionMemoryReport</code> in the app. A file with different
+ * columns is moved aside, see {@link CsvFiles#prepare(Path, String)}.
+ * Run the test once per server configuration, restarting the server in between.
+ */
+public final class ServerModeComparison {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(ServerModeComparison.class);
+    private static final String CSV_HEADER = "recorded_at,request_threads,users,work_item,count,throughput_per_s,p50_ms,p99_ms,server_heap_used_mb,server_heap_per_user_kb,server_threads";
+    @NotNull
+    private final Path file;
+
+    /**
+     * @param file the CSV file with the results; created if it doesn't exist.
+     */
+    public ServerModeComparison(@NotNull Path file) {
+        this.file = Objects.requireNonNull(file);
+    }
+
+    /**
+     * Records the results of a run, and logs the comparison with the runs against other server configurations.
+     * @param users the number of users.
+     * @param elapsed how long the run took.
+     * @param stats the stats of the run.
+     * @param workItem the work item to compare, e.g. "Button click".
+     * @param server the server metrics; if not available, the server configuration is recorded as <code>unknown</code>.
+     * Call this while the users are still connected, otherwise the heap per user can't be measured.
+     */
+    public void record(int users, @NotNull Duration elapsed, @NotNull MeasureTime stats, @NotNull String workItem, @NotNull ServerMetricsClient server) {
+        final JsonObject metrics = server.scrapeJson();
+        final JsonObject memory = server.measureSessionMemory();
+        final LatencyHistogram h = stats.snapshot(workItem);
+        final String row = String.join(",", Instant.now().toString(),
+                metrics == null ? "unknown" : metrics.get("requestThreads").getAsString().replace(',', ' '),
+                Integer.toString(users), workItem, Long.toString(h.getCount()),
+                String.format(Locale.ROOT, "%.3f", h.getCount() / (elapsed.toNanos() / 1_000_000_000d)),
+                MeasureTime.formatMs(h.getValueAtPercentile(50)), MeasureTime.formatMs(h.getValueAtPercentile(99)),
+                metrics == null ? "" : Long.toString(metrics.get("jvmHeapUsedMb").getAsLong()),
+                memory == null ? "" : String.format(Locale.ROOT, "%.1f", memory.get("heapDeltaPerSessionKb").getAsDouble()),
+                metrics == null ? "" : Long.toString(metrics.get("jvmThreads").getAsLong()));
+        try {
+            CsvFiles.prepare(file, CSV_HEADER);
+            Files.writeString(file, row + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            logComparison(users, workItem);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void logComparison(int users, @NotNull String workItem) throws IOException {
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        // maps request_threads to the latest row with the same users and work item.
+        final Map<String, String> latest = new LinkedHashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            final String[] columns = line.split(",");
+            if (columns.length >= 4 && columns[2].equals(Integer.toString(users)) && columns[3].equals(workItem)) {
+                latest.remove(columns[1]);
+                latest.put(columns[1], line);
+            }
+        }
+        final StringBuilder sb = new StringBuilder("Server mode comparison for " + users + " users, " + workItem + " (" + file + "):\n" + CSV_HEADER);
+        latest.values().forEach(line -> sb.append('\n').append(line));
+        if (latest.size() < 2) {
+            sb.append("\nRestart the server in a different mode (e.g. with --virtual-threads) and run the test again to compare.");
+        }
+        log.info(sb.toString());
+    }
+}
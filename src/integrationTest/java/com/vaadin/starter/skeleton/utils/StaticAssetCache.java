@@ -0,0 +1,110 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.Route;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the static assets of the app (the JavaScript bundle, stylesheets, images and fonts) to all browsers from memory.
+ * The first request of every asset goes to the server; all further requests, from any browser, are fulfilled from the cache
+ * without the browser touching the network. Only successful responses are cached.
+ * <p></p>
+ * Thread-safe: the route handlers of all pages run in their own threads.
+ */
+public final class StaticAssetCache {
+    private static final class Asset {
+        private final int status;
+        @NotNull
+        private final Map<String, String> headers;
+        private final byte @NotNull [] body;
+
+        private Asset(int status, @NotNull Map<String, String> headers, byte @NotNull [] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    @NotNull
+    private final ConcurrentHashMap<String, Asset> assets = new ConcurrentHashMap<>();
+    @NotNull
+    private final AtomicLong hits = new AtomicLong();
+    @NotNull
+    private final AtomicLong misses = new AtomicLong();
+    @NotNull
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * @param url the request URL.
+     * @return true if the URL is a static asset: anything under <code>/VAADIN/static/</code>, <code>/VAADIN/build/</code> or
+     * <code>/icons/</code>, and stylesheets, images and fonts. Never the Vaadin requests (UIDL, heartbeat, push).
+     */
+    public static boolean isStaticAsset(@NotNull String url) {
+        final String path = URI.create(url).getPath();
+        if (path == null) {
+            return false;
+        }
+        return path.contains("/VAADIN/static/") || path.contains("/VAADIN/build/") || path.contains("/icons/")
+                || path.endsWith(".css") || isImageOrFont(path);
+    }
+
+    private static boolean isImageOrFont(@NotNull String path) {
+        final String p = path.toLowerCase(Locale.ROOT);
+        return p.endsWith(".png") || p.endsWith(".jpg") || p.endsWith(".svg") || p.endsWith(".gif") || p.endsWith(".ico")
+                || p.endsWith(".woff") || p.endsWith(".woff2") || p.endsWith(".ttf") || p.endsWith(".otf");
+    }
+
+    /**
+     * Handles an intercepted static asset request.
+     * @param route the intercepted request.
+     * @param blockImagesAndFonts if true, images and fonts are aborted instead of served.
+     */
+    public void handle(@NotNull Route route, boolean blockImagesAndFonts) {
+        final String url = route.request().url();
+        if (blockImagesAndFonts && isImageOrFont(URI.create(url).getPath())) {
+            blocked.incrementAndGet();
+            route.abort();
+            return;
+        }
+        Asset asset = assets.get(url);
+        if (asset == null) {
+            misses.incrementAndGet();
+            final APIResponse response = route.fetch();
+            if (response.status() != 200) {
+                route.fulfill(new Route.FulfillOptions().setResponse(response));
+                return;
+            }
+            final Map<String, String> headers = new HashMap<>(response.headers());
+            // the body is already decompressed, and the length may therefore differ.
+            headers.remove("content-encoding");
+            headers.remove("content-length");
+            asset = new Asset(response.status(), headers, response.body());
+            assets.putIfAbsent(url, asset);
+        } else {
+            hits.incrementAndGet();
+        }
+        route.fulfill(new Route.FulfillOptions().setStatus(asset.status).setHeaders(asset.headers).setBodyBytes(asset.body));
+    }
+
+    /**
+     * @return e.g. <code>Static asset cache: 12 assets, 1534KB; 990 hits, 12 misses, 40 blocked</code>.
+     */
+    @NotNull
+    public String format() {
+        final long bytes = assets.values().stream().mapToLong(asset -> asset.body.length).sum();
+        return "Static asset cache: " + assets.size() + " assets, " + bytes / 1024 + "KB; " + hits.get() + " hits, "
+                + misses.get() + " misses, " + blocked.get() + " blocked";
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
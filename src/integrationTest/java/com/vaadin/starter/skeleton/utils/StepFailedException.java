@@ -0,0 +1,23 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A step of the scenario failed; thrown by {@link MeasureTime#step(String, Runnable)}, after the failure has been recorded.
+ * Aborts the rest of the iteration, see {@link ParallelPlaywright#setRecovery(Recovery)}.
+ */
+public final class StepFailedException extends RuntimeException {
+    /**
+     * The step which failed, e.g. "Button click".
+     */
+    @NotNull
+    public final String step;
+    @NotNull
+    public final ErrorKind kind;
+
+    public StepFailedException(@NotNull String step, @NotNull ErrorKind kind, @NotNull Throwable cause) {
+        super(step + " failed (" + kind.label + "): " + cause.getMessage(), cause);
+        this.step = step;
+        this.kind = kind;
+    }
+}
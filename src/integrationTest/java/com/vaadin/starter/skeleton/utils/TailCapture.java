@@ -0,0 +1,325 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Response;
+import com.microsoft.playwright.Tracing;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Captures what the browser and the server were doing during the slowest iterations, and only during those: tracing every iteration
+ * of a hundred browsers would cost more than the load itself.
+ * <p></p>
+ * Every page records a Playwright trace all the time, but in chunks: a chunk starts with every iteration, and is thrown away when
+ * the iteration ends, unless the iteration was an outlier: slower than a fixed threshold, or slower than a percentile of all
+ * iterations so far, or failed. Then the chunk is saved along with a screenshot and the bodies of the UIDL requests and responses of
+ * the iteration, into a directory of its own. Open the trace via <code>npx playwright show-trace trace.zip</code> or at
+ * <a href="https://trace.playwright.dev">trace.playwright.dev</a>.
+ * <p></p>
+ * The trace only holds DOM snapshots, no screencast, which keeps the recording cheap. Saving is expensive, and is therefore
+ * limited by a disk budget and a maximum number of captures per minute; outliers beyond the limits are counted but not saved.
+ * <p></p>
+ * Enable via {@link ParallelPlaywright#setTailCapture(TailCapture)}; the iterations are marked by {@link ParallelPlaywright#runIteration(Runnable)}.
+ * Thread-safe.
+ */
+public final class TailCapture {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(TailCapture.class);
+    /**
+     * The percentile isn't reliable with fewer iterations; no outliers are detected by percentile until then.
+     */
+    private static final int MIN_ITERATIONS_FOR_PERCENTILE = 100;
+    /**
+     * Keep at most this many UIDL exchanges per iteration.
+     */
+    private static final int MAX_EXCHANGES = 100;
+    /**
+     * Truncate UIDL bodies longer than this.
+     */
+    private static final int MAX_BODY_CHARS = 64 * 1024;
+
+    @NotNull
+    private final Path directory;
+    private final long thresholdNanos;
+    private final double percentile;
+    private long diskBudgetBytes = 500L * 1024 * 1024;
+    private int maxCapturesPerMinute = 6;
+    /**
+     * The durations of all iterations, to compute the {@link #percentile}.
+     */
+    @NotNull
+    private final LatencyHistogram iterations = new LatencyHistogram();
+    @NotNull
+    private final AtomicLong bytesWritten = new AtomicLong();
+    /**
+     * The times of the captures of the last minute, as {@link System#nanoTime()}. Guarded by itself.
+     */
+    @NotNull
+    private final Deque<Long> recentCaptures = new ArrayDeque<>();
+    @NotNull
+    private final AtomicInteger outliers = new AtomicInteger();
+    @NotNull
+    private final AtomicInteger captured = new AtomicInteger();
+
+    private TailCapture(@NotNull Path directory, long thresholdNanos, double percentile) {
+        this.directory = Objects.requireNonNull(directory);
+        this.thresholdNanos = thresholdNanos;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Captures the iterations slower than given threshold.
+     * @param directory where to save the captures; created if it doesn't exist.
+     * @param threshold the iteration duration.
+     * @return the capture, not null.
+     */
+    @NotNull
+    public static TailCapture slowerThan(@NotNull Path directory, @NotNull Duration threshold) {
+        return new TailCapture(directory, threshold.toNanos(), Double.NaN);
+    }
+
+    /**
+     * Captures the iterations slower than given percentile of all iterations so far, e.g. 99 for the slowest 1%.
+     * @param directory where to save the captures; created if it doesn't exist.
+     * @param percentile the percentile, 0..100.
+     * @return the capture, not null.
+     */
+    @NotNull
+    public static TailCapture slowerThanPercentile(@NotNull Path directory, double percentile) {
+        if (!(percentile > 0 && percentile < 100)) {
+            throw new IllegalArgumentException("Parameter percentile: invalid value " + percentile + ": must be between 0 and 100");
+        }
+        return new TailCapture(directory, Long.MAX_VALUE, percentile);
+    }
+
+    /**
+     * Configures the capture from system properties; the captures go to <code>build/tail-capture</code>:
+     * <ul>
+     *     <li><code>perf.tailCapture.thresholdMs</code>: capture the iterations slower than this many milliseconds;</li>
+     *     <li><code>perf.tailCapture.percentile</code>: capture the iterations slower than this percentile, e.g. 99. Takes precedence.</li>
+     * </ul>
+     * @return the capture, null if none of the properties is set.
+     */
+    @Nullable
+    public static TailCapture fromSystemProperties() {
+        final Path directory = Path.of("build", "tail-capture");
+        final String percentile = System.getProperty("perf.tailCapture.percentile");
+        if (percentile != null && !percentile.isBlank()) {
+            return slowerThanPercentile(directory, Double.parseDouble(percentile));
+        }
+        final Long thresholdMs = Long.getLong("perf.tailCapture.thresholdMs");
+        return thresholdMs == null ? null : slowerThan(directory, Duration.ofMillis(thresholdMs));
+    }
+
+    /**
+     * @param diskBudgetBytes stop saving captures once they take this many bytes; 500MB by default.
+     * @return this
+     */
+    @NotNull
+    public TailCapture setDiskBudget(long diskBudgetBytes) {
+        this.diskBudgetBytes = diskBudgetBytes;
+        return this;
+    }
+
+    /**
+     * @param maxCapturesPerMinute save at most this many captures per minute, across all pages; 6 by default.
+     * @return this
+     */
+    @NotNull
+    public TailCapture setMaxCapturesPerMinute(int maxCapturesPerMinute) {
+        if (maxCapturesPerMinute < 1) {
+            throw new IllegalArgumentException("Parameter maxCapturesPerMinute: invalid value " + maxCapturesPerMinute + ": must be 1 or higher");
+        }
+        this.maxCapturesPerMinute = maxCapturesPerMinute;
+        return this;
+    }
+
+    /**
+     * Starts recording given page. Call from the thread owning the page.
+     * @param page the page.
+     * @return the recorder of the page.
+     */
+    @NotNull
+    Recorder record(@NotNull Page page) {
+        return new Recorder(page);
+    }
+
+    /**
+     * Decides whether an iteration is an outlier, and records its duration.
+     */
+    private boolean isOutlier(long durationNanos) {
+        boolean outlier = durationNanos > thresholdNanos;
+        if (!Double.isNaN(percentile) && iterations.getCount() >= MIN_ITERATIONS_FOR_PERCENTILE) {
+            outlier |= durationNanos > iterations.getValueAtPercentile(percentile);
+        }
+        iterations.record(durationNanos);
+        return outlier;
+    }
+
+    /**
+     * @return true if a capture may be saved now; if so, it's counted towards the limits.
+     */
+    private boolean tryAcquire() {
+        if (bytesWritten.get() >= diskBudgetBytes) {
+            return false;
+        }
+        final long now = System.nanoTime();
+        synchronized (recentCaptures) {
+            while (!recentCaptures.isEmpty() && now - recentCaptures.peekFirst() > Duration.ofMinutes(1).toNanos()) {
+                recentCaptures.removeFirst();
+            }
+            if (recentCaptures.size() >= maxCapturesPerMinute) {
+                return false;
+            }
+            recentCaptures.addLast(now);
+            return true;
+        }
+    }
+
+    /**
+     * @return e.g. <code>Tail capture: 12 outliers, 6 captured, 34MB written</code>.
+     */
+    @NotNull
+    public String format() {
+        return "Tail capture: " + outliers.get() + " outliers, " + captured.get() + " captured into " + directory + ", "
+                + bytesWritten.get() / 1024 / 1024 + "MB written";
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+
+    /**
+     * Records a single page. Not thread-safe: must only be used by the thread owning the page.
+     */
+    final class Recorder {
+        @NotNull
+        private final Page page;
+        @NotNull
+        private final Tracing tracing;
+        /**
+         * The UIDL responses of the current iteration; the bodies are only read if the iteration is captured.
+         */
+        @NotNull
+        private final List<Response> exchanges = new ArrayList<>();
+        private long iterationStart;
+        private boolean inIteration;
+
+        private Recorder(@NotNull Page page) {
+            this.page = page;
+            tracing = page.context().tracing();
+            tracing.start(new Tracing.StartOptions().setSnapshots(true).setScreenshots(false));
+            page.onResponse(response -> {
+                if (inIteration && response.url().contains("v-r=uidl") && exchanges.size() < MAX_EXCHANGES) {
+                    exchanges.add(response);
+                }
+            });
+        }
+
+        boolean isInIteration() {
+            return inIteration;
+        }
+
+        void beginIteration() {
+            exchanges.clear();
+            tracing.startChunk();
+            inIteration = true;
+            iterationStart = System.nanoTime();
+        }
+
+        /**
+         * Ends the iteration: saves the chunk if the iteration is an outlier, otherwise throws it away.
+         * @param failure the failure of the iteration, null if it succeeded.
+         */
+        void endIteration(@Nullable Throwable failure) {
+            final long duration = System.nanoTime() - iterationStart;
+            inIteration = false;
+            final boolean outlier = isOutlier(duration) || failure != null;
+            if (!outlier) {
+                tracing.stopChunk();
+                return;
+            }
+            outliers.incrementAndGet();
+            if (!tryAcquire()) {
+                tracing.stopChunk();
+                return;
+            }
+            final Path dir = directory.resolve("capture-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS"))
+                    + "-" + Thread.currentThread().getId());
+            try {
+                Files.createDirectories(dir);
+                tracing.stopChunk(new Tracing.StopChunkOptions().setPath(dir.resolve("trace.zip")));
+                Files.write(dir.resolve("screenshot.png"), page.screenshot());
+                Files.writeString(dir.resolve("uidl.txt"), formatExchanges(duration, failure), StandardCharsets.UTF_8);
+                final long size;
+                try (Stream<Path> files = Files.list(dir)) {
+                    size = files.mapToLong(TailCapture::sizeOf).sum();
+                }
+                bytesWritten.addAndGet(size);
+                captured.incrementAndGet();
+                log.info("Captured " + (failure != null ? "failed" : "slow") + " iteration (" + MeasureTime.formatMs(duration) + "ms) into " + dir);
+            } catch (IOException | RuntimeException e) {
+                // the capture is a diagnostic aid; don't fail the load test because of it.
+                log.warn("Failed to capture the iteration into " + dir, e);
+            }
+        }
+
+        @NotNull
+        private String formatExchanges(long durationNanos, @Nullable Throwable failure) {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "Iteration took %sms; %s\n", MeasureTime.formatMs(durationNanos),
+                    failure == null ? "succeeded" : "failed: " + failure));
+            for (Response response : exchanges) {
+                sb.append("\n>>> ").append(response.request().method()).append(' ').append(response.url()).append('\n');
+                sb.append(truncate(response.request().postData())).append('\n');
+                sb.append("<<< ").append(response.status()).append('\n');
+                String body;
+                try {
+                    body = response.text();
+                } catch (RuntimeException e) {
+                    body = "(body not available: " + e.getMessage() + ")";
+                }
+                sb.append(truncate(body)).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    @NotNull
+    private static String truncate(@Nullable String body) {
+        if (body == null) {
+            return "";
+        }
+        return body.length() <= MAX_BODY_CHARS ? body : body.substring(0, MAX_BODY_CHARS) + "... (" + body.length() + " chars)";
+    }
+
+    private static long sizeOf(@NotNull Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
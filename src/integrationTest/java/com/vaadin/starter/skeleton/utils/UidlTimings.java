@@ -0,0 +1,92 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.Request;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Collects the browser-side network timing of the Vaadin UIDL requests (<code>?v-r=uidl</code>) made by a single page.
+ * <p></p>
+ * The Playwright command timing (e.g. "Button click") measures the whole round trip Java -> Playwright driver -> browser -> server and back,
+ * which under load mostly reflects the congestion of the load generator. The network timing is measured by the browser itself and
+ * shows how long the server took to respond, regardless of how busy the load generator is.
+ * <p></p>
+ * Register via {@link com.microsoft.playwright.Page#onRequestFinished(Consumer)}; Playwright then delivers the events in the thread
+ * which owns the page, while it's running a Playwright command. Not thread-safe: must only be used by the thread owning the page.
+ */
+public final class UidlTimings implements Consumer<Request> {
+    /**
+     * Don't hold onto too many timings if nobody drains them.
+     */
+    private static final int MAX_PENDING = 1000;
+    @NotNull
+    private final Deque<Request.Timing> pending = new ArrayDeque<>();
+
+    @Override
+    public void accept(@NotNull Request request) {
+        if (!request.url().contains("v-r=uidl")) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING) {
+            pending.removeFirst();
+        }
+        pending.addLast(request.timing());
+    }
+
+    /**
+     * Records the timings of all UIDL requests finished since the last call into given stats, as the following work items:
+     * <ul>
+     *     <li>"UIDL TTFB": time to first byte: from sending the request until the first byte of the response arrives. This is mostly the server processing time.</li>
+     *     <li>"UIDL download": from the first byte of the response until the last one.</li>
+     *     <li>"UIDL network": from the start of the request (including connection setup, if any) until the last byte of the response.</li>
+     * </ul>
+     * @param stats the stats to record into.
+     * @return the sum of "UIDL network" of all recorded requests, in nanoseconds.
+     */
+    public long drainTo(@NotNull MeasureTime stats) {
+        return drainTo(stats, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Records the timings of all UIDL requests finished since the last call into given stats, see {@link #drainTo(MeasureTime)}.
+     * @param stats the stats to record into.
+     * @param startedSinceEpochMillis only the requests started at this time or later count into the returned sum, e.g. the start of
+     *                                a Playwright command; the others, e.g. polls and heartbeats sent earlier, are only recorded.
+     * @return the sum of "UIDL network" of the requests started since given time, in nanoseconds. Subtract this from the duration of
+     * the Playwright commands run since that time to obtain the time spent by the browser and Playwright.
+     */
+    public long drainTo(@NotNull MeasureTime stats, double startedSinceEpochMillis) {
+        long network = 0;
+        Request.Timing timing;
+        while ((timing = pending.pollFirst()) != null) {
+            // startTime is in epoch milliseconds, the other timing values are milliseconds relative to it; -1 if not available.
+            if (timing.responseEnd < 0) {
+                continue;
+            }
+            if (timing.requestStart >= 0 && timing.responseStart >= 0) {
+                stats.record("UIDL TTFB", toNanos(timing.responseStart - timing.requestStart));
+                stats.record("UIDL download", toNanos(timing.responseEnd - timing.responseStart));
+            }
+            final long requestNetwork = toNanos(timing.responseEnd);
+            stats.record("UIDL network", requestNetwork);
+            if (timing.startTime >= startedSinceEpochMillis) {
+                network += requestNetwork;
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Discards the timings of all UIDL requests finished since the last call to {@link #drainTo(MeasureTime)}.
+     */
+    public void clear() {
+        pending.clear();
+    }
+
+    private static long toNanos(double millis) {
+        return (long) (millis * 1_000_000);
+    }
+}
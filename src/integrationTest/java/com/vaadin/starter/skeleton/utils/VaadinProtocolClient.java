@@ -0,0 +1,263 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * A single browserless virtual user: speaks the Vaadin Flow client-server protocol (UIDL over XHR) directly via {@link HttpClient}.
+ * <p></p>
+ * Bootstraps the app via <code>?v-r=init</code>, remembers the session cookie, the CSRF token and the sync/client IDs, and
+ * tracks the state tree nodes which have the HTML <code>id</code> attribute set, so that RPCs can target components by their ID,
+ * e.g. <code>nameField</code>. Only the bits of the protocol needed by the test scenarios are implemented: property sync, DOM events,
+ * and reading the responses. Notably the client never closes server-side notifications and never sends heartbeats.
+ * <p></p>
+ * Not thread-safe: every virtual user is driven by a single thread at a time.
+ */
+public final class VaadinProtocolClient {
+    /**
+     * The state tree feature IDs, see Flow's <code>NodeFeatures</code>.
+     */
+    private static final int FEATURE_ELEMENT_PROPERTIES = 1;
+    private static final int FEATURE_ELEMENT_ATTRIBUTES = 3;
+    private static final int FEATURE_ELEMENT_LISTENERS = 4;
+    private static final String UIDL_PREFIX = "for(;;);";
+
+    @NotNull
+    private final HttpClient http;
+    /**
+     * The app URL, always ending with a slash.
+     */
+    @NotNull
+    private final String baseUrl;
+    /**
+     * Cookie name to value, sent with every request. Holds the <code>JSESSIONID</code> session cookie.
+     */
+    @NotNull
+    private final Map<String, String> cookies = new LinkedHashMap<>();
+    /**
+     * The HTML element ID to the state node ID.
+     */
+    @NotNull
+    private final Map<String, Integer> nodesByElementId = new HashMap<>();
+    /**
+     * The state node ID to the DOM event listeners registered for that node; event name to the event data expressions.
+     */
+    @NotNull
+    private final Map<Integer, Map<String, JsonObject>> listenersByNode = new HashMap<>();
+    private int uiId = -1;
+    @NotNull
+    private String csrfToken = "";
+    private int syncId = -1;
+    private int clientId = 0;
+
+    /**
+     * Creates the client. Call {@link #bootstrap(MeasureTime)} before sending any RPCs.
+     * @param http the HTTP client, may be shared by many virtual users.
+     * @param url the app URL.
+     */
+    public VaadinProtocolClient(@NotNull HttpClient http, @NotNull String url) {
+        this.http = Objects.requireNonNull(http);
+        this.baseUrl = url.endsWith("/") ? url : url + "/";
+    }
+
+    /**
+     * Loads the bootstrap page, then initializes a new UI via <code>?v-r=init</code>.
+     * @param mt logs the time it took to perform the individual requests.
+     */
+    public void bootstrap(@NotNull MeasureTime mt) {
+        get(baseUrl);
+        mt.log("Bootstrap page");
+        final JsonObject init = parse(get(baseUrl + "?v-r=init&location=&query="));
+        final JsonObject appConfig = init.getAsJsonObject("appConfig");
+        uiId = appConfig.get("v-uiId").getAsInt();
+        handleUidl(appConfig.getAsJsonObject("uidl"));
+        mt.log("Init UI");
+    }
+
+    /**
+     * Sets the <code>value</code> property of given component and fires the <code>change</code> event,
+     * exactly as a TextField does when the user types in a value and leaves the field.
+     * @param elementId the HTML ID of the component, e.g. <code>nameField</code>.
+     * @param value the new value.
+     * @return the UIDL response JSON.
+     */
+    @NotNull
+    public String setValue(@NotNull String elementId, @NotNull String value) {
+        final int node = getNode(elementId);
+        final JsonObject sync = new JsonObject();
+        sync.addProperty("type", "mSync");
+        sync.addProperty("node", node);
+        sync.addProperty("feature", FEATURE_ELEMENT_PROPERTIES);
+        sync.addProperty("property", "value");
+        sync.addProperty("value", value);
+        return sendRpc(sync, event(node, "change"));
+    }
+
+    /**
+     * Clicks given component.
+     * @param elementId the HTML ID of the component, e.g. <code>sayHelloButton</code>.
+     * @return the UIDL response JSON.
+     */
+    @NotNull
+    public String click(@NotNull String elementId) {
+        return sendRpc(event(getNode(elementId), "click"));
+    }
+
+    private int getNode(@NotNull String elementId) {
+        final Integer node = nodesByElementId.get(elementId);
+        if (node == null) {
+            throw new IllegalStateException("No element with ID " + elementId + " in the UI. Available: " + nodesByElementId.keySet());
+        }
+        return node;
+    }
+
+    /**
+     * Creates a DOM event RPC. The event data contains all expressions the server-side listeners asked for, with default values:
+     * the server only accepts events whose data matches the listener registration.
+     */
+    @NotNull
+    private JsonObject event(int node, @NotNull String eventName) {
+        final JsonObject data = new JsonObject();
+        final JsonObject expressions = listenersByNode.getOrDefault(node, Map.of()).get(eventName);
+        if (expressions != null) {
+            for (String expression : expressions.keySet()) {
+                if (expression.endsWith("Key")) {
+                    data.addProperty(expression, false);
+                } else {
+                    data.addProperty(expression, 0);
+                }
+            }
+        }
+        final JsonObject event = new JsonObject();
+        event.addProperty("type", "event");
+        event.addProperty("node", node);
+        event.addProperty("event", eventName);
+        event.add("data", data);
+        return event;
+    }
+
+    @NotNull
+    private String sendRpc(@NotNull JsonObject... invocations) {
+        final JsonArray rpc = new JsonArray();
+        for (JsonObject invocation : invocations) {
+            rpc.add(invocation);
+        }
+        final JsonObject message = new JsonObject();
+        message.addProperty("csrfToken", csrfToken);
+        message.add("rpc", rpc);
+        message.addProperty("syncId", syncId);
+        message.addProperty("clientId", clientId);
+        final String response = send(HttpRequest.newBuilder(URI.create(baseUrl + "?v-r=uidl&v-uiId=" + uiId))
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(message.toString())));
+        handleUidl(parse(response));
+        return response;
+    }
+
+    @NotNull
+    private String get(@NotNull String url) {
+        return send(HttpRequest.newBuilder(URI.create(url)).GET());
+    }
+
+    @NotNull
+    private String send(@NotNull HttpRequest.Builder request) {
+        request.timeout(Duration.ofSeconds(60));
+        if (!cookies.isEmpty()) {
+            request.header("Cookie", cookies.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("; ")));
+        }
+        final HttpResponse<String> response;
+        try {
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        rememberCookies(response.headers().allValues("set-cookie"));
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Request " + response.request().uri() + " failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    private void rememberCookies(@NotNull List<String> setCookieHeaders) {
+        for (String header : setCookieHeaders) {
+            final String nameValue = header.split(";", 2)[0];
+            final int eq = nameValue.indexOf('=');
+            if (eq > 0) {
+                cookies.put(nameValue.substring(0, eq).trim(), nameValue.substring(eq + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * Parses the UIDL response, stripping the <code>for(;;);[...]</code> wrapper.
+     */
+    @NotNull
+    private static JsonObject parse(@NotNull String response) {
+        final String json = response.startsWith(UIDL_PREFIX) ? response.substring(UIDL_PREFIX.length()) : response;
+        final JsonElement element = JsonParser.parseString(json);
+        return element.isJsonArray() ? element.getAsJsonArray().get(0).getAsJsonObject() : element.getAsJsonObject();
+    }
+
+    /**
+     * Remembers the sync IDs and the CSRF token, and scans the state tree changes for element IDs and DOM event listeners.
+     */
+    private void handleUidl(@NotNull JsonObject uidl) {
+        final JsonObject meta = uidl.getAsJsonObject("meta");
+        if (meta != null && (meta.has("appError") || meta.has("sessionExpired"))) {
+            throw new IllegalStateException("Server reported an error: " + meta);
+        }
+        if (uidl.has("Vaadin-Security-Key")) {
+            csrfToken = uidl.get("Vaadin-Security-Key").getAsString();
+        }
+        if (uidl.has("syncId")) {
+            syncId = uidl.get("syncId").getAsInt();
+        }
+        if (uidl.has("clientId")) {
+            clientId = uidl.get("clientId").getAsInt();
+        }
+        final JsonArray changes = uidl.getAsJsonArray("changes");
+        if (changes == null) {
+            return;
+        }
+        for (JsonElement c : changes) {
+            final JsonObject change = c.getAsJsonObject();
+            if (!"put".equals(getString(change, "type")) || !change.has("feat")) {
+                continue;
+            }
+            final int node = change.get("node").getAsInt();
+            final int feature = change.get("feat").getAsInt();
+            final JsonElement value = change.get("value");
+            if (feature == FEATURE_ELEMENT_ATTRIBUTES && "id".equals(getString(change, "key")) && value != null && value.isJsonPrimitive()) {
+                nodesByElementId.put(value.getAsString(), node);
+            } else if (feature == FEATURE_ELEMENT_LISTENERS && value != null && value.isJsonObject()) {
+                listenersByNode.computeIfAbsent(node, n -> new HashMap<>()).put(getString(change, "key"), value.getAsJsonObject());
+            }
+        }
+    }
+
+    @Nullable
+    private static String getString(@NotNull JsonObject object, @NotNull String key) {
+        final JsonElement element = object.get(key);
+        return element == null || !element.isJsonPrimitive() ? null : element.getAsString();
+    }
+}
@@ -0,0 +1,63 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.options.Cookie;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A virtual user multiplexed over a pool of pages, see {@link ParallelPlaywright#runVirtualUsers}. The user owns its cookies
+ * (and therefore its Vaadin session) but not a page: whenever the user is about to act, it's attached to an idle page;
+ * while thinking, it only occupies a bit of memory.
+ * <p></p>
+ * Only accessed by one thread at a time.
+ */
+public final class VirtualUser implements Delayed {
+    /**
+     * The user index, 0-based.
+     */
+    public final int index;
+    /**
+     * The cookies of the user, restored into the page's browser context when attached.
+     */
+    @NotNull
+    List<Cookie> cookies = List.of();
+    /**
+     * When the user wakes up from thinking, as {@link System#nanoTime()}.
+     */
+    long wakeAt;
+    private int iterations = 0;
+
+    VirtualUser(int index, long wakeAt) {
+        this.index = index;
+        this.wakeAt = wakeAt;
+    }
+
+    /**
+     * @return the number of iterations this user has performed so far.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    void iterationDone() {
+        iterations++;
+    }
+
+    @Override
+    public long getDelay(@NotNull TimeUnit unit) {
+        return unit.convert(wakeAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(@NotNull Delayed o) {
+        return Long.compare(wakeAt, ((VirtualUser) o).wakeAt);
+    }
+
+    @Override
+    public String toString() {
+        return "VirtualUser{" + index + ", iterations=" + iterations + "}";
+    }
+}
@@ -0,0 +1,311 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells the warm-up samples of a {@link MeasureTime} from the steady-state samples. The first iterations are slow for reasons
+ * which have nothing to do with the steady-state performance: JIT compilation on the server and in the browsers, the Vaadin bootstrap of
+ * every session, the lazy loading of the frontend bundles. {@link MeasureTime} records the warm-up samples into a separate series,
+ * <code>work item (warm-up)</code>, so that they don't inflate the steady-state stats.
+ * <p></p>
+ * The warm-up ends:
+ * <ul>
+ *     <li>{@link #duration(Duration)}: after a fixed time since the first sample;</li>
+ *     <li>{@link #iterations(int)}: after a fixed number of iterations of every thread; an iteration starts with {@link MeasureTime#start(long)};</li>
+ *     <li>{@link #converge(String)}: automatically, once the rolling percentile of a work item stops changing: the percentile of
+ *     {@value #CONVERGED_WINDOWS} consecutive time windows stays within the tolerance. The windows needed to prove the convergence
+ *     count as warm-up. If the percentile doesn't converge within {@link #MAX_CONVERGE_TIME}, the warm-up ends anyway and a warning is logged.</li>
+ * </ul>
+ * Additionally, the p50 of every work item is collected per iteration index, for the first {@value #CURVE_LENGTH} iterations of every thread:
+ * the curve shows how quickly the browsers warm up (client-only steps like "Fill TextField") and the server warms up (server round trips like
+ * "UIDL TTFB"). See {@link #format()}.
+ * <p></p>
+ * Stateful: use one instance per {@link MeasureTime}, see {@link MeasureTime#setWarmUp(WarmUp)}. Thread-safe.
+ */
+public final class WarmUp {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+    /**
+     * The per-iteration curve covers this many iterations.
+     */
+    static final int CURVE_LENGTH = 20;
+    /**
+     * The percentile of this many consecutive windows must stay within the tolerance.
+     */
+    static final int CONVERGED_WINDOWS = 3;
+    /**
+     * A window with fewer samples of the tracked work item doesn't count.
+     */
+    private static final int MIN_WINDOW_SAMPLES = 5;
+    /**
+     * Give up on the convergence after this time.
+     */
+    @NotNull
+    static final Duration MAX_CONVERGE_TIME = Duration.ofMinutes(2);
+
+    private final long durationNanos;
+    private final int iterations;
+    /**
+     * The work item whose percentile must converge; null if not converging.
+     */
+    @Nullable
+    private final String trackedWorkItem;
+    private final long windowNanos;
+    private final double percentile;
+    private final double tolerance;
+
+    /**
+     * The first sample, as {@link System#nanoTime()}; {@link Long#MIN_VALUE} until the first sample.
+     */
+    @NotNull
+    private final AtomicLong firstSampleNanos = new AtomicLong(Long.MIN_VALUE);
+    /**
+     * When the steady state begins, as {@link System#nanoTime()}; {@link Long#MAX_VALUE} until converged.
+     */
+    private volatile long steadyStateNanos = Long.MAX_VALUE;
+    /**
+     * The end of the last warm-up sample, as {@link System#nanoTime()}; {@link Long#MIN_VALUE} if none.
+     */
+    @NotNull
+    private final AtomicLong lastWarmUpSampleNanos = new AtomicLong(Long.MIN_VALUE);
+    /**
+     * The convergence state, guarded by this.
+     */
+    private long currentWindow = 0;
+    @NotNull
+    private LatencyHistogram currentWindowSamples = new LatencyHistogram();
+    /**
+     * The percentiles of the closed windows; -1 for windows with too few samples.
+     */
+    @NotNull
+    private final List<Long> windowPercentiles = new ArrayList<>();
+    /**
+     * Maps work item name to the durations per iteration index.
+     */
+    @NotNull
+    private final ConcurrentHashMap<String, LatencyHistogram[]> curves = new ConcurrentHashMap<>();
+
+    private WarmUp(long durationNanos, int iterations, @Nullable String trackedWorkItem, long windowNanos, double percentile, double tolerance) {
+        this.durationNanos = durationNanos;
+        this.iterations = iterations;
+        this.trackedWorkItem = trackedWorkItem;
+        this.windowNanos = windowNanos;
+        this.percentile = percentile;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * The samples within given time since the first sample are warm-up.
+     */
+    @NotNull
+    public static WarmUp duration(@NotNull Duration duration) {
+        return new WarmUp(duration.toNanos(), -1, null, 0, 0, 0);
+    }
+
+    /**
+     * The samples of the first <code>iterations</code> iterations of every thread are warm-up.
+     */
+    @NotNull
+    public static WarmUp iterations(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Parameter iterations: invalid value " + iterations + ": must be 0 or higher");
+        }
+        return new WarmUp(-1, iterations, null, 0, 0, 0);
+    }
+
+    /**
+     * The samples are warm-up until the p50 of given work item converges: the p50 of three consecutive 2-second windows stays within 25%.
+     * @param workItemName the work item to track, preferably a server round trip, e.g. "Button click".
+     */
+    @NotNull
+    public static WarmUp converge(@NotNull String workItemName) {
+        return converge(workItemName, Duration.ofSeconds(2), 50, 0.25);
+    }
+
+    /**
+     * The samples are warm-up until given percentile of given work item converges.
+     * @param workItemName the work item to track.
+     * @param window the window size.
+     * @param percentile the percentile to track, 0..100.
+     * @param tolerance the maximum relative difference of the percentiles of {@value #CONVERGED_WINDOWS} consecutive windows, e.g. 0.25.
+     */
+    @NotNull
+    public static WarmUp converge(@NotNull String workItemName, @NotNull Duration window, double percentile, double tolerance) {
+        if (window.toMillis() < 1) {
+            throw new IllegalArgumentException("Parameter window: invalid value " + window + ": must be at least 1ms");
+        }
+        return new WarmUp(-1, -1, workItemName, window.toNanos(), percentile, tolerance);
+    }
+
+    /**
+     * Configures the warm-up from the <code>perf.warmUp</code> system property: <code>auto</code> (the default) for {@link #converge(String)},
+     * e.g. <code>30s</code> for {@link #duration(Duration)}, e.g. <code>3it</code> for {@link #iterations(int)}, <code>none</code> to disable.
+     * @param trackedWorkItem the work item to track in the <code>auto</code> mode.
+     * @return the warm-up, null if disabled.
+     */
+    @Nullable
+    public static WarmUp fromSystemProperties(@NotNull String trackedWorkItem) {
+        final String spec = System.getProperty("perf.warmUp", "auto").trim().toLowerCase(Locale.ROOT);
+        try {
+            if (spec.equals("none")) {
+                return null;
+            } else if (spec.equals("auto")) {
+                return converge(trackedWorkItem);
+            } else if (spec.endsWith("it")) {
+                return iterations(Integer.parseInt(spec.substring(0, spec.length() - 2)));
+            } else {
+                return duration(Duration.parse("PT" + spec));
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("perf.warmUp: invalid value " + spec + ": expected auto, none, e.g. 30s or e.g. 3it", e);
+        }
+    }
+
+    /**
+     * Classifies a sample, see {@link MeasureTime}.
+     * @param workItemName the work item name.
+     * @param endNanos when the work item finished, as {@link System#nanoTime()}.
+     * @param durationNanos the duration of the work item.
+     * @param iteration the index of the iteration of the current thread, 0 for the first iteration.
+     * @param failed true if the work item failed; failures are not part of the curves nor of the convergence.
+     * @return true if the sample is a warm-up sample.
+     */
+    boolean isWarmUp(@NotNull String workItemName, long endNanos, long durationNanos, int iteration, boolean failed) {
+        firstSampleNanos.compareAndSet(Long.MIN_VALUE, endNanos);
+        if (!failed) {
+            if (iteration < CURVE_LENGTH) {
+                curves.computeIfAbsent(workItemName, name -> new LatencyHistogram[CURVE_LENGTH]);
+                final LatencyHistogram[] curve = curves.get(workItemName);
+                synchronized (curve) {
+                    if (curve[iteration] == null) {
+                        curve[iteration] = new LatencyHistogram();
+                    }
+                }
+                curve[iteration].record(durationNanos);
+            }
+            if (workItemName.equals(trackedWorkItem) && steadyStateNanos == Long.MAX_VALUE) {
+                trackConvergence(endNanos, durationNanos);
+            }
+        }
+        final boolean warmUp;
+        if (this.durationNanos >= 0) {
+            warmUp = endNanos - firstSampleNanos.get() < this.durationNanos;
+        } else if (iterations >= 0) {
+            warmUp = iteration < iterations;
+        } else {
+            if (steadyStateNanos == Long.MAX_VALUE && endNanos - firstSampleNanos.get() > MAX_CONVERGE_TIME.toNanos()) {
+                giveUp(endNanos);
+            }
+            warmUp = endNanos < steadyStateNanos;
+        }
+        if (warmUp) {
+            lastWarmUpSampleNanos.accumulateAndGet(endNanos, Math::max);
+        }
+        return warmUp;
+    }
+
+    /**
+     * @return the end of the last warm-up sample so far, as {@link System#nanoTime()}; {@link Long#MIN_VALUE} if none.
+     */
+    long getWarmUpEndNanos() {
+        return lastWarmUpSampleNanos.get();
+    }
+
+    private synchronized void trackConvergence(long endNanos, long durationNanos) {
+        final long window = (endNanos - firstSampleNanos.get()) / windowNanos;
+        if (window > currentWindow) {
+            windowPercentiles.add(currentWindowSamples.getCount() < MIN_WINDOW_SAMPLES ? -1 : currentWindowSamples.getValueAtPercentile(percentile));
+            // windows without any sample break the streak as well.
+            for (long i = currentWindow + 1; i < window; i++) {
+                windowPercentiles.add(-1L);
+            }
+            currentWindow = window;
+            currentWindowSamples = new LatencyHistogram();
+            if (isConverged()) {
+                steadyStateNanos = firstSampleNanos.get() + window * windowNanos;
+                log.info("Warm-up over after " + Duration.ofNanos(steadyStateNanos - firstSampleNanos.get()).toMillis() + "ms: p" + formatPercentile()
+                        + " of " + trackedWorkItem + " converged to " + MeasureTime.formatMs(windowPercentiles.get(windowPercentiles.size() - 1)) + "ms");
+                return;
+            }
+        }
+        currentWindowSamples.record(durationNanos);
+    }
+
+    private boolean isConverged() {
+        if (windowPercentiles.size() < CONVERGED_WINDOWS) {
+            return false;
+        }
+        final List<Long> last = windowPercentiles.subList(windowPercentiles.size() - CONVERGED_WINDOWS, windowPercentiles.size());
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long p : last) {
+            if (p < 0) {
+                return false;
+            }
+            min = Math.min(min, p);
+            max = Math.max(max, p);
+        }
+        return max <= min * (1 + tolerance);
+    }
+
+    private synchronized void giveUp(long endNanos) {
+        if (steadyStateNanos == Long.MAX_VALUE) {
+            steadyStateNanos = endNanos;
+            log.warn("p" + formatPercentile() + " of " + trackedWorkItem + " didn't converge within " + MAX_CONVERGE_TIME.toSeconds() + "s, window percentiles "
+                    + windowPercentiles + "; treating the rest as steady state");
+        }
+    }
+
+    /**
+     * @return how the warm-up ended, and the p50 of every work item per iteration index, in milliseconds.
+     */
+    @NotNull
+    public String format() {
+        final StringBuilder sb = new StringBuilder("Warm-up: ");
+        final long first = firstSampleNanos.get();
+        if (durationNanos >= 0) {
+            sb.append("first ").append(Duration.ofNanos(durationNanos).toMillis()).append("ms");
+        } else if (iterations >= 0) {
+            sb.append("first ").append(iterations).append(" iterations");
+        } else if (steadyStateNanos == Long.MAX_VALUE) {
+            sb.append("p").append(formatPercentile()).append(" of ").append(trackedWorkItem).append(" hasn't converged yet");
+        } else {
+            sb.append("first ").append(Duration.ofNanos(steadyStateNanos - first).toMillis()).append("ms, until p").append(formatPercentile())
+                    .append(" of ").append(trackedWorkItem).append(" converged");
+        }
+        sb.append("; p50 per iteration:");
+        final Map<String, LatencyHistogram[]> sorted = new TreeMap<>(curves);
+        sorted.forEach((name, curve) -> {
+            sb.append("\n  ").append(name).append(':');
+            for (int i = 0; i < curve.length; i++) {
+                if (curve[i] != null) {
+                    sb.append(String.format(Locale.ROOT, " #%d=%s", i, MeasureTime.formatMs(curve[i].getValueAtPercentile(50))));
+                }
+            }
+        });
+        return sb.toString();
+    }
+
+    @NotNull
+    private String formatPercentile() {
+        return percentile % 1 == 0 ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,314 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonObject;
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Aggregates the samples of one or more {@link MeasureTime}s into fixed-size time windows (e.g. one second), and
+ * streams every window to disk as soon as it closes. This reveals what a single aggregate hides: GC pauses, warm-up and
+ * degradation over time. Since the files are append-only and flushed after every window, runs which were killed can be analyzed as well.
+ * <p></p>
+ * Two files are written into the output directory:
+ * <ul>
+ *     <li><code>name.csv</code>: one row per window and work item: the throughput, the error count and rate, the errors by {@link ErrorKind}
+ *     (e.g. <code>timeout=3;assertion=1</code>) and the latency percentiles. The count, the throughput and the percentiles only cover
+ *     the successful samples; the failed ones (e.g. 30 second timeouts) have their own histogram, see the <code>failed_</code> columns.</li>
+ *     <li><code>name.jsonl</code>: one JSON object per window, including windows with no samples, so that gaps are visible.</li>
+ * </ul>
+ * A window is marked as invalid if the load generator was saturated during the window, see {@link #setGovernor(LoadGeneratorGovernor)}.
+ * The windows are aligned to the creation of this object. Samples are assigned to windows by their end time.
+ * A window is written one window after it has closed, to give in-flight samples a chance to arrive. Close this object
+ * to write the remaining windows.
+ */
+public final class WindowedMetrics implements MeasureTime.SampleListener, AutoCloseable {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(WindowedMetrics.class);
+    private static final String CSV_HEADER = "window_start,window_start_ms,window_ms,work_item,count,errors,throughput_per_s,p50_ms,p90_ms,p99_ms,max_ms,valid,error_rate,errors_by_kind,failed_p50_ms,failed_max_ms";
+
+    private final long windowNanos;
+    private final long originNanos = System.nanoTime();
+    private final long originEpochMillis = System.currentTimeMillis();
+    /**
+     * Maps window index to the window. Only open windows are held in memory.
+     */
+    @NotNull
+    private final ConcurrentHashMap<Long, Window> windows = new ConcurrentHashMap<>();
+    /**
+     * The index of the next window to be written; only modified while holding the write lock of {@link #windowsLock}.
+     */
+    private volatile long nextWindowToWrite = 0;
+    /**
+     * The samples are recorded under the read lock, so that they run concurrently; a window is removed from {@link #windows} under
+     * the write lock, so that no sample can land in a window which has already been written.
+     */
+    @NotNull
+    private final ReadWriteLock windowsLock = new ReentrantReadWriteLock();
+    @NotNull
+    private final BufferedWriter csv;
+    @NotNull
+    private final BufferedWriter jsonl;
+    @NotNull
+    private final ScheduledExecutorService flusher;
+    @NotNull
+    private final List<MeasureTime> attached = new ArrayList<>();
+    /**
+     * If not null, windows during which the load generator was saturated are marked as invalid.
+     */
+    @Nullable
+    private volatile LoadGeneratorGovernor governor;
+
+    /**
+     * Creates the aggregator and opens the output files; appends to them if they already exist. A CSV file with different columns,
+     * e.g. written by an older version, is moved aside first, see {@link CsvFiles#prepare(Path, String)}.
+     * @param name the base name of the output files.
+     * @param window the window size, e.g. one second.
+     * @param outputDir where to write the files; created if it doesn't exist.
+     */
+    public WindowedMetrics(@NotNull String name, @NotNull Duration window, @NotNull Path outputDir) {
+        this.windowNanos = window.toNanos();
+        if (windowNanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+            throw new IllegalArgumentException("Parameter window: invalid value " + window + ": must be at least 1ms");
+        }
+        try {
+            Files.createDirectories(outputDir);
+            final Path csvFile = outputDir.resolve(name + ".csv");
+            CsvFiles.prepare(csvFile, CSV_HEADER);
+            csv = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            jsonl = Files.newBufferedWriter(outputDir.resolve(name + ".jsonl"), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleAtFixedRate(() -> {
+            try {
+                // keep one extra window open, for samples which are still in flight.
+                write(currentWindow() - 1);
+            } catch (Exception e) {
+                log.error("Failed to write windowed metrics", e);
+            }
+        }, windowNanos, windowNanos, TimeUnit.NANOSECONDS);
+        log.info("Streaming windowed metrics to " + outputDir.resolve(name + ".csv") + " and .jsonl");
+    }
+
+    /**
+     * Starts aggregating the samples of given stats.
+     * @param stats the stats to listen to.
+     * @return this
+     */
+    @NotNull
+    public WindowedMetrics attach(@NotNull MeasureTime stats) {
+        stats.addListener(this);
+        synchronized (attached) {
+            attached.add(stats);
+        }
+        return this;
+    }
+
+    /**
+     * Marks windows during which the load generator was saturated as invalid: the numbers in those windows
+     * reflect the load generator rather than the app.
+     * @param governor the governor, null to mark all windows as valid.
+     * @return this
+     */
+    @NotNull
+    public WindowedMetrics setGovernor(@Nullable LoadGeneratorGovernor governor) {
+        this.governor = governor;
+        return this;
+    }
+
+    private long currentWindow() {
+        return (System.nanoTime() - originNanos) / windowNanos;
+    }
+
+    @Override
+    public void onSample(@NotNull String workItemName, long endNanos, long durationNanos, boolean failed) {
+        record(workItemName, endNanos, durationNanos, failed ? ErrorKind.OTHER : null);
+    }
+
+    @Override
+    public void onFailure(@NotNull String workItemName, long endNanos, long durationNanos, @NotNull ErrorKind kind) {
+        record(workItemName, endNanos, durationNanos, kind);
+    }
+
+    private void record(@NotNull String workItemName, long endNanos, long durationNanos, @Nullable ErrorKind failure) {
+        final Lock lock = windowsLock.readLock();
+        lock.lock();
+        try {
+            // a sample arriving late for an already written window is attributed to the next window to be written.
+            final long index = Math.max(nextWindowToWrite, (endNanos - originNanos) / windowNanos);
+            windows.computeIfAbsent(index, i -> new Window()).record(workItemName, durationNanos, failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes all windows up to given index (exclusive) which haven't been written yet.
+     */
+    private synchronized void write(long upToIndex) throws IOException {
+        while (nextWindowToWrite < upToIndex) {
+            final long index = nextWindowToWrite;
+            final Window window;
+            final Lock lock = windowsLock.writeLock();
+            lock.lock();
+            try {
+                window = windows.remove(index);
+                nextWindowToWrite = index + 1;
+            } finally {
+                lock.unlock();
+            }
+            writeWindow(index, window == null ? new Window() : window);
+        }
+        csv.flush();
+        jsonl.flush();
+    }
+
+    private void writeWindow(long index, @NotNull Window window) throws IOException {
+        final long startMs = originEpochMillis + TimeUnit.NANOSECONDS.toMillis(index * windowNanos);
+        final double windowSeconds = windowNanos / 1_000_000_000d;
+        final LoadGeneratorGovernor governor = this.governor;
+        final boolean valid = governor == null || !governor.wasSaturated(originNanos + index * windowNanos, originNanos + (index + 1) * windowNanos);
+        final JsonObject items = new JsonObject();
+        for (Map.Entry<String, ItemWindow> entry : new TreeMap<>(window.items).entrySet()) {
+            final LatencyHistogram h = entry.getValue().durations;
+            final LatencyHistogram failed = entry.getValue().failedDurations;
+            final long count = h.getCount();
+            final long errors = failed.getCount();
+            final double throughput = count / windowSeconds;
+            final double errorRate = count + errors == 0 ? 0 : (double) errors / (count + errors);
+            final Map<String, Long> errorsByKind = entry.getValue().getErrorsByKind();
+            final StringBuilder errorsByKindCsv = new StringBuilder();
+            errorsByKind.forEach((kind, kindCount) -> errorsByKindCsv.append(errorsByKindCsv.length() == 0 ? "" : ";").append(kind).append('=').append(kindCount));
+            csv.write(String.join(",", Instant.ofEpochMilli(startMs).toString(), Long.toString(startMs), Long.toString(TimeUnit.NANOSECONDS.toMillis(windowNanos)),
+                    csvEscape(entry.getKey()), Long.toString(count), Long.toString(errors), String.format(Locale.ROOT, "%.3f", throughput),
+                    MeasureTime.formatMs(h.getValueAtPercentile(50)), MeasureTime.formatMs(h.getValueAtPercentile(90)),
+                    MeasureTime.formatMs(h.getValueAtPercentile(99)), MeasureTime.formatMs(h.getMax()), Boolean.toString(valid),
+                    String.format(Locale.ROOT, "%.4f", errorRate), errorsByKindCsv.toString(),
+                    errors == 0 ? "" : MeasureTime.formatMs(failed.getValueAtPercentile(50)), errors == 0 ? "" : MeasureTime.formatMs(failed.getMax())));
+            csv.newLine();
+            final JsonObject item = new JsonObject();
+            item.addProperty("count", count);
+            item.addProperty("errors", errors);
+            item.addProperty("errorRate", errorRate);
+            final JsonObject errorsByKindJson = new JsonObject();
+            errorsByKind.forEach(errorsByKindJson::addProperty);
+            item.add("errorsByKind", errorsByKindJson);
+            item.addProperty("throughputPerSecond", throughput);
+            item.addProperty("p50Ms", h.getValueAtPercentile(50) / 1_000_000d);
+            item.addProperty("p90Ms", h.getValueAtPercentile(90) / 1_000_000d);
+            item.addProperty("p99Ms", h.getValueAtPercentile(99) / 1_000_000d);
+            item.addProperty("maxMs", h.getMax() / 1_000_000d);
+            if (errors > 0) {
+                item.addProperty("failedP50Ms", failed.getValueAtPercentile(50) / 1_000_000d);
+                item.addProperty("failedMaxMs", failed.getMax() / 1_000_000d);
+            }
+            items.add(entry.getKey(), item);
+        }
+        final JsonObject json = new JsonObject();
+        json.addProperty("start", startMs);
+        json.addProperty("windowMs", TimeUnit.NANOSECONDS.toMillis(windowNanos));
+        json.addProperty("valid", valid);
+        json.add("items", items);
+        jsonl.write(json.toString());
+        jsonl.newLine();
+    }
+
+    @NotNull
+    private static String csvEscape(@NotNull String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (attached) {
+            attached.forEach(stats -> stats.removeListener(this));
+        }
+        flusher.shutdown();
+        while (!flusher.awaitTermination(1, TimeUnit.DAYS)) {}
+        // write everything including the current, partial window.
+        write(currentWindow() + 1);
+        csv.close();
+        jsonl.close();
+    }
+
+    /**
+     * A single time window: maps work item name to its stats.
+     */
+    private static final class Window {
+        @NotNull
+        private final ConcurrentHashMap<String, ItemWindow> items = new ConcurrentHashMap<>();
+
+        /**
+         * @param failure why the work item failed, null if it succeeded.
+         */
+        void record(@NotNull String workItemName, long durationNanos, @Nullable ErrorKind failure) {
+            final ItemWindow item = items.computeIfAbsent(workItemName, n -> new ItemWindow());
+            if (failure == null) {
+                item.durations.record(durationNanos);
+            } else {
+                item.failedDurations.record(durationNanos);
+                item.errorsByKind.incrementAndGet(failure.ordinal());
+            }
+        }
+    }
+
+    private static final class ItemWindow {
+        /**
+         * The durations of the successful samples.
+         */
+        @NotNull
+        private final LatencyHistogram durations = new LatencyHistogram();
+        /**
+         * The durations of the failed samples, kept apart so that e.g. timeouts don't distort the percentiles of the successes.
+         */
+        @NotNull
+        private final LatencyHistogram failedDurations = new LatencyHistogram();
+        /**
+         * Indexed by {@link ErrorKind#ordinal()}.
+         */
+        @NotNull
+        private final AtomicLongArray errorsByKind = new AtomicLongArray(ErrorKind.values().length);
+
+        /**
+         * @return maps {@link ErrorKind#label} to the number of errors of that kind; only kinds which occurred.
+         */
+        @NotNull
+        Map<String, Long> getErrorsByKind() {
+            final Map<String, Long> result = new TreeMap<>();
+            for (ErrorKind kind : ErrorKind.values()) {
+                final long count = errorsByKind.get(kind.ordinal());
+                if (count > 0) {
+                    result.put(kind.label, count);
+                }
+            }
+            return result;
+        }
+    }
+}
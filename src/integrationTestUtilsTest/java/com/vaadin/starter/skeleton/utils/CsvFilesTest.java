@@ -0,0 +1,65 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link CsvFiles}.
+ */
+public class CsvFilesTest {
+    @TempDir
+    public Path dir;
+
+    @Test
+    public void createsNewFileWithHeader() throws IOException {
+        final Path file = dir.resolve("run.csv");
+        CsvFiles.prepare(file, "a,b");
+        assertEquals("a,b\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsFileWithSameHeader() throws IOException {
+        final Path file = dir.resolve("run.csv");
+        Files.writeString(file, "a,b\n1,2\n", StandardCharsets.UTF_8);
+        CsvFiles.prepare(file, "a,b");
+        assertEquals("a,b\n1,2\n", Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(1, listFiles().size());
+    }
+
+    @Test
+    public void writesHeaderIntoEmptyFile() throws IOException {
+        final Path file = dir.resolve("run.csv");
+        Files.createFile(file);
+        CsvFiles.prepare(file, "a,b");
+        assertEquals("a,b\n", Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void movesAsideFileWithDifferentHeader() throws IOException {
+        final Path file = dir.resolve("run.csv");
+        Files.writeString(file, "a\n1\n", StandardCharsets.UTF_8);
+        CsvFiles.prepare(file, "a,b");
+        assertEquals("a,b\n", Files.readString(file, StandardCharsets.UTF_8));
+        final List<Path> files = listFiles();
+        assertEquals(2, files.size());
+        final Path rotated = files.stream().filter(f -> !f.equals(file)).findFirst().orElseThrow();
+        assertTrue(rotated.getFileName().toString().matches("run\\.\\d+\\.csv"), rotated.toString());
+        assertEquals("a\n1\n", Files.readString(rotated, StandardCharsets.UTF_8));
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+}
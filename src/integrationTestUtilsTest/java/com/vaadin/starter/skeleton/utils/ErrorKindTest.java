@@ -0,0 +1,71 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.TimeoutError;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ErrorKind}.
+ */
+public class ErrorKindTest {
+    @Test
+    public void classifyTimeout() {
+        assertEquals(ErrorKind.TIMEOUT, ErrorKind.classify(new TimeoutError("Timeout 30000ms exceeded.")));
+        // Playwright failures are often wrapped.
+        assertEquals(ErrorKind.TIMEOUT, ErrorKind.classify(new RuntimeException(new TimeoutError("Timeout 30000ms exceeded."))));
+    }
+
+    @Test
+    public void classifyAssertion() {
+        assertEquals(ErrorKind.ASSERTION, ErrorKind.classify(new AssertionError("expected: <1> but was: <2>")));
+    }
+
+    @Test
+    public void classifyNavigation() {
+        assertEquals(ErrorKind.NAVIGATION, ErrorKind.classify(new PlaywrightException("net::ERR_CONNECTION_REFUSED at http://localhost:8080/")));
+        assertEquals(ErrorKind.NAVIGATION, ErrorKind.classify(new PlaywrightException("Navigation failed because page crashed!")));
+    }
+
+    @Test
+    public void classifyOther() {
+        assertEquals(ErrorKind.OTHER, ErrorKind.classify(new PlaywrightException("Element is not attached to the DOM")));
+        assertEquals(ErrorKind.OTHER, ErrorKind.classify(new IllegalStateException("foo")));
+        assertEquals(ErrorKind.OTHER, ErrorKind.classify(new PlaywrightException(null)));
+    }
+
+    @Test
+    public void serverErrorTakesPrecedence() {
+        assertEquals(ErrorKind.SERVER_ERROR, ErrorKind.classify(new TimeoutError("Timeout 30000ms exceeded."), "500 http://localhost:8080/?v-r=uidl"));
+        assertEquals(ErrorKind.TIMEOUT, ErrorKind.classify(new TimeoutError("Timeout 30000ms exceeded."), null));
+    }
+
+    @Test
+    public void stepFailureKeepsItsKind() {
+        final StepFailedException failure = new StepFailedException("Button click", ErrorKind.ASSERTION, new AssertionError());
+        assertEquals(ErrorKind.ASSERTION, ErrorKind.classify(failure));
+        assertEquals(ErrorKind.ASSERTION, ErrorKind.classify(failure, "500 http://localhost:8080/?v-r=uidl"));
+    }
+
+    @Test
+    public void classifyIgnoresServerErrorOfCurrentThread() {
+        ErrorKind.serverErrorSeen("500 http://localhost:8080/?v-r=uidl");
+        try {
+            assertEquals(ErrorKind.OTHER, ErrorKind.classify(new IllegalStateException("foo")));
+        } finally {
+            ErrorKind.clearServerError();
+        }
+    }
+
+    @Test
+    public void ofSeriesName() {
+        for (ErrorKind kind : ErrorKind.values()) {
+            assertEquals(kind, ErrorKind.ofSeriesName("Button click (" + kind.label + ")"));
+        }
+        assertNull(ErrorKind.ofSeriesName("Button click"));
+        assertNull(ErrorKind.ofSeriesName("Button click (warm-up)"));
+        assertNull(ErrorKind.ofSeriesName("Iteration (service time)"));
+        assertNull(ErrorKind.ofSeriesName("timeout"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.vaadin.starter.skeleton.metrics.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HistogramStatistics} against reference values. Values up to 127 are recorded exactly by {@link LatencyHistogram},
+ * so the small textbook samples below are ranked exactly like the raw values.
+ */
+public class HistogramStatisticsTest {
+    @Test
+    public void mannWhitneyWithoutTies() {
+        final LatencyHistogram baseline = histogram(1, 2, 3, 4, 5);
+        final LatencyHistogram candidate = histogram(6, 7, 8, 9, 10);
+        // U = 25 (every candidate value is larger), variance = 5*5*11/12; z = (25 - 12.5 - 0.5) / sqrt(22.9167) = 2.5067.
+        assertEquals(0.006093, HistogramStatistics.mannWhitneyPValue(baseline, candidate), 1e-5);
+        assertEquals(1, HistogramStatistics.probabilityOfSlower(baseline, candidate), 1e-9);
+        // the other way round, the candidate is faster: U = 0, z = (0 - 12.5 - 0.5) / sqrt(22.9167) = -2.7156.
+        assertEquals(0.996692, HistogramStatistics.mannWhitneyPValue(candidate, baseline), 1e-5);
+        assertEquals(0, HistogramStatistics.probabilityOfSlower(candidate, baseline), 1e-9);
+    }
+
+    @Test
+    public void mannWhitneyWithTies() {
+        final LatencyHistogram baseline = histogram(10, 12, 12, 14, 15, 15, 15, 18);
+        final LatencyHistogram candidate = histogram(12, 15, 16, 18, 18, 20, 21, 22);
+        // average ranks: U = 53.5; the ties of 12 (3x), 15 (4x) and 18 (3x) reduce the variance from 90.67 to 88.27.
+        // z = (53.5 - 32 - 0.5) / sqrt(88.2667) = 2.2352.
+        assertEquals(0.012701, HistogramStatistics.mannWhitneyPValue(baseline, candidate), 1e-5);
+        assertEquals(53.5 / 64, HistogramStatistics.probabilityOfSlower(baseline, candidate), 1e-9);
+    }
+
+    @Test
+    public void mannWhitneyOfIdenticalSamples() {
+        final LatencyHistogram h = histogram(1, 2, 3, 4, 5, 6, 7, 8);
+        assertEquals(0.5, HistogramStatistics.probabilityOfSlower(h, h), 1e-9);
+        assertTrue(HistogramStatistics.mannWhitneyPValue(h, h) > 0.5);
+    }
+
+    @Test
+    public void mannWhitneyDegenerateCases() {
+        assertEquals(1, HistogramStatistics.mannWhitneyPValue(new LatencyHistogram(), histogram(1, 2)), 0);
+        assertEquals(1, HistogramStatistics.mannWhitneyPValue(histogram(1, 2), new LatencyHistogram()), 0);
+        // all values tied: no variance.
+        assertEquals(1, HistogramStatistics.mannWhitneyPValue(histogram(5, 5, 5), histogram(5, 5)), 0);
+        assertEquals(0.5, HistogramStatistics.probabilityOfSlower(new LatencyHistogram(), histogram(1, 2)), 0);
+    }
+
+    @Test
+    public void percentileInterval() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        }
+        // the 95% confidence interval of the median of 100 values lies between the 40th and the 61st value (Conover's table).
+        final long[] interval = HistogramStatistics.percentileInterval(h, 50, 1.96);
+        assertArrayEquals(new long[]{40, 61}, interval);
+        // the upper bound is clamped to the largest value.
+        assertEquals(100, HistogramStatistics.percentileInterval(h, 99, 1.96)[1]);
+    }
+
+    @Test
+    public void rateDecrease() {
+        // 100/s vs 90/s over 10 seconds: z = (90 - 100) / sqrt(1000/100 + 900/100) = -2.2942.
+        assertEquals(0.010891, HistogramStatistics.rateDecreasePValue(1000, 10, 900, 10), 1e-5);
+        // an increase is not a decrease.
+        assertEquals(1 - 0.010891, HistogramStatistics.rateDecreasePValue(900, 10, 1000, 10), 1e-5);
+        assertEquals(0.5, HistogramStatistics.rateDecreasePValue(1000, 10, 1000, 10), 1e-7);
+        assertEquals(1, HistogramStatistics.rateDecreasePValue(1000, 0, 900, 10), 0);
+        assertEquals(1, HistogramStatistics.rateDecreasePValue(0, 10, 0, 10), 0);
+    }
+
+    @Test
+    public void erfc() {
+        assertEquals(1, HistogramStatistics.erfc(0), 1e-7);
+        assertEquals(0.4795001222, HistogramStatistics.erfc(0.5), 1e-7);
+        assertEquals(0.1572992071, HistogramStatistics.erfc(1), 1e-7);
+        assertEquals(1.8427007929, HistogramStatistics.erfc(-1), 1e-7);
+        assertEquals(0.0046777350, HistogramStatistics.erfc(2), 1e-7);
+    }
+
+    @Test
+    public void normalCdf() {
+        assertEquals(0.5, HistogramStatistics.normalCdf(0), 1e-7);
+        assertEquals(0.9750021, HistogramStatistics.normalCdf(1.96), 1e-6);
+        assertEquals(0.0249979, HistogramStatistics.normalCdf(-1.96), 1e-6);
+    }
+
+    @Test
+    public void normalQuantile() {
+        // one-sided: the quantile exceeded with given probability.
+        assertEquals(1.959964, HistogramStatistics.normalQuantile(0.025), 1e-5);
+        assertEquals(1.644854, HistogramStatistics.normalQuantile(0.05), 1e-5);
+        assertEquals(2.326348, HistogramStatistics.normalQuantile(0.01), 1e-5);
+        assertEquals(0, HistogramStatistics.normalQuantile(0.5), 1e-6);
+    }
+
+    @NotNull
+    private static LatencyHistogram histogram(long... values) {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (long value : values) {
+            h.record(value);
+        }
+        return h;
+    }
+}
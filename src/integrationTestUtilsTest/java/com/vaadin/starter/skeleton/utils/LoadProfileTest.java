@@ -0,0 +1,155 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link LoadProfile}.
+ */
+public class LoadProfileTest {
+    @NotNull
+    private static final LoadProfile PROFILE = new LoadProfile()
+            .ramp("ramp-up", 10, Duration.ofSeconds(10))
+            .hold("hold", Duration.ofSeconds(20))
+            .spike("spike", 30, Duration.ofSeconds(5))
+            .hold("after-spike", Duration.ofSeconds(5))
+            .step("step", 4, Duration.ofSeconds(5))
+            .ramp("ramp-down", 0, Duration.ofSeconds(4));
+
+    @Test
+    public void phases() {
+        assertEquals("ramp-up:0->10@PT10S,hold:10->10@PT20S,spike:30->30@PT5S,after-spike:10->10@PT5S,step:4->4@PT5S,ramp-down:4->0@PT4S", PROFILE.toSpec());
+        assertEquals(Duration.ofSeconds(49), PROFILE.getDuration());
+        assertEquals(30, PROFILE.getMaxUsers());
+        assertEquals(0, new LoadProfile().getMaxUsers());
+        assertEquals(Duration.ZERO, new LoadProfile().getDuration());
+    }
+
+    @Test
+    public void usersAt() {
+        // the ramp is linear, rounded.
+        assertEquals(0, PROFILE.usersAt(0));
+        assertEquals(1, PROFILE.usersAt(ms(500)));
+        assertEquals(5, PROFILE.usersAt(seconds(5)));
+        assertEquals(10, PROFILE.usersAt(seconds(10) - 1));
+        assertEquals(10, PROFILE.usersAt(seconds(10)));
+        assertEquals(10, PROFILE.usersAt(seconds(29)));
+        // the spike starts and ends immediately.
+        assertEquals(30, PROFILE.usersAt(seconds(30)));
+        assertEquals(30, PROFILE.usersAt(seconds(35) - 1));
+        assertEquals(10, PROFILE.usersAt(seconds(35)));
+        assertEquals(4, PROFILE.usersAt(seconds(40)));
+        assertEquals(4, PROFILE.usersAt(seconds(45)));
+        assertEquals(2, PROFILE.usersAt(seconds(47)));
+        assertEquals(0, PROFILE.usersAt(seconds(49) - ms(100)));
+        // finished.
+        assertEquals(0, PROFILE.usersAt(seconds(49)));
+        assertEquals(0, PROFILE.usersAt(seconds(1000)));
+    }
+
+    @Test
+    public void phaseAt() {
+        assertEquals("ramp-up", PROFILE.phaseAt(0).name);
+        assertEquals("ramp-up", PROFILE.phaseAt(seconds(10) - 1).name);
+        assertEquals("hold", PROFILE.phaseAt(seconds(10)).name);
+        assertEquals("spike", PROFILE.phaseAt(seconds(30)).name);
+        assertEquals("after-spike", PROFILE.phaseAt(seconds(35)).name);
+        assertEquals("step", PROFILE.phaseAt(seconds(40)).name);
+        assertEquals("ramp-down", PROFILE.phaseAt(seconds(49) - 1).name);
+        assertNull(PROFILE.phaseAt(seconds(49)));
+    }
+
+    @Test
+    public void phaseUsersAt() {
+        final LoadProfile.Phase rampDown = PROFILE.getPhases().get(5);
+        assertEquals(4, rampDown.usersAt(0));
+        assertEquals(3, rampDown.usersAt(seconds(1)));
+        assertEquals(0, rampDown.usersAt(seconds(4)));
+        // clamped after the end of the phase.
+        assertEquals(0, rampDown.usersAt(seconds(10)));
+    }
+
+    @Test
+    public void phaseStats() {
+        final LoadProfile profile = new LoadProfile()
+                .ramp("ramp-up", 10, Duration.ofSeconds(10))
+                .hold("hold", Duration.ofSeconds(20))
+                .ramp("ramp-up", 20, Duration.ofSeconds(10));
+        // phases with the same name share their stats.
+        assertEquals(List.of("ramp-up", "hold"), new ArrayList<>(profile.newPhaseStats().keySet()));
+        assertEquals("Phase hold", profile.newPhaseStats().get("hold").getName());
+    }
+
+    @Test
+    public void invalidPhases() {
+        assertThrows(IllegalArgumentException.class, () -> new LoadProfile().ramp("ramp-up", -1, Duration.ofSeconds(10)));
+        assertThrows(IllegalArgumentException.class, () -> new LoadProfile().hold("hold", Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new LoadProfile().spike("spike", 10, Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    public void specRoundTrip() {
+        final LoadProfile profile = new LoadProfile()
+                .ramp("ramp-up", 200, Duration.ofMinutes(5))
+                .hold("hold", Duration.ofMinutes(30))
+                .spike("spike", 400, Duration.ofSeconds(90))
+                .step("step", 50, Duration.ofMillis(1500))
+                .hold("cool-down", Duration.ofMinutes(5));
+        final String spec = profile.toSpec();
+        assertEquals("ramp-up:0->200@PT5M,hold:200->200@PT30M,spike:400->400@PT1M30S,step:50->50@PT1.5S,cool-down:50->50@PT5M", spec);
+        final LoadProfile parsed = LoadProfile.parse(spec);
+        assertSamePhases(profile, parsed);
+        assertEquals(spec, parsed.toSpec());
+        assertEquals(profile.getDuration(), parsed.getDuration());
+        assertEquals(profile.getMaxUsers(), parsed.getMaxUsers());
+    }
+
+    @Test
+    public void phaseNameWithColon() {
+        final LoadProfile profile = new LoadProfile().ramp("phase: 1", 5, Duration.ofSeconds(20));
+        assertSamePhases(profile, LoadProfile.parse(profile.toSpec()));
+    }
+
+    @Test
+    public void parsedProfileCanBeExtended() {
+        final LoadProfile parsed = LoadProfile.parse("ramp-up:0->5@PT20S").hold("hold", Duration.ofSeconds(30));
+        assertEquals("ramp-up:0->5@PT20S,hold:5->5@PT30S", parsed.toSpec());
+    }
+
+    @Test
+    public void parseInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("hold:5@PT30S"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("hold:5->x@PT30S"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("hold:5->5@30s"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("hold:5->5@PT0S"));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse("hold:-1->5@PT30S"));
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    private static void assertSamePhases(@NotNull LoadProfile expected, @NotNull LoadProfile actual) {
+        assertEquals(expected.getPhases().size(), actual.getPhases().size());
+        for (int i = 0; i < expected.getPhases().size(); i++) {
+            final LoadProfile.Phase e = expected.getPhases().get(i);
+            final LoadProfile.Phase a = actual.getPhases().get(i);
+            assertEquals(e.name, a.name);
+            assertEquals(e.fromUsers, a.fromUsers);
+            assertEquals(e.toUsers, a.toUsers);
+            assertEquals(e.duration, a.duration);
+        }
+    }
+}
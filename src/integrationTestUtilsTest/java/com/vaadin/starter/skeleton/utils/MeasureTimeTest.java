@@ -0,0 +1,117 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.microsoft.playwright.TimeoutError;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link MeasureTime#step(String, Runnable)}.
+ */
+public class MeasureTimeTest {
+    @Test
+    public void successfulStep() {
+        final MeasureTime stats = new MeasureTime("test");
+        stats.start(System.nanoTime());
+        stats.step("Button click", () -> {});
+        assertEquals(Set.of("Button click"), stats.getWorkItemNames());
+        assertEquals(1, stats.snapshot("Button click").getCount());
+    }
+
+    @Test
+    public void failedStep() {
+        final MeasureTime stats = new MeasureTime("test");
+        final List<String> failures = listenToFailures(stats);
+        stats.start(System.nanoTime());
+        final AssertionError cause = new AssertionError("expected: <1> but was: <2>");
+        final StepFailedException ex = assertThrows(StepFailedException.class, () -> stats.step("Button click", () -> {
+            throw cause;
+        }));
+        assertEquals("Button click", ex.step);
+        assertEquals(ErrorKind.ASSERTION, ex.kind);
+        assertSame(cause, ex.getCause());
+        assertEquals(Set.of("Button click (assertion)"), stats.getWorkItemNames());
+        assertEquals(List.of("Button click (assertion)"), failures);
+    }
+
+    @Test
+    public void nestedStepFailureIsLoggedOnce() {
+        final MeasureTime stats = new MeasureTime("test");
+        final List<String> failures = listenToFailures(stats);
+        stats.start(System.nanoTime());
+        final StepFailedException ex = assertThrows(StepFailedException.class, () -> stats.step("Outer", () -> {
+            stats.step("Inner", () -> {
+                throw new TimeoutError("Timeout 30000ms exceeded.");
+            });
+        }));
+        assertEquals("Inner", ex.step);
+        assertEquals(ErrorKind.TIMEOUT, ex.kind);
+        assertEquals(Set.of("Inner (timeout)"), stats.getWorkItemNames());
+        assertEquals(List.of("Inner (timeout)"), failures);
+    }
+
+    @Test
+    public void serverErrorDuringStep() {
+        final MeasureTime stats = new MeasureTime("test");
+        stats.start(System.nanoTime());
+        final StepFailedException ex = assertThrows(StepFailedException.class, () -> stats.step("Button click", () -> {
+            ErrorKind.serverErrorSeen("500 http://localhost:8080/?v-r=uidl");
+            throw new TimeoutError("Timeout 30000ms exceeded.");
+        }));
+        assertEquals(ErrorKind.SERVER_ERROR, ex.kind);
+        assertEquals(1, ex.getSuppressed().length);
+        assertTrue(ex.getSuppressed()[0].getMessage().contains("500 http://localhost:8080/?v-r=uidl"));
+        assertEquals(Set.of("Button click (server error)"), stats.getWorkItemNames());
+        assertNull(ErrorKind.getServerError());
+    }
+
+    @Test
+    public void serverErrorOfSuccessfulStepIsForgotten() {
+        final MeasureTime stats = new MeasureTime("test");
+        stats.start(System.nanoTime());
+        stats.step("Button click", () -> ErrorKind.serverErrorSeen("500 http://localhost:8080/?v-r=uidl"));
+        assertNull(ErrorKind.getServerError());
+        final StepFailedException ex = assertThrows(StepFailedException.class, () -> stats.step("Fill TextField", () -> {
+            throw new TimeoutError("Timeout 30000ms exceeded.");
+        }));
+        assertEquals(ErrorKind.TIMEOUT, ex.kind);
+    }
+
+    @Test
+    public void serverErrorOutsideOfStepsIsKept() {
+        final MeasureTime stats = new MeasureTime("test");
+        stats.start(System.nanoTime());
+        ErrorKind.serverErrorSeen("503 http://localhost:8080/");
+        try {
+            stats.step("Button click", () -> {});
+            assertEquals("503 http://localhost:8080/", ErrorKind.getServerError());
+        } finally {
+            ErrorKind.clearServerError();
+        }
+    }
+
+    /**
+     * @return the failure series names, in the order the failures were reported to the listeners.
+     */
+    @NotNull
+    private static List<String> listenToFailures(@NotNull MeasureTime stats) {
+        final List<String> failures = new ArrayList<>();
+        stats.addListener(new MeasureTime.SampleListener() {
+            @Override
+            public void onSample(@NotNull String workItemName, long endNanos, long durationNanos, boolean failed) {
+                assertFalse(failed);
+            }
+
+            @Override
+            public void onFailure(@NotNull String workItemName, long endNanos, long durationNanos, @NotNull ErrorKind kind) {
+                failures.add(workItemName + " (" + kind.label + ")");
+            }
+        });
+        return failures;
+    }
+}
@@ -0,0 +1,105 @@
+package com.vaadin.starter.skeleton.utils;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the comparison of {@link PerformanceBaseline}: a run is written the way a baseline is stored, read back and compared.
+ */
+public class PerformanceBaselineTest {
+    @TempDir
+    public Path dir;
+
+    @Test
+    public void sameRunHasNoRegressions() {
+        final JsonObject baseline = roundTrip(run(1, 1));
+        final PerformanceBaseline.Comparison comparison = compare(baseline, roundTrip(run(1, 1)));
+        assertEquals(0, comparison.regressions, comparison.format());
+        assertTrue(comparison.format().contains("no regressions"), comparison.format());
+    }
+
+    @Test
+    public void slowerRunRegresses() {
+        final PerformanceBaseline.Comparison comparison = compare(roundTrip(run(1, 1)), roundTrip(run(2, 1)));
+        assertEquals(1, comparison.regressions, comparison.format());
+        assertTrue(comparison.format().contains("p50 regressed"), comparison.format());
+        assertTrue(comparison.format().contains("p99 regressed"), comparison.format());
+    }
+
+    @Test
+    public void lowerThroughputRegresses() {
+        final JsonObject candidate = roundTrip(run(1, 1));
+        // the same samples over twice the time.
+        setElapsedSeconds(candidate, 20);
+        final PerformanceBaseline.Comparison comparison = compare(roundTrip(run(1, 1)), candidate);
+        assertEquals(1, comparison.regressions, comparison.format());
+        assertTrue(comparison.format().contains("throughput regressed"), comparison.format());
+    }
+
+    @Test
+    public void thinkTimeIsNotChecked() {
+        final PerformanceBaseline.Comparison comparison = compare(roundTrip(run(1, 1)), roundTrip(run(1, 3)));
+        assertEquals(0, comparison.regressions, comparison.format());
+        assertTrue(comparison.format().contains("Sleep                                    think time, not checked"), comparison.format());
+    }
+
+    @Test
+    public void failuresAreNotChecked() {
+        final MeasureTime stats = stats(1, 1);
+        for (int i = 0; i < 100; i++) {
+            stats.record("Button click", TimeUnit.SECONDS.toNanos(30), ErrorKind.TIMEOUT);
+        }
+        final JsonObject candidate = PerformanceBaseline.toJson("test", stats);
+        setElapsedSeconds(candidate, 10);
+        final PerformanceBaseline.Comparison comparison = compare(roundTrip(run(1, 1)), roundTrip(candidate));
+        assertEquals(0, comparison.regressions, comparison.format());
+        assertTrue(comparison.format().contains("Button click (timeout)                   100 failures, not checked"), comparison.format());
+    }
+
+    /**
+     * Writes given results the way a baseline is stored, and reads them back.
+     */
+    @NotNull
+    private JsonObject roundTrip(@NotNull JsonObject results) {
+        final Path file = dir.resolve("baseline.json");
+        PerformanceBaseline.write(file, results);
+        return PerformanceBaseline.read(file);
+    }
+
+    @NotNull
+    private static PerformanceBaseline.Comparison compare(@NotNull JsonObject baseline, @NotNull JsonObject candidate) {
+        return new PerformanceBaseline.Comparison("test", baseline.getAsJsonObject("items"), candidate.getAsJsonObject("items"));
+    }
+
+    /**
+     * @return the results of a run of 10 seconds with 200 button clicks and think times each.
+     */
+    @NotNull
+    private static JsonObject run(double clickSlowdown, double thinkTimeSlowdown) {
+        final JsonObject results = PerformanceBaseline.toJson("test", stats(clickSlowdown, thinkTimeSlowdown));
+        // the stats above took microseconds; make the throughput deterministic.
+        setElapsedSeconds(results, 10);
+        return results;
+    }
+
+    @NotNull
+    private static MeasureTime stats(double clickSlowdown, double thinkTimeSlowdown) {
+        final MeasureTime stats = new MeasureTime("test");
+        for (int i = 0; i < 200; i++) {
+            stats.record("Button click", (long) ((TimeUnit.MILLISECONDS.toNanos(10) + i * TimeUnit.MICROSECONDS.toNanos(20)) * clickSlowdown));
+            stats.record("Sleep", (long) ((TimeUnit.SECONDS.toNanos(1) + i * TimeUnit.MICROSECONDS.toNanos(20)) * thinkTimeSlowdown));
+        }
+        return stats;
+    }
+
+    private static void setElapsedSeconds(@NotNull JsonObject results, double elapsedSeconds) {
+        results.getAsJsonObject("items").entrySet().forEach(item -> item.getValue().getAsJsonObject().addProperty("elapsedSeconds", elapsedSeconds));
+    }
+}
@@ -0,0 +1,26 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link Recovery}.
+ */
+public class RecoveryTest {
+    @Test
+    public void parse() {
+        assertEquals(Recovery.ABORT, Recovery.parse("abort"));
+        assertEquals(Recovery.CONTINUE, Recovery.parse("Continue"));
+        assertEquals(Recovery.RENAVIGATE, Recovery.parse(" RENAVIGATE "));
+        assertEquals(Recovery.NEW_SESSION, Recovery.parse("new-session"));
+        assertEquals(Recovery.NEW_SESSION, Recovery.parse("new_session"));
+    }
+
+    @Test
+    public void parseInvalid() {
+        final IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> Recovery.parse("retry"));
+        assertTrue(ex.getMessage().contains("abort, continue, renavigate, new-session"), ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Recovery.parse(""));
+    }
+}
@@ -0,0 +1,125 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link WarmUp}. The samples are fed with explicit end times, so that the tests don't depend on the clock.
+ */
+public class WarmUpTest {
+    private static final long T0 = 1_000_000_000_000L;
+
+    @Test
+    public void duration() {
+        final WarmUp warmUp = WarmUp.duration(Duration.ofSeconds(10));
+        assertEquals(Long.MIN_VALUE, warmUp.getWarmUpEndNanos());
+        assertTrue(warmUp.isWarmUp("Button click", T0, ms(100), 0, false));
+        assertTrue(warmUp.isWarmUp("Button click", T0 + seconds(9), ms(100), 5, false));
+        assertFalse(warmUp.isWarmUp("Button click", T0 + seconds(10), ms(100), 6, false));
+        assertFalse(warmUp.isWarmUp("Button click", T0 + seconds(60), ms(100), 30, false));
+        assertEquals(T0 + seconds(9), warmUp.getWarmUpEndNanos());
+    }
+
+    @Test
+    public void iterations() {
+        final WarmUp warmUp = WarmUp.iterations(2);
+        assertTrue(warmUp.isWarmUp("Button click", T0, ms(100), 0, false));
+        assertTrue(warmUp.isWarmUp("Button click", T0 + seconds(1), ms(100), 1, false));
+        assertFalse(warmUp.isWarmUp("Button click", T0 + seconds(2), ms(100), 2, false));
+        // every thread counts its own iterations.
+        assertTrue(warmUp.isWarmUp("Button click", T0 + seconds(3), ms(100), 0, false));
+        assertEquals(T0 + seconds(3), warmUp.getWarmUpEndNanos());
+        assertThrows(IllegalArgumentException.class, () -> WarmUp.iterations(-1));
+    }
+
+    @Test
+    public void zeroIterations() {
+        assertFalse(WarmUp.iterations(0).isWarmUp("Button click", T0, ms(100), 0, false));
+    }
+
+    @Test
+    public void convergence() {
+        final WarmUp warmUp = WarmUp.converge("Button click", Duration.ofSeconds(1), 50, 0.25);
+        // the p50 of the 1-second windows: 100ms, 50ms, then steady around 20ms.
+        final long[] windowLatenciesMs = {100, 50, 20, 22, 20};
+        for (int window = 0; window < windowLatenciesMs.length; window++) {
+            for (int i = 0; i < 10; i++) {
+                final long end = T0 + seconds(window) + ms(i * 100);
+                assertTrue(warmUp.isWarmUp("Button click", end, ms(windowLatenciesMs[window]), window, false), "window " + window);
+                // the other work items follow the tracked one.
+                assertTrue(warmUp.isWarmUp("Fill TextField", end, ms(1), window, false), "window " + window);
+            }
+        }
+        // the first sample of the next window closes the third steady window.
+        assertFalse(warmUp.isWarmUp("Button click", T0 + seconds(5), ms(20), 5, false));
+        assertFalse(warmUp.isWarmUp("Fill TextField", T0 + seconds(5) + ms(1), ms(1), 5, false));
+        assertEquals(T0 + seconds(4) + ms(900), warmUp.getWarmUpEndNanos());
+        assertTrue(warmUp.format().startsWith("Warm-up: first 5000ms, until p50 of Button click converged"), warmUp.format());
+    }
+
+    @Test
+    public void windowsWithTooFewSamplesDontConverge() {
+        final WarmUp warmUp = WarmUp.converge("Button click", Duration.ofSeconds(1), 50, 0.25);
+        for (int window = 0; window < 10; window++) {
+            // fewer than 5 samples per window.
+            for (int i = 0; i < 4; i++) {
+                assertTrue(warmUp.isWarmUp("Button click", T0 + seconds(window) + ms(i * 100), ms(20), window, false));
+            }
+        }
+        assertTrue(warmUp.format().contains("hasn't converged yet"), warmUp.format());
+    }
+
+    @Test
+    public void failuresDontConverge() {
+        final WarmUp warmUp = WarmUp.converge("Button click", Duration.ofSeconds(1), 50, 0.25);
+        for (int window = 0; window < 10; window++) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(warmUp.isWarmUp("Button click", T0 + seconds(window) + ms(i * 100), ms(20), window, true));
+            }
+        }
+    }
+
+    @Test
+    public void givesUpAfterTwoMinutes() {
+        final WarmUp warmUp = WarmUp.converge("Button click", Duration.ofSeconds(1), 50, 0.25);
+        final long maxNanos = WarmUp.MAX_CONVERGE_TIME.toNanos();
+        // the p50 alternates between 10ms and 100ms, and never converges.
+        for (long end = T0; end - T0 <= maxNanos; end += ms(100)) {
+            final long window = (end - T0) / seconds(1);
+            assertTrue(warmUp.isWarmUp("Button click", end, ms(window % 2 == 0 ? 10 : 100), (int) window, false));
+        }
+        assertFalse(warmUp.isWarmUp("Button click", T0 + maxNanos + ms(100), ms(10), 121, false));
+        assertFalse(warmUp.isWarmUp("Button click", T0 + maxNanos + seconds(10), ms(100), 130, false));
+        assertEquals(T0 + maxNanos, warmUp.getWarmUpEndNanos());
+    }
+
+    @Test
+    public void fromSystemProperties() {
+        try {
+            System.setProperty("perf.warmUp", "none");
+            assertNull(WarmUp.fromSystemProperties("Button click"));
+            System.setProperty("perf.warmUp", "3it");
+            assertTrue(WarmUp.fromSystemProperties("Button click").format().startsWith("Warm-up: first 3 iterations"));
+            System.setProperty("perf.warmUp", "30s");
+            assertTrue(WarmUp.fromSystemProperties("Button click").format().startsWith("Warm-up: first 30000ms"));
+            System.setProperty("perf.warmUp", "auto");
+            assertTrue(WarmUp.fromSystemProperties("Button click").format().startsWith("Warm-up: p50 of Button click hasn't converged yet"));
+            System.setProperty("perf.warmUp", "foo");
+            assertThrows(IllegalArgumentException.class, () -> WarmUp.fromSystemProperties("Button click"));
+        } finally {
+            System.clearProperty("perf.warmUp");
+        }
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
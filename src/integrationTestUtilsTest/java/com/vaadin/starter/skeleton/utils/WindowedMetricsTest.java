@@ -0,0 +1,67 @@
+package com.vaadin.starter.skeleton.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link WindowedMetrics}.
+ */
+public class WindowedMetricsTest {
+    @TempDir
+    public Path dir;
+
+    @Test
+    public void failuresHaveTheirOwnColumns() throws Exception {
+        final MeasureTime stats = new MeasureTime("test");
+        try (WindowedMetrics ignored = new WindowedMetrics("run", Duration.ofHours(1), dir).attach(stats)) {
+            stats.start(System.nanoTime());
+            stats.log("Button click");
+            stats.logFailure("Button click", ErrorKind.TIMEOUT);
+            stats.logFailure("Button click", ErrorKind.TIMEOUT);
+            stats.logFailure("Button click", ErrorKind.ASSERTION);
+        }
+        final List<String> lines = Files.readAllLines(dir.resolve("run.csv"), StandardCharsets.UTF_8);
+        final List<String> header = List.of(lines.get(0).split(","));
+        final List<String> row = List.of(lines.stream().filter(line -> line.contains(",Button click,")).findFirst().orElseThrow().split(",", -1));
+        assertEquals(header.size(), row.size());
+        assertEquals("1", row.get(header.indexOf("count")));
+        assertEquals("3", row.get(header.indexOf("errors")));
+        assertEquals("0.7500", row.get(header.indexOf("error_rate")));
+        assertEquals("assertion=1;timeout=2", row.get(header.indexOf("errors_by_kind")));
+        assertFalse(row.get(header.indexOf("failed_max_ms")).isEmpty());
+    }
+
+    @Test
+    public void movesAsideCsvWithOlderColumns() throws Exception {
+        final Path csv = dir.resolve("run.csv");
+        final String oldContents = "window_start,window_start_ms,window_ms,work_item,count,errors,throughput_per_s,p50_ms,p90_ms,p99_ms,max_ms,valid\n"
+                + "2024-01-01T00:00:00Z,1704067200000,1000,Button click,1,0,1.000,1.000,1.000,1.000,1.000,true\n";
+        Files.writeString(csv, oldContents, StandardCharsets.UTF_8);
+        final MeasureTime stats = new MeasureTime("test");
+        try (WindowedMetrics ignored = new WindowedMetrics("run", Duration.ofHours(1), dir).attach(stats)) {
+            stats.start(System.nanoTime());
+            stats.log("Button click");
+        }
+        final List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).endsWith(",error_rate,errors_by_kind,failed_p50_ms,failed_max_ms"), lines.get(0));
+        final int columns = lines.get(0).split(",").length;
+        for (String line : lines.subList(1, lines.size())) {
+            assertEquals(columns, line.split(",", -1).length, line);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            final List<Path> rotated = files.filter(f -> f.getFileName().toString().matches("run\\.\\d+\\.csv")).collect(Collectors.toList());
+            assertEquals(1, rotated.size());
+            assertEquals(oldContents, Files.readString(rotated.get(0), StandardCharsets.UTF_8));
+        }
+    }
+}
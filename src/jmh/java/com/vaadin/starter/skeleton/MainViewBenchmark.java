@@ -0,0 +1,95 @@
+package com.vaadin.starter.skeleton;
+
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.button.Button;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.server.communication.UidlWriter;
+import com.vaadin.starter.skeleton.services.GreetService;
+import com.vaadin.starter.skeleton.services.Services;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.mvysny.kaributesting.v10.LocatorJ.*;
+import static com.github.mvysny.kaributesting.v10.NotificationsKt.clearNotifications;
+
+/**
+ * Microbenchmarks of the server-side hot paths of {@link MainView}. Vaadin is mocked by Karibu-Testing the same way
+ * <code>MainViewTest</code> does: there's no browser, no network and no Jetty, so the numbers are stable enough to be tracked per commit.
+ * <p></p>
+ * Run via <code>./gradlew jmh</code>; the results are written to <code>build/reports/jmh/results.json</code>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainViewBenchmark {
+    private UI ui;
+    private TextField textField;
+    private Button button;
+
+    @Setup(Level.Trial)
+    public void setupVaadin() {
+        // MockVaadin stores the UI and the session in thread-locals; Scope.Thread makes JMH call this from the benchmark thread.
+        MockVaadin.setup(new Routes().autoDiscoverViews("com.vaadin.starter.skeleton"));
+        ui = UI.getCurrent();
+        textField = _get(TextField.class, spec -> spec.withId("nameField"));
+        button = _get(Button.class, spec -> spec.withId("sayHelloButton"));
+        _setValue(textField, "Martin");
+    }
+
+    @TearDown(Level.Trial)
+    public void teardownVaadin() {
+        MockVaadin.tearDown();
+    }
+
+    @Benchmark
+    public MainView constructMainView() {
+        return new MainView();
+    }
+
+    /**
+     * The click listener: {@link Services#getGreetService()}, {@link GreetService#greet(String)} and <code>Notification.show()</code>.
+     * Removing the notification is included, otherwise the notifications would pile up in the UI.
+     */
+    @Benchmark
+    public void clickSayHello() {
+        _click(button);
+        clearNotifications();
+    }
+
+    @Benchmark
+    public GreetService servicesLookup() {
+        return Services.getGreetService();
+    }
+
+    @Benchmark
+    public String greet() {
+        return Services.getGreetService().greet("Martin");
+    }
+
+    /**
+     * The UIDL response to a navigation: a new {@link MainView} is attached to the UI, and the changes are serialized to JSON.
+     */
+    @Benchmark
+    public String renderMainViewUidl() {
+        ui.removeAll();
+        ui.add(new MainView());
+        return new UidlWriter().createUidl(ui, false).toJson();
+    }
+
+    /**
+     * The UIDL response to a button click: the notification is shown, and the changes are serialized to JSON.
+     */
+    @Benchmark
+    public String clickSayHelloUidl() {
+        _click(button);
+        final String uidl = new UidlWriter().createUidl(ui, false).toJson();
+        clearNotifications();
+        return uidl;
+    }
+}
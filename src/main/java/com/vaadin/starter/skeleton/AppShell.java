@@ -1,8 +1,15 @@
 package com.vaadin.starter.skeleton;
 
 import com.vaadin.flow.component.page.AppShellConfigurator;
+import com.vaadin.flow.component.page.Push;
 import com.vaadin.flow.server.PWA;
+import com.vaadin.flow.shared.ui.Transport;
 import com.vaadin.flow.theme.Theme;
 
+/**
+ * Enables the push support. Push is switched off per UI by default though, and can be switched on via a system property
+ * or a query parameter, see {@link com.vaadin.starter.skeleton.push.PushServiceInitListener}.
+ */
+@Push(transport = Transport.WEBSOCKET)
 public class AppShell implements AppShellConfigurator {
 }
@@ -0,0 +1,61 @@
+package com.vaadin.starter.skeleton;
+
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.SortDirection;
+import com.vaadin.flow.data.value.ValueChangeMode;
+import com.vaadin.flow.router.Route;
+import com.vaadin.starter.skeleton.services.Person;
+import com.vaadin.starter.skeleton.services.PersonService;
+import com.vaadin.starter.skeleton.services.Services;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A data-heavy view: a lazy Grid over a million persons, sortable by every column and filterable.
+ * <p></p>
+ * The Grid fetches only the rows being shown, a page at a time, from {@link PersonService}, which caches the counts and the pages.
+ * A data-heavy view costs the server more per user than {@link MainView}: larger UIDL responses, a data communicator
+ * keeping track of the rows sent to the browser, and the fetches themselves.
+ */
+@Route("grid")
+public class GridView extends VerticalLayout {
+    public GridView() {
+        final PersonService service = Services.getPersonService();
+        final TextField filterField = new TextField();
+        final Grid<Person> grid = new Grid<>();
+
+        filterField.setPlaceholder("Filter by name or city");
+        filterField.setId("filterField");
+        filterField.setClearButtonVisible(true);
+        // every key stroke refreshes the Grid, which is what stresses the server.
+        filterField.setValueChangeMode(ValueChangeMode.EAGER);
+        filterField.addValueChangeListener(e -> grid.getDataProvider().refreshAll());
+
+        grid.setId("personGrid");
+        grid.addColumn(Person::getId).setHeader("Id").setKey("id").setSortProperty("id");
+        grid.addColumn(Person::getFirstName).setHeader("First name").setKey("firstName").setSortProperty("firstName");
+        grid.addColumn(Person::getLastName).setHeader("Last name").setKey("lastName").setSortProperty("lastName");
+        grid.addColumn(Person::getEmail).setHeader("Email").setKey("email");
+        grid.addColumn(Person::getAge).setHeader("Age").setKey("age").setSortProperty("age");
+        grid.addColumn(Person::getCity).setHeader("City").setKey("city").setSortProperty("city");
+        grid.setItems(query -> service.fetch(filterField.getValue(), getSortProperty(query), isDescending(query),
+                        query.getOffset(), query.getLimit()).stream(),
+                query -> service.count(filterField.getValue()));
+
+        setSizeFull();
+        add(filterField, grid);
+        setFlexGrow(1, grid);
+    }
+
+    @Nullable
+    private static String getSortProperty(@NotNull Query<Person, Void> query) {
+        return query.getSortOrders().isEmpty() ? null : query.getSortOrders().get(0).getSorted();
+    }
+
+    private static boolean isDescending(@NotNull Query<Person, Void> query) {
+        return !query.getSortOrders().isEmpty() && query.getSortOrders().get(0).getDirection() == SortDirection.DESCENDING;
+    }
+}
@@ -1,14 +1,22 @@
 package com.vaadin.starter.skeleton;
 
 import com.github.mvysny.vaadinboot.VaadinBoot;
+import com.vaadin.starter.skeleton.threads.VirtualThreadFilter;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
+
 /**
  * Run {@link #main(String[])} to launch your app in Embedded Jetty.
+ * <p></p>
+ * Pass <code>--virtual-threads</code> to handle the requests in virtual threads, see {@link VirtualThreadFilter}.
  * @author mavi
  */
 public final class Main {
     public static void main(@NotNull String[] args) throws Exception {
+        if (Arrays.asList(args).contains("--virtual-threads")) {
+            System.setProperty(VirtualThreadFilter.ENABLED_PROPERTY, "true");
+        }
         new VaadinBoot().run();
     }
 }
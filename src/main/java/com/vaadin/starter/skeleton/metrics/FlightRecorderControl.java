@@ -0,0 +1,97 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Starts and stops a JDK Flight Recorder session in this JVM on demand, so that the recording covers exactly the measured phase
+ * of a load test rather than the whole lifetime of the app. Uses the JDK's <code>profile</code> settings: method sampling every 10ms,
+ * allocation, GC, locks and I/O. At most one recording runs at a time. Controlled via {@link FlightRecorderServlet}.
+ * <p></p>
+ * Thread-safe.
+ */
+public final class FlightRecorderControl {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderControl.class);
+    @NotNull
+    private static final FlightRecorderControl INSTANCE = new FlightRecorderControl();
+    /**
+     * A forgotten recording stops by itself after this time, so that it can't fill the disk.
+     */
+    @NotNull
+    private static final Duration MAX_DURATION = Duration.ofHours(2);
+
+    /**
+     * The running recording, null if none. Guarded by this.
+     */
+    @Nullable
+    private Recording recording;
+
+    @NotNull
+    public static FlightRecorderControl get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts a new recording. A running recording is discarded.
+     * @param name the recording name, e.g. the name of the test.
+     */
+    public synchronized void start(@NotNull String name) throws IOException, ParseException {
+        Objects.requireNonNull(name);
+        if (recording != null) {
+            log.warn("Discarding the running recording " + recording.getName());
+            recording.close();
+        }
+        final Recording recording = new Recording(Configuration.getConfiguration("profile"));
+        recording.setName(name);
+        recording.setToDisk(true);
+        recording.setDuration(MAX_DURATION);
+        recording.start();
+        this.recording = recording;
+        log.info("Started flight recording " + name);
+    }
+
+    /**
+     * Stops the running recording and dumps it into given file. A recording which already stopped by itself after {@link #MAX_DURATION}
+     * is dumped as well.
+     * @param file the file to write the recording to, overwritten.
+     * @return false if no recording was started.
+     */
+    public synchronized boolean stop(@NotNull Path file) throws IOException {
+        if (recording == null) {
+            return false;
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            } else {
+                log.warn("Flight recording " + recording.getName() + " is " + recording.getState() + ", it stopped by itself after " + MAX_DURATION);
+            }
+            recording.dump(file);
+            log.info("Stopped flight recording " + recording.getName() + ", " + Files.size(file) / 1024 + "kB");
+        } finally {
+            recording.close();
+            recording = null;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a recording is running; false if none was started, or if it stopped by itself after {@link #MAX_DURATION}.
+     */
+    public synchronized boolean isRecording() {
+        return recording != null && recording.getState() == RecordingState.RUNNING;
+    }
+}
@@ -0,0 +1,60 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Controls {@link FlightRecorderControl}:
+ * <ul>
+ *     <li><code>POST /jfr/start?name=...</code> starts a JDK Flight Recorder session;</li>
+ *     <li><code>POST /jfr/stop</code> stops it and returns the recording as a <code>.jfr</code> file; 404 if no recording is running.</li>
+ * </ul>
+ * Profiling the app is nobody else's business, so only requests from the loopback interface are served; run the load test on the same
+ * machine as the app, or tunnel the port. Served outside of Vaadin, like {@link MetricsServlet}.
+ */
+@WebServlet(urlPatterns = {"/jfr/start", "/jfr/stop"})
+public class FlightRecorderServlet extends HttpServlet {
+    @Override
+    protected void doPost(@NotNull HttpServletRequest req, @NotNull HttpServletResponse resp) throws IOException {
+        if (!InetAddress.getByName(req.getRemoteAddr()).isLoopbackAddress()) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        switch (req.getServletPath()) {
+            case "/jfr/start" -> {
+                final String name = req.getParameter("name");
+                try {
+                    FlightRecorderControl.get().start(name == null || name.isBlank() ? "load-test" : name);
+                } catch (ParseException e) {
+                    throw new IOException(e);
+                }
+                resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+            case "/jfr/stop" -> {
+                final Path file = Files.createTempFile("recording", ".jfr");
+                try {
+                    if (!FlightRecorderControl.get().stop(file)) {
+                        resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No recording is running");
+                        return;
+                    }
+                    resp.setContentType("application/octet-stream");
+                    resp.setHeader("Cache-Control", "no-cache");
+                    resp.setContentLengthLong(Files.size(file));
+                    Files.copy(file, resp.getOutputStream());
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+            default -> resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        }
+    }
+}
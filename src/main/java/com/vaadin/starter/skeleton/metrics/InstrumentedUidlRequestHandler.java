@@ -0,0 +1,72 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.communication.ServerRpcHandler;
+import com.vaadin.flow.server.communication.UidlRequestHandler;
+import com.vaadin.flow.shared.communication.InvalidUIDLSecurityKeyException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Handles UIDL requests exactly as {@link UidlRequestHandler} does, and records the timing of every phase into {@link ServerMetrics}:
+ * reading the request, waiting for the session lock, holding it (which includes the RPC invocations) and writing the response.
+ * <p></p>
+ * Registered by {@link MetricsServiceInitListener}. Handlers added by init listeners take precedence over the built-in
+ * handlers, so this one replaces the built-in {@link UidlRequestHandler}.
+ */
+final class InstrumentedUidlRequestHandler extends UidlRequestHandler {
+    @NotNull
+    private final ServerMetrics metrics = ServerMetrics.get();
+
+    @Override
+    public boolean handleRequest(@NotNull VaadinSession session, @NotNull VaadinRequest request, @NotNull VaadinResponse response) throws IOException {
+        if (!canHandleRequest(request)) {
+            return false;
+        }
+        // the same as SynchronizedRequestHandler.handleRequest(): read the body and write the response outside the session lock.
+        final long start = System.nanoTime();
+        final BufferedReader reader = request.getReader();
+        final String requestBody = reader == null ? null : getRequestBody(reader);
+        final long lockRequested = System.nanoTime();
+        session.lock();
+        final long lockAcquired = System.nanoTime();
+        metrics.sessionLockWait.record(lockAcquired - lockRequested);
+        final Optional<ResponseWriter> responseWriter;
+        try {
+            responseWriter = synchronizedHandleRequest(session, request, response, requestBody);
+        } finally {
+            session.unlock();
+            metrics.sessionLockHold.recordSince(lockAcquired);
+        }
+        if (responseWriter.isPresent()) {
+            final long writeStart = System.nanoTime();
+            responseWriter.get().writeResponse();
+            metrics.responseWrite.recordSince(writeStart);
+        }
+        metrics.uidlRequest.recordSince(start);
+        return true;
+    }
+
+    @Override
+    @NotNull
+    protected ServerRpcHandler createRpcHandler() {
+        return new ServerRpcHandler() {
+            @Override
+            public void handleRpc(@NotNull UI ui, @Nullable String message, @NotNull VaadinRequest request) throws InvalidUIDLSecurityKeyException {
+                final long start = System.nanoTime();
+                try {
+                    super.handleRpc(ui, message, request);
+                } finally {
+                    metrics.rpc.recordSince(start);
+                }
+            }
+        };
+    }
+}
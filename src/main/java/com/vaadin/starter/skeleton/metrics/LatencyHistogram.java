@@ -0,0 +1,226 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-bucketed histogram of non-negative long values (usually durations in nanoseconds), in the spirit of
+ * the HdrHistogram. Values 0..127 are counted exactly; larger values fall into buckets whose width is 1/64 of
+ * their magnitude, so every recorded value is known with a precision better than 1.6%.
+ * <p></p>
+ * The memory consumption is fixed (~19KB) regardless of the number of recorded values; values larger than {@link #MAX_VALUE}
+ * (~73 minutes in nanoseconds) are clamped. Thread-safe and lock-free; however it's intended to be written mostly by a single
+ * thread at a time, see <code>MeasureTime</code> in the integration tests. Histograms can be merged via {@link #add(LatencyHistogram)},
+ * also across JVMs via {@link #encode()} and {@link #decode(String)}.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    /**
+     * The maximum trackable value. Larger values are recorded as this value.
+     */
+    public static final long MAX_VALUE = (1L << 42) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    @NotNull
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    @NotNull
+    private final AtomicLong total = new AtomicLong();
+    @NotNull
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    @NotNull
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Records a value.
+     * @param value the value; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        final long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(v));
+        total.addAndGet(v);
+        if (v < min.get()) {
+            min.accumulateAndGet(v, Math::min);
+        }
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    /**
+     * Adds all values recorded by the other histogram to this histogram.
+     * @param other the other histogram, not modified.
+     */
+    public void add(@NotNull LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.addAndGet(other.total.get());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of all recorded values.
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return the smallest recorded value, 0 if nothing has been recorded.
+     */
+    public long getMin() {
+        final long m = min.get();
+        return m == Long.MAX_VALUE ? 0 : m;
+    }
+
+    /**
+     * @return the largest recorded value, 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the average of the recorded values, 0 if nothing has been recorded.
+     */
+    public long getMean() {
+        final long count = getCount();
+        return count == 0 ? 0 : getTotal() / count;
+    }
+
+    /**
+     * Returns the value at given percentile: at least <code>percentile</code>% of all recorded values are
+     * equal to or smaller than the returned value (within the precision of the histogram).
+     * @param percentile the percentile, 0..100.
+     * @return the value, 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        final long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        return getValueAtRank((long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+    }
+
+    /**
+     * Returns the value at given rank: the <code>rank</code>-th smallest recorded value (within the precision of the histogram).
+     * @param rank the rank, 1 for the smallest value; clamped to 1..count.
+     * @return the value, 0 if nothing has been recorded.
+     */
+    public long getValueAtRank(long rank) {
+        final long target = Math.max(1, rank);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts.get(i);
+            if (cumulative >= target) {
+                return Math.max(Math.min(highestValueInBucket(i), getMax()), getMin());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a copy of the bucket counts, ordered by value. The buckets are the same for all histograms, so the counts of two histograms
+     * can be compared bucket by bucket, e.g. to rank the values of both for a statistical test.
+     * @return the counts, not null.
+     */
+    @NotNull
+    public long[] getBucketCounts() {
+        final long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if nothing has been recorded yet.
+     */
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    /**
+     * Encodes this histogram into a compact string, e.g. to send it to another JVM. Only the non-empty buckets are included,
+     * so a histogram of a few thousand similar durations encodes into a few hundred characters.
+     * @return <code>min,max,total</code>, then <code>;index:count</code> for every non-empty bucket, e.g. <code>1200,1300,2500;17:1;20:1</code>.
+     */
+    @NotNull
+    public String encode() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(min.get()).append(',').append(max.get()).append(',').append(total.get());
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            final long count = counts.get(i);
+            if (count != 0) {
+                sb.append(';').append(i).append(':').append(count);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes a histogram encoded via {@link #encode()}.
+     * @param encoded the encoded histogram.
+     * @return a new histogram, not null.
+     */
+    @NotNull
+    public static LatencyHistogram decode(@NotNull String encoded) {
+        try {
+            final String[] parts = encoded.split(";");
+            final String[] header = parts[0].split(",");
+            if (header.length != 3) {
+                throw new IllegalArgumentException("expected min,max,total");
+            }
+            final LatencyHistogram result = new LatencyHistogram();
+            result.min.set(Long.parseLong(header[0]));
+            result.max.set(Long.parseLong(header[1]));
+            result.total.set(Long.parseLong(header[2]));
+            for (int i = 1; i < parts.length; i++) {
+                final int colon = parts[i].indexOf(':');
+                result.counts.set(Integer.parseInt(parts[i].substring(0, colon)), Long.parseLong(parts[i].substring(colon + 1)));
+            }
+            return result;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Parameter encoded: invalid value " + encoded + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - (SUB_BUCKET_BITS - 1);
+        final int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int k = index - SUB_BUCKET_COUNT;
+        final int shift = k / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = k % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,81 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A named {@link LatencyHistogram} which can be reset while being recorded into. Thread-safe; recording is lock-free.
+ */
+public final class LatencyTimer {
+    /**
+     * The metric name, e.g. <code>uidl_request</code>.
+     */
+    @NotNull
+    public final String name;
+    @NotNull
+    private final AtomicReference<LatencyHistogram> histogram = new AtomicReference<>(new LatencyHistogram());
+
+    public LatencyTimer(@NotNull String name) {
+        this.name = Objects.requireNonNull(name);
+    }
+
+    /**
+     * Records a duration.
+     * @param durationNanos the duration, in nanoseconds.
+     */
+    public void record(long durationNanos) {
+        histogram.get().record(durationNanos);
+    }
+
+    /**
+     * Records the time elapsed since given start.
+     * @param startNanos the start, as {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Forgets all recorded durations.
+     */
+    public void reset() {
+        histogram.set(new LatencyHistogram());
+    }
+
+    /**
+     * @return e.g. <code>uidl_request_ms count=10 p50=1.2 p90=3.4 p99=5.6 max=7.8 avg=2.1</code>.
+     */
+    @NotNull
+    public String toText() {
+        final LatencyHistogram h = histogram.get();
+        return String.format(Locale.ROOT, "%s_ms count=%d p50=%.3f p90=%.3f p99=%.3f max=%.3f avg=%.3f", name, h.getCount(),
+                toMs(h.getValueAtPercentile(50)), toMs(h.getValueAtPercentile(90)), toMs(h.getValueAtPercentile(99)), toMs(h.getMax()), toMs(h.getMean()));
+    }
+
+    @NotNull
+    public JsonObject toJson() {
+        final LatencyHistogram h = histogram.get();
+        final JsonObject json = Json.createObject();
+        json.put("count", h.getCount());
+        json.put("p50Ms", toMs(h.getValueAtPercentile(50)));
+        json.put("p90Ms", toMs(h.getValueAtPercentile(90)));
+        json.put("p99Ms", toMs(h.getValueAtPercentile(99)));
+        json.put("maxMs", toMs(h.getMax()));
+        json.put("avgMs", toMs(h.getMean()));
+        return json;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000d;
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -0,0 +1,56 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinRequest;
+import com.vaadin.flow.server.VaadinRequestInterceptor;
+import com.vaadin.flow.server.VaadinResponse;
+import com.vaadin.flow.server.VaadinService;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.server.VaadinSession;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Instruments Vaadin: times all requests and the phases of the UIDL requests (see {@link InstrumentedUidlRequestHandler}),
+ * and tracks the active sessions and UIs. The numbers are recorded into {@link ServerMetrics} and exposed by {@link MetricsServlet}.
+ * <p></p>
+ * Registered via <code>META-INF/services/com.vaadin.flow.server.VaadinServiceInitListener</code>.
+ */
+public class MetricsServiceInitListener implements VaadinServiceInitListener {
+    /**
+     * The request attribute holding the start of the request, as {@link System#nanoTime()}.
+     */
+    @NotNull
+    private static final String REQUEST_START_ATTRIBUTE = MetricsServiceInitListener.class.getName() + ".start";
+
+    @Override
+    public void serviceInit(@NotNull ServiceInitEvent event) {
+        final ServerMetrics metrics = ServerMetrics.get();
+        final VaadinService service = event.getSource();
+        event.addRequestHandler(new InstrumentedUidlRequestHandler());
+        event.addVaadinRequestInterceptor(new VaadinRequestInterceptor() {
+            @Override
+            public void requestStart(@NotNull VaadinRequest request, @NotNull VaadinResponse response) {
+                request.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
+            }
+
+            @Override
+            public void handleException(@NotNull VaadinRequest request, @NotNull VaadinResponse response, @Nullable VaadinSession vaadinSession, @NotNull Exception t) {
+                metrics.failedRequests.incrementAndGet();
+            }
+
+            @Override
+            public void requestEnd(@NotNull VaadinRequest request, @NotNull VaadinResponse response, @Nullable VaadinSession session) {
+                if (request.getAttribute(REQUEST_START_ATTRIBUTE) instanceof Long start) {
+                    metrics.request.recordSince(start);
+                }
+            }
+        });
+        service.addSessionInitListener(e -> metrics.sessions.add(e.getSession()));
+        service.addSessionDestroyListener(e -> metrics.sessions.remove(e.getSession()));
+        service.addUIInitListener(e -> {
+            metrics.activeUIs.incrementAndGet();
+            e.getUI().addDetachListener(d -> metrics.activeUIs.decrementAndGet());
+        });
+    }
+}
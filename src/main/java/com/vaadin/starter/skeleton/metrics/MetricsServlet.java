@@ -0,0 +1,83 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Exposes {@link ServerMetrics}:
+ * <ul>
+ *     <li><code>GET /metrics</code> returns the metrics as plain text, one metric per line;</li>
+ *     <li><code>GET /metrics?format=json</code> returns the metrics as JSON;</li>
+ *     <li><code>GET /metrics/sessions</code> measures the memory footprint of the active sessions, see {@link SessionMemoryReport}.
+ *     Expensive: triggers a GC and serializes every session under its lock, therefore only served to requests from the loopback
+ *     interface. Also supports <code>?format=json</code>;</li>
+ *     <li><code>POST /metrics/reset</code> resets the timings, e.g. at the start of a performance test run; only served to requests
+ *     from the loopback interface, so that nobody else can wipe the timings in the middle of a run;</li>
+ *     <li><code>POST /metrics/sessions/close</code> closes all sessions, see {@link ServerMetrics#closeSessions()}; only served to requests
+ *     from the loopback interface, since it logs all users out.</li>
+ * </ul>
+ * Served outside of Vaadin, so that scraping neither creates sessions nor shows up in the metrics.
+ */
+@WebServlet(urlPatterns = {"/metrics", "/metrics/sessions", "/metrics/reset", "/metrics/sessions/close"})
+public class MetricsServlet extends HttpServlet {
+    @Override
+    protected void doGet(@NotNull HttpServletRequest req, @NotNull HttpServletResponse resp) throws IOException {
+        final boolean json = "json".equals(req.getParameter("format"));
+        final String body;
+        switch (req.getServletPath()) {
+            case "/metrics" -> body = json ? ServerMetrics.get().toJson().toJson() : ServerMetrics.get().toText();
+            case "/metrics/sessions" -> {
+                if (!isLoopback(req)) {
+                    resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+                    return;
+                }
+                final SessionMemoryReport report = SessionMemoryReport.measure();
+                body = json ? report.toJson().toJson() : report.toText();
+            }
+            default -> {
+                resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+                return;
+            }
+        }
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setContentType(json ? "application/json" : "text/plain");
+        resp.getWriter().write(body);
+    }
+
+    @Override
+    protected void doPost(@NotNull HttpServletRequest req, @NotNull HttpServletResponse resp) throws IOException {
+        switch (req.getServletPath()) {
+            case "/metrics/reset" -> {
+                if (!isLoopback(req)) {
+                    resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+                    return;
+                }
+                ServerMetrics.get().reset();
+                resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            }
+            case "/metrics/sessions/close" -> {
+                if (!isLoopback(req)) {
+                    resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+                    return;
+                }
+                final int closed = ServerMetrics.get().closeSessions();
+                resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                resp.setContentType("text/plain");
+                resp.getWriter().write("closed_sessions " + closed + "\n");
+            }
+            default -> resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+        }
+    }
+
+    private static boolean isLoopback(@NotNull HttpServletRequest req) throws IOException {
+        return InetAddress.getByName(req.getRemoteAddr()).isLoopbackAddress();
+    }
+}
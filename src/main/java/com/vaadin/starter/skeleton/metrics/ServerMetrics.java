@@ -0,0 +1,175 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import com.vaadin.flow.server.VaadinSession;
+import com.vaadin.flow.server.WrappedSession;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server-side metrics of the app: request timings and the number of active sessions and UIs. Recorded by
+ * {@link MetricsServiceInitListener}, exposed by {@link MetricsServlet}. The overhead is a couple of atomic increments per
+ * measurement, so the metrics are always on.
+ * <p></p>
+ * Thread-safe.
+ */
+public final class ServerMetrics {
+    @NotNull
+    private static final ServerMetrics INSTANCE = new ServerMetrics();
+
+    /**
+     * @return the metrics of this JVM.
+     */
+    @NotNull
+    public static ServerMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * All HTTP requests handled by Vaadin, including static resources served by Vaadin.
+     */
+    @NotNull
+    public final LatencyTimer request = new LatencyTimer("request");
+    /**
+     * UIDL requests (<code>?v-r=uidl</code>): from reading the request until the response has been written.
+     */
+    @NotNull
+    public final LatencyTimer uidlRequest = new LatencyTimer("uidl_request");
+    /**
+     * Waiting for the session lock in UIDL requests. Grows when requests of the same session queue up, or when
+     * a background thread holds the lock for too long.
+     */
+    @NotNull
+    public final LatencyTimer sessionLockWait = new LatencyTimer("session_lock_wait");
+    /**
+     * Holding the session lock in UIDL requests: the RPC invocations, creating the response and running the pending
+     * <code>UI.access()</code> tasks on unlock.
+     */
+    @NotNull
+    public final LatencyTimer sessionLockHold = new LatencyTimer("session_lock_hold");
+    /**
+     * Invoking the RPCs of a UIDL request: the value changes, the event listeners and so on.
+     */
+    @NotNull
+    public final LatencyTimer rpc = new LatencyTimer("rpc");
+    /**
+     * Writing the UIDL response to the client, outside of the session lock.
+     */
+    @NotNull
+    public final LatencyTimer responseWrite = new LatencyTimer("response_write");
+    @NotNull
+    public final AtomicLong failedRequests = new AtomicLong();
+    /**
+     * The active sessions, measured by {@link SessionMemoryReport}.
+     */
+    @NotNull
+    final Set<VaadinSession> sessions = ConcurrentHashMap.newKeySet();
+    @NotNull
+    public final AtomicLong activeUIs = new AtomicLong();
+
+    /**
+     * Which threads handle the requests: <code>platform</code> (the Jetty thread pool) or <code>virtual</code>,
+     * see <code>VirtualThreadFilter</code>.
+     */
+    @NotNull
+    public volatile String requestThreads = "platform";
+    /**
+     * The used heap after a GC, while there were no sessions; taken by {@link SessionMemoryReport} rather than at startup,
+     * so that starting the app doesn't pay for a full GC. -1 if not measured yet.
+     */
+    volatile long heapBaselineBytes = -1;
+
+    @NotNull
+    private final List<LatencyTimer> timers = List.of(request, uidlRequest, sessionLockWait, sessionLockHold, rpc, responseWrite);
+
+    private ServerMetrics() {
+    }
+
+    /**
+     * Forgets all recorded timings and the failed request count, e.g. at the start of a performance test run.
+     * The number of active sessions and UIs is kept.
+     */
+    public void reset() {
+        timers.forEach(LatencyTimer::reset);
+        failedRequests.set(0);
+    }
+
+    /**
+     * Closes all active sessions right away rather than when they expire: invalidates their HTTP sessions, which makes Vaadin detach
+     * their UIs and fire the session destroy listeners. Use between the measured scenarios of a performance test, so that the sessions
+     * of one scenario don't keep consuming CPU (e.g. the server updates of their UIs) and heap while the next one is measured.
+     * @return the number of sessions closed.
+     */
+    public int closeSessions() {
+        int closed = 0;
+        for (VaadinSession session : new ArrayList<>(sessions)) {
+            final WrappedSession wrappedSession = session.getSession();
+            try {
+                if (wrappedSession != null) {
+                    wrappedSession.invalidate();
+                }
+                closed++;
+            } catch (IllegalStateException e) {
+                // already invalidated.
+            }
+            sessions.remove(session);
+        }
+        return closed;
+    }
+
+    private static long heapUsedBytes() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return the CPU time consumed by this JVM so far, -1 if not available.
+     */
+    private static long processCpuMillis() {
+        return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os
+                ? os.getProcessCpuTime() / 1_000_000 : -1;
+    }
+
+    /**
+     * @return one metric per line.
+     */
+    @NotNull
+    public String toText() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("active_sessions ").append(sessions.size()).append('\n');
+        sb.append("active_uis ").append(activeUIs.get()).append('\n');
+        sb.append("failed_requests ").append(failedRequests.get()).append('\n');
+        sb.append("request_threads ").append(requestThreads).append('\n');
+        sb.append("jvm_heap_used_mb ").append(heapUsedBytes() / 1024 / 1024).append('\n');
+        sb.append("jvm_threads ").append(ManagementFactory.getThreadMXBean().getThreadCount()).append('\n');
+        sb.append("jvm_process_cpu_ms ").append(processCpuMillis()).append('\n');
+        for (LatencyTimer timer : timers) {
+            sb.append(timer.toText()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @NotNull
+    public JsonObject toJson() {
+        final JsonObject json = Json.createObject();
+        json.put("activeSessions", sessions.size());
+        json.put("activeUIs", activeUIs.get());
+        json.put("failedRequests", failedRequests.get());
+        json.put("requestThreads", requestThreads);
+        json.put("jvmHeapUsedMb", heapUsedBytes() / 1024 / 1024);
+        json.put("jvmThreads", ManagementFactory.getThreadMXBean().getThreadCount());
+        json.put("jvmProcessCpuMs", processCpuMillis());
+        final JsonObject timings = Json.createObject();
+        for (LatencyTimer timer : timers) {
+            timings.put(timer.name, timer.toJson());
+        }
+        json.put("timings", timings);
+        return json;
+    }
+}
@@ -0,0 +1,166 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import com.vaadin.flow.server.VaadinSession;
+import elemental.json.Json;
+import elemental.json.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures the memory footprint of the active Vaadin sessions, which is what limits the number of users a server can handle.
+ * Two estimates are provided:
+ * <ul>
+ *     <li>The serialized size of every session including its UIs, measured one by one. This is a rough approximation of the retained
+ *     size: it omits transient fields and object headers, but it's exact about what grows with the number of components.
+ *     The distribution shows outliers, e.g. sessions with leaked UIs.</li>
+ *     <li>The heap delta: the used heap after a GC minus the heap used while there were no sessions, divided by the number
+ *     of sessions. This includes everything, also caches and garbage not yet collected, and is therefore an upper bound.
+ *     The baseline is taken by every measurement without sessions; until the first one, the heap delta is 0.</li>
+ * </ul>
+ * Both are projected to the heap needed for 1000 users.
+ * <p></p>
+ * Measuring is expensive: every session is serialized while holding its lock, and a GC is triggered. Don't measure during a load test.
+ */
+public final class SessionMemoryReport {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(SessionMemoryReport.class);
+
+    private final int sessions;
+    private final int uis;
+    private final int failed;
+    /**
+     * The serialized sizes of the sessions, in bytes.
+     */
+    @NotNull
+    private final LatencyHistogram serializedSizes = new LatencyHistogram();
+    private final long heapUsedBytes;
+    private final long heapDeltaBytes;
+
+    private SessionMemoryReport(@NotNull List<VaadinSession> sessions, @NotNull ServerMetrics metrics) {
+        int uis = 0;
+        int failed = 0;
+        for (VaadinSession session : sessions) {
+            session.lock();
+            try {
+                uis += session.getUIs().size();
+                serializedSizes.record(serializedSize(session));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to serialize session " + session, e);
+                failed++;
+            } finally {
+                session.unlock();
+            }
+        }
+        this.sessions = sessions.size();
+        this.uis = uis;
+        this.failed = failed;
+        System.gc();
+        heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        if (sessions.isEmpty()) {
+            // the heap used by the app itself; the heap used by the sessions is measured against this.
+            metrics.heapBaselineBytes = heapUsedBytes;
+        } else if (metrics.heapBaselineBytes < 0) {
+            log.warn("The heap delta per session is not available: measure once while there are no sessions, e.g. right after the server started or after POST /metrics/sessions/close");
+        }
+        final long heapBaselineBytes = metrics.heapBaselineBytes;
+        heapDeltaBytes = heapBaselineBytes < 0 ? 0 : Math.max(0, heapUsedBytes - heapBaselineBytes);
+    }
+
+    /**
+     * Measures all active sessions.
+     * @return the report.
+     */
+    @NotNull
+    public static SessionMemoryReport measure() {
+        final ServerMetrics metrics = ServerMetrics.get();
+        return new SessionMemoryReport(new ArrayList<>(metrics.sessions), metrics);
+    }
+
+    private static long serializedSize(@NotNull VaadinSession session) throws IOException {
+        final CountingOutputStream out = new CountingOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(session);
+        }
+        return out.count;
+    }
+
+    private long heapDeltaPerSession() {
+        return sessions == 0 ? 0 : heapDeltaBytes / sessions;
+    }
+
+    /**
+     * @return one metric per line.
+     */
+    @NotNull
+    public String toText() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("sessions ").append(sessions).append('\n');
+        sb.append("uis ").append(uis).append('\n');
+        sb.append("failed_to_serialize ").append(failed).append('\n');
+        sb.append(String.format(Locale.ROOT, "session_serialized_kb count=%d min=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f avg=%.1f\n",
+                serializedSizes.getCount(), toKb(serializedSizes.getMin()), toKb(serializedSizes.getValueAtPercentile(50)),
+                toKb(serializedSizes.getValueAtPercentile(90)), toKb(serializedSizes.getValueAtPercentile(99)),
+                toKb(serializedSizes.getMax()), toKb(serializedSizes.getMean())));
+        sb.append("heap_used_after_gc_mb ").append(heapUsedBytes / 1024 / 1024).append('\n');
+        sb.append(String.format(Locale.ROOT, "heap_delta_per_session_kb %.1f\n", toKb(heapDeltaPerSession())));
+        sb.append(String.format(Locale.ROOT, "projected_mb_per_1000_users serialized=%.1f heap_delta=%.1f\n",
+                toKb(serializedSizes.getMean()) * 1000 / 1024, toKb(heapDeltaPerSession()) * 1000 / 1024));
+        return sb.toString();
+    }
+
+    @NotNull
+    public JsonObject toJson() {
+        final JsonObject json = Json.createObject();
+        json.put("sessions", sessions);
+        json.put("uis", uis);
+        json.put("failedToSerialize", failed);
+        final JsonObject serialized = Json.createObject();
+        serialized.put("count", serializedSizes.getCount());
+        serialized.put("minKb", toKb(serializedSizes.getMin()));
+        serialized.put("p50Kb", toKb(serializedSizes.getValueAtPercentile(50)));
+        serialized.put("p90Kb", toKb(serializedSizes.getValueAtPercentile(90)));
+        serialized.put("p99Kb", toKb(serializedSizes.getValueAtPercentile(99)));
+        serialized.put("maxKb", toKb(serializedSizes.getMax()));
+        serialized.put("avgKb", toKb(serializedSizes.getMean()));
+        json.put("serializedSize", serialized);
+        json.put("heapUsedAfterGcMb", heapUsedBytes / 1024d / 1024);
+        json.put("heapDeltaPerSessionKb", toKb(heapDeltaPerSession()));
+        final JsonObject projection = Json.createObject();
+        projection.put("serializedMb", toKb(serializedSizes.getMean()) * 1000 / 1024);
+        projection.put("heapDeltaMb", toKb(heapDeltaPerSession()) * 1000 / 1024);
+        json.put("projectedPer1000Users", projection);
+        return json;
+    }
+
+    private static double toKb(long bytes) {
+        return bytes / 1024d;
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte @NotNull [] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.vaadin.starter.skeleton.push;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.router.QueryParameters;
+import com.vaadin.flow.server.ServiceInitEvent;
+import com.vaadin.flow.server.VaadinServiceInitListener;
+import com.vaadin.flow.shared.Registration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Selects the {@link PushTransportMode} of every UI, so that the transports can be compared against the same server:
+ * <ul>
+ *     <li>the <code>vaadin.push</code> system property sets the default for all UIs, e.g. <code>-Dvaadin.push=websocket</code>; push is disabled by default;</li>
+ *     <li>the <code>push</code> query parameter overrides it for a single UI, e.g. <code>http://localhost:8080/?push=websocket</code>;</li>
+ *     <li>the <code>updates</code> query parameter adds {@link ServerUpdates} to the UI, e.g. <code>?updates=1000</code> for an update every second.</li>
+ * </ul>
+ * The push support itself is enabled by <code>@Push</code> on the <code>AppShell</code>.
+ * <p></p>
+ * Registered via <code>META-INF/services/com.vaadin.flow.server.VaadinServiceInitListener</code>.
+ */
+public class PushServiceInitListener implements VaadinServiceInitListener {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(PushServiceInitListener.class);
+    /**
+     * The default {@link PushTransportMode} of all UIs.
+     */
+    @NotNull
+    public static final String PUSH_PROPERTY = "vaadin.push";
+
+    @Override
+    public void serviceInit(@NotNull ServiceInitEvent event) {
+        final PushTransportMode defaultMode = PushTransportMode.parse(System.getProperty(PUSH_PROPERTY, "disabled"));
+        if (defaultMode != PushTransportMode.DISABLED) {
+            log.info("Push enabled by default for all UIs: " + defaultMode);
+        }
+        event.getSource().addUIInitListener(e -> {
+            // only the first navigation carries the parameters.
+            final Registration[] registration = new Registration[1];
+            registration[0] = e.getUI().addBeforeEnterListener(beforeEnter -> {
+                registration[0].remove();
+                configure(beforeEnter.getUI(), beforeEnter.getLocation().getQueryParameters(), defaultMode);
+            });
+        });
+    }
+
+    /**
+     * Configures the push and the server updates of given UI according to the query parameters of its first navigation.
+     */
+    static void configure(@NotNull UI ui, @NotNull QueryParameters query, @NotNull PushTransportMode defaultMode) {
+        final String push = getParameter(query, "push");
+        PushTransportMode mode = defaultMode;
+        if (push != null) {
+            try {
+                mode = PushTransportMode.parse(push);
+            } catch (IllegalArgumentException ex) {
+                log.warn(ex.getMessage() + "; using " + defaultMode);
+            }
+        }
+        mode.apply(ui);
+        final String updates = getParameter(query, "updates");
+        if (updates != null) {
+            try {
+                ui.add(new ServerUpdates(Long.parseLong(updates)));
+            } catch (IllegalArgumentException ex) {
+                log.warn("Invalid updates interval '" + updates + "', server updates disabled: " + ex.getMessage());
+            }
+        }
+    }
+
+    @Nullable
+    private static String getParameter(@NotNull QueryParameters query, @NotNull String name) {
+        final List<String> values = query.getParameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
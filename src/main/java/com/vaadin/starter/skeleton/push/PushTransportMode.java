@@ -0,0 +1,69 @@
+package com.vaadin.starter.skeleton.push;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.shared.communication.PushMode;
+import com.vaadin.flow.shared.ui.Transport;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * How a UI talks to the server: over plain XHR requests (push disabled, the default), or over a push connection
+ * with given transport. Selected by {@link PushServiceInitListener}.
+ */
+public enum PushTransportMode {
+    /**
+     * Every client-to-server message is a separate XHR UIDL request; the server can only respond.
+     */
+    DISABLED(PushMode.DISABLED, null),
+    /**
+     * Both directions over a single WebSocket.
+     */
+    WEBSOCKET(PushMode.AUTOMATIC, Transport.WEBSOCKET),
+    /**
+     * Server-to-client over WebSocket, client-to-server over XHR.
+     */
+    WEBSOCKET_XHR(PushMode.AUTOMATIC, Transport.WEBSOCKET_XHR),
+    /**
+     * HTTP long polling.
+     */
+    LONG_POLLING(PushMode.AUTOMATIC, Transport.LONG_POLLING);
+
+    @NotNull
+    private final PushMode pushMode;
+    @Nullable
+    private final Transport transport;
+
+    PushTransportMode(@NotNull PushMode pushMode, @Nullable Transport transport) {
+        this.pushMode = pushMode;
+        this.transport = transport;
+    }
+
+    /**
+     * Configures the push of given UI. Must be called before the client connects, e.g. during the first navigation.
+     * @param ui the UI to configure.
+     */
+    public void apply(@NotNull UI ui) {
+        if (transport != null) {
+            ui.getPushConfiguration().setTransport(transport);
+        }
+        if (ui.getPushConfiguration().getPushMode() != pushMode) {
+            ui.getPushConfiguration().setPushMode(pushMode);
+        }
+    }
+
+    /**
+     * @param value the mode name, case-insensitive, e.g. <code>websocket</code>.
+     * @return the mode.
+     * @throws IllegalArgumentException if there's no such mode.
+     */
+    @NotNull
+    public static PushTransportMode parse(@NotNull String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid push transport mode '" + value + "': must be one of disabled, websocket, websocket_xhr, long_polling", e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.vaadin.starter.skeleton.push;
+
+import com.vaadin.flow.component.AttachEvent;
+import com.vaadin.flow.component.DetachEvent;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.html.Span;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates server-initiated updates: a counter which the server increments periodically, from a background thread via
+ * {@link UI#access(com.vaadin.flow.server.Command)}. With push, the updates are pushed to the client right away; without push,
+ * the UI polls for them at the same interval. Either way, the updates cost the server the same work, so the transports can be compared.
+ */
+public class ServerUpdates extends Span {
+    /**
+     * Shared by all UIs; the updates themselves are quick.
+     */
+    @NotNull
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "server-updates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long intervalMillis;
+    private long updates = 0;
+    private ScheduledFuture<?> task;
+
+    /**
+     * @param intervalMillis how often to update the counter.
+     */
+    public ServerUpdates(long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Parameter intervalMillis: invalid value " + intervalMillis + ": must be 1 or higher");
+        }
+        this.intervalMillis = intervalMillis;
+        setId("serverUpdates");
+        setText("0");
+    }
+
+    @Override
+    protected void onAttach(@NotNull AttachEvent attachEvent) {
+        super.onAttach(attachEvent);
+        final UI ui = attachEvent.getUI();
+        if (!ui.getPushConfiguration().getPushMode().isEnabled()) {
+            ui.setPollInterval((int) intervalMillis);
+        }
+        task = scheduler.scheduleAtFixedRate(() -> ui.access(() -> setText(Long.toString(++updates))),
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void onDetach(@NotNull DetachEvent detachEvent) {
+        task.cancel(false);
+        detachEvent.getUI().setPollInterval(-1);
+        super.onDetach(detachEvent);
+    }
+}
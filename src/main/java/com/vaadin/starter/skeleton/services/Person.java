@@ -0,0 +1,73 @@
+package com.vaadin.starter.skeleton.services;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * A person, as served by {@link PersonService}. Immutable.
+ */
+public final class Person {
+    private final int id;
+    @NotNull
+    private final String firstName;
+    @NotNull
+    private final String lastName;
+    @NotNull
+    private final String email;
+    private final int age;
+    @NotNull
+    private final String city;
+
+    public Person(int id, @NotNull String firstName, @NotNull String lastName, @NotNull String email, int age, @NotNull String city) {
+        this.id = id;
+        this.firstName = Objects.requireNonNull(firstName);
+        this.lastName = Objects.requireNonNull(lastName);
+        this.email = Objects.requireNonNull(email);
+        this.age = age;
+        this.city = Objects.requireNonNull(city);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    @NotNull
+    public String getFirstName() {
+        return firstName;
+    }
+
+    @NotNull
+    public String getLastName() {
+        return lastName;
+    }
+
+    @NotNull
+    public String getEmail() {
+        return email;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    @NotNull
+    public String getCity() {
+        return city;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Person other && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return "Person{" + id + ", " + firstName + " " + lastName + ", " + age + ", " + city + "}";
+    }
+}
@@ -0,0 +1,328 @@
+package com.vaadin.starter.skeleton.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves a large generated dataset of {@link Person}s, filtered, sorted and paged, the way a lazy Grid asks for it.
+ * <p></p>
+ * The dataset is generated deterministically and kept in a compact columnar form (a couple of bytes per person);
+ * {@link Person} instances are only created for the rows actually fetched. Filtering scans the whole dataset, which is
+ * what a database without a suitable index would do; the results are therefore cached:
+ * <ul>
+ *     <li>the counts, per filter;</li>
+ *     <li>the ids matching a filter in the sort order, for a few most recently used filter+sort combinations;</li>
+ *     <li>the fetched pages, for the most recently used pages.</li>
+ * </ul>
+ * All caches are LRU and bounded, so that the memory consumption stays bounded regardless of what the users ask for.
+ * <p></p>
+ * Thread-safe.
+ */
+public final class PersonService {
+    /**
+     * The number of persons served by {@link Services#getPersonService()}.
+     */
+    public static final int DEFAULT_SIZE = 1_000_000;
+    /**
+     * The properties the persons can be sorted by.
+     */
+    @NotNull
+    public static final Set<String> SORT_PROPERTIES = Set.of("id", "firstName", "lastName", "age", "city");
+    private static final int MAX_CACHED_COUNTS = 1000;
+    private static final int MAX_CACHED_RESULTS = 16;
+    private static final int MAX_CACHED_PAGES = 1000;
+
+    @NotNull
+    private static final String[] FIRST_NAMES = {"Anna", "Ben", "Carla", "David", "Emma", "Felix", "Greta", "Hugo", "Ida", "Jonas",
+            "Karin", "Lukas", "Maria", "Niklas", "Olga", "Paul", "Quinn", "Rosa", "Simon", "Tina", "Ulla", "Viktor", "Wanda", "Xaver",
+            "Yvonne", "Zeno", "Hanna", "Martin", "Sofia", "Leon", "Mia", "Elias"};
+    @NotNull
+    private static final String[] LAST_NAMES = {"Andersson", "Becker", "Castro", "Dvorak", "Eriksson", "Fischer", "Garcia", "Hoffmann",
+            "Ivanov", "Jensen", "Kowalski", "Lindqvist", "Meyer", "Novak", "Olsen", "Petrov", "Quist", "Rossi", "Schmidt", "Toivonen",
+            "Ueda", "Virtanen", "Wagner", "Xu", "Yilmaz", "Zimmermann", "Horvath", "Nieminen", "Smith", "Brown", "Kovacs", "Moreau"};
+    @NotNull
+    private static final String[] CITIES = {"Turku", "Helsinki", "Berlin", "Prague", "Vienna", "Madrid", "Lisbon", "Oslo",
+            "Stockholm", "Warsaw", "Rome", "Paris", "London", "Dublin", "Tallinn", "Riga"};
+
+    private final int size;
+    /**
+     * Indices into {@link #FIRST_NAMES}, {@link #LAST_NAMES} and {@link #CITIES}; the ages as they are.
+     */
+    private final byte[] firstNames;
+    private final byte[] lastNames;
+    private final byte[] cities;
+    private final byte[] ages;
+    /**
+     * Maps sort property to the ids of all persons in ascending order. Computed lazily; a couple of MB per property.
+     */
+    @NotNull
+    private final ConcurrentHashMap<String, int[]> sortedIds = new ConcurrentHashMap<>();
+    @NotNull
+    private final Map<String, Integer> counts = lru(MAX_CACHED_COUNTS);
+    @NotNull
+    private final Map<ResultKey, int[]> results = lru(MAX_CACHED_RESULTS);
+    @NotNull
+    private final Map<PageKey, List<Person>> pages = lru(MAX_CACHED_PAGES);
+    @NotNull
+    private final AtomicLong pageHits = new AtomicLong();
+    @NotNull
+    private final AtomicLong pageMisses = new AtomicLong();
+
+    /**
+     * Generates the dataset.
+     * @param size the number of persons.
+     */
+    public PersonService(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Parameter size: invalid value " + size + ": must be 0 or higher");
+        }
+        this.size = size;
+        firstNames = new byte[size];
+        lastNames = new byte[size];
+        cities = new byte[size];
+        ages = new byte[size];
+        for (int id = 0; id < size; id++) {
+            firstNames[id] = (byte) (mix(id, 1) % FIRST_NAMES.length);
+            lastNames[id] = (byte) (mix(id, 2) % LAST_NAMES.length);
+            cities[id] = (byte) (mix(id, 3) % CITIES.length);
+            ages[id] = (byte) (18 + mix(id, 4) % 63);
+        }
+    }
+
+    /**
+     * A cheap deterministic hash, so that the dataset looks random but is the same on every run.
+     * @return a non-negative number.
+     */
+    private static int mix(int id, int salt) {
+        long z = id * 0x9E3779B97F4A7C15L + salt;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) ((z ^ (z >>> 31)) >>> 33);
+    }
+
+    @NotNull
+    private static <K, V> Map<K, V> lru(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Counts the persons matching given filter.
+     * @param filter matches persons whose first name, last name or city contains this text, case-insensitive. Null or blank matches all persons.
+     * @return the number of matching persons.
+     */
+    public int count(@Nullable String filter) {
+        final String f = normalize(filter);
+        final Integer cached = counts.get(f);
+        if (cached != null) {
+            return cached;
+        }
+        int count = 0;
+        if (f.isEmpty()) {
+            count = size;
+        } else {
+            final Matcher matcher = new Matcher(f);
+            for (int id = 0; id < size; id++) {
+                if (matcher.matches(id)) {
+                    count++;
+                }
+            }
+        }
+        counts.put(f, count);
+        return count;
+    }
+
+    /**
+     * Fetches a page of persons.
+     * @param filter see {@link #count(String)}.
+     * @param sortProperty one of {@link #SORT_PROPERTIES}; null sorts by id.
+     * @param descending true to sort in the descending order.
+     * @param offset the index of the first person to fetch, 0 or higher.
+     * @param limit the maximum number of persons to fetch, 0 or higher.
+     * @return the persons; fewer than <code>limit</code> at the end of the data. Unmodifiable.
+     */
+    @NotNull
+    public List<Person> fetch(@Nullable String filter, @Nullable String sortProperty, boolean descending, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Parameter offset: invalid value " + offset + ": must be 0 or higher");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Parameter limit: invalid value " + limit + ": must be 0 or higher");
+        }
+        final String sort = sortProperty == null ? "id" : sortProperty;
+        if (!SORT_PROPERTIES.contains(sort)) {
+            throw new IllegalArgumentException("Parameter sortProperty: invalid value " + sortProperty + ": must be one of " + SORT_PROPERTIES);
+        }
+        final PageKey key = new PageKey(normalize(filter), sort, descending, offset, limit);
+        final List<Person> cached = pages.get(key);
+        if (cached != null) {
+            pageHits.incrementAndGet();
+            return cached;
+        }
+        pageMisses.incrementAndGet();
+        final int[] ids = result(key.filter, sort, descending);
+        final List<Person> page = new ArrayList<>(Math.max(0, Math.min(limit, ids.length - offset)));
+        for (int i = offset; i < ids.length && i < offset + limit; i++) {
+            page.add(get(ids[i]));
+        }
+        final List<Person> result = Collections.unmodifiableList(page);
+        pages.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return the ids of the persons matching the filter, in the sort order.
+     */
+    private int @NotNull [] result(@NotNull String filter, @NotNull String sortProperty, boolean descending) {
+        final int[] sorted = sortedIds.computeIfAbsent(sortProperty, this::sort);
+        if (filter.isEmpty() && !descending) {
+            return sorted;
+        }
+        final ResultKey key = new ResultKey(filter, sortProperty, descending);
+        final int[] cached = results.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final Matcher matcher = filter.isEmpty() ? null : new Matcher(filter);
+        int[] result = new int[filter.isEmpty() ? size : Math.max(16, count(filter))];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            final int id = sorted[descending ? size - 1 - i : i];
+            if (matcher == null || matcher.matches(id)) {
+                result[count++] = id;
+            }
+        }
+        result = count == result.length ? result : Arrays.copyOf(result, count);
+        results.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return the ids of all persons, sorted by given property in the ascending order; ties are sorted by id.
+     */
+    private int @NotNull [] sort(@NotNull String sortProperty) {
+        final int[] ranks = switch (sortProperty) {
+            case "firstName" -> ranks(FIRST_NAMES, firstNames);
+            case "lastName" -> ranks(LAST_NAMES, lastNames);
+            case "city" -> ranks(CITIES, cities);
+            case "age" -> {
+                final int[] r = new int[size];
+                for (int id = 0; id < size; id++) {
+                    r[id] = ages[id];
+                }
+                yield r;
+            }
+            default -> null;
+        };
+        final int[] ids = new int[size];
+        if (ranks == null) {
+            Arrays.setAll(ids, id -> id);
+            return ids;
+        }
+        // sort primitive (rank, id) pairs rather than boxed ids: several times faster and no garbage.
+        final long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            keys[id] = ((long) ranks[id] << 32) | id;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            ids[i] = (int) keys[i];
+        }
+        return ids;
+    }
+
+    /**
+     * @return for every person, the alphabetical rank of its value in the pool.
+     */
+    private int @NotNull [] ranks(@NotNull String[] pool, byte @NotNull [] column) {
+        final Integer[] order = new Integer[pool.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(i -> pool[i]));
+        final int[] poolRank = new int[pool.length];
+        for (int rank = 0; rank < order.length; rank++) {
+            poolRank[order[rank]] = rank;
+        }
+        final int[] result = new int[size];
+        for (int id = 0; id < size; id++) {
+            result[id] = poolRank[column[id]];
+        }
+        return result;
+    }
+
+    @NotNull
+    private Person get(int id) {
+        final String firstName = FIRST_NAMES[firstNames[id]];
+        final String lastName = LAST_NAMES[lastNames[id]];
+        final String email = firstName.toLowerCase(Locale.ROOT) + "." + lastName.toLowerCase(Locale.ROOT) + id + "@example.com";
+        return new Person(id, firstName, lastName, email, ages[id], CITIES[cities[id]]);
+    }
+
+    @NotNull
+    private static String normalize(@Nullable String filter) {
+        return filter == null ? "" : filter.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the number of persons.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return e.g. <code>pages: 950 hits, 50 misses</code>.
+     */
+    @NotNull
+    public String getCacheStats() {
+        return "pages: " + pageHits.get() + " hits, " + pageMisses.get() + " misses";
+    }
+
+    /**
+     * Matches the persons against a normalized filter. Since the values come from small pools, every pool value is matched only once.
+     */
+    private final class Matcher {
+        private final boolean[] firstNameMatches;
+        private final boolean[] lastNameMatches;
+        private final boolean[] cityMatches;
+
+        Matcher(@NotNull String filter) {
+            firstNameMatches = matches(FIRST_NAMES, filter);
+            lastNameMatches = matches(LAST_NAMES, filter);
+            cityMatches = matches(CITIES, filter);
+        }
+
+        private static boolean @NotNull [] matches(@NotNull String[] pool, @NotNull String filter) {
+            final boolean[] result = new boolean[pool.length];
+            for (int i = 0; i < pool.length; i++) {
+                result[i] = pool[i].toLowerCase(Locale.ROOT).contains(filter);
+            }
+            return result;
+        }
+
+        boolean matches(int id) {
+            return firstNameMatches[firstNames[id]] || lastNameMatches[lastNames[id]] || cityMatches[cities[id]];
+        }
+    }
+
+    private record ResultKey(@NotNull String filter, @NotNull String sortProperty, boolean descending) {
+    }
+
+    private record PageKey(@NotNull String filter, @NotNull String sortProperty, boolean descending, int offset, int limit) {
+    }
+}
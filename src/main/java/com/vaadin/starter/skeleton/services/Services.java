@@ -11,4 +11,18 @@ public class Services {
     public static GreetService getGreetService() {
         return new GreetService();
     }
+
+    /**
+     * The dataset is large and takes a while to generate and sort, and the caches are useful only if shared by all users:
+     * one instance is therefore shared by the whole app, created on first use.
+     */
+    @NotNull
+    public static PersonService getPersonService() {
+        return PersonServiceHolder.INSTANCE;
+    }
+
+    private static final class PersonServiceHolder {
+        @NotNull
+        private static final PersonService INSTANCE = new PersonService(PersonService.DEFAULT_SIZE);
+    }
 }
@@ -0,0 +1,129 @@
+package com.vaadin.starter.skeleton.threads;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Handles the requests in virtual threads instead of the Jetty thread pool. Enabled by the
+ * <code>-Dvaadin.virtualThreads=true</code> system property or the <code>--virtual-threads</code> argument of {@link com.vaadin.starter.skeleton.Main};
+ * requires Java 21+, otherwise the requests are handled by Jetty threads as usual. Only registered in that mode,
+ * see {@link VirtualThreadFilterRegistration}: in the default mode, the requests don't pass through this filter at all.
+ * <p></p>
+ * A Jetty thread only starts async processing and hands the request over to a new virtual thread, so blocking service calls and
+ * session lock waits no longer exhaust the Jetty thread pool. The rest of the filter chain, including the Vaadin servlet, runs in the
+ * virtual thread, just like with {@link AsyncContext#start(Runnable)}; the Jetty thread returns to the pool right away. At most <code>vaadin.virtualThreads.maxConcurrency</code>
+ * requests (1000 by default) are handled at the same time. The permit is taken by the Jetty thread before anything else, and
+ * a request which doesn't get one is rejected with 503 right away, without a virtual thread or an async context: an overload
+ * therefore can't pile up parked virtual threads and suspended requests in memory.
+ * <p></p>
+ * Push requests are left alone: Atmosphere manages their threads itself.
+ */
+public class VirtualThreadFilter implements Filter {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadFilter.class);
+    /**
+     * Set this system property to <code>true</code> to handle the requests in virtual threads.
+     */
+    @NotNull
+    public static final String ENABLED_PROPERTY = "vaadin.virtualThreads";
+    /**
+     * The maximum number of requests handled concurrently in the virtual thread mode.
+     */
+    @NotNull
+    public static final String MAX_CONCURRENCY_PROPERTY = "vaadin.virtualThreads.maxConcurrency";
+
+    /**
+     * Runs every request in a new virtual thread, see {@link VirtualThreads#newVirtualThreadPerTaskExecutor()}.
+     */
+    @NotNull
+    private final ExecutorService executor;
+    @NotNull
+    private final Semaphore limiter;
+
+    /**
+     * @param executor runs every request in a new virtual thread; shut down when this filter is destroyed.
+     * @param maxConcurrency the maximum number of requests handled at the same time, 1 or higher.
+     */
+    public VirtualThreadFilter(@NotNull ExecutorService executor, int maxConcurrency) {
+        this.executor = Objects.requireNonNull(executor);
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Parameter maxConcurrency: invalid value " + maxConcurrency + ": must be 1 or higher");
+        }
+        limiter = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public void doFilter(@NotNull ServletRequest request, @NotNull ServletResponse response, @NotNull FilterChain chain) throws IOException, ServletException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || !request.isAsyncSupported() || "push".equals(request.getParameter("v-r"))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!limiter.tryAcquire()) {
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        final AsyncContext asyncContext;
+        try {
+            asyncContext = request.startAsync();
+        } catch (RuntimeException e) {
+            limiter.release();
+            throw e;
+        }
+        // the request is completed by the virtual thread; Vaadin requests may legitimately take long.
+        asyncContext.setTimeout(0);
+        try {
+            executor.execute(() -> handle(request, response, chain, asyncContext));
+        } catch (RejectedExecutionException e) {
+            // the filter is being destroyed.
+            limiter.release();
+            ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
+    }
+
+    private void handle(@NotNull ServletRequest request, @NotNull ServletResponse response, @NotNull FilterChain chain, @NotNull AsyncContext asyncContext) {
+        try {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                limiter.release();
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException || e.getCause() instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.error("Failed to handle " + ((HttpServletRequest) request).getRequestURI(), e);
+            if (!response.isCommitted()) {
+                try {
+                    ((HttpServletResponse) response).sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } catch (IOException ex) {
+                    e.addSuppressed(ex);
+                }
+            }
+        } finally {
+            asyncContext.complete();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
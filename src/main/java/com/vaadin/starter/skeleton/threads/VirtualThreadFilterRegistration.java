@@ -0,0 +1,45 @@
+package com.vaadin.starter.skeleton.threads;
+
+import com.vaadin.starter.skeleton.metrics.ServerMetrics;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterRegistration;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Registers {@link VirtualThreadFilter} if the virtual thread mode is enabled, see {@link VirtualThreadFilter#ENABLED_PROPERTY}.
+ * In the default mode, no filter is registered at all and every request is handled by the Jetty thread which received it.
+ */
+@WebListener
+public class VirtualThreadFilterRegistration implements ServletContextListener {
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadFilterRegistration.class);
+
+    @Override
+    public void contextInitialized(@NotNull ServletContextEvent sce) {
+        if (!Boolean.getBoolean(VirtualThreadFilter.ENABLED_PROPERTY)) {
+            return;
+        }
+        final ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            log.warn("Virtual threads not available on Java " + Runtime.version() + ", handling requests in Jetty threads");
+            return;
+        }
+        final int maxConcurrency = Integer.getInteger(VirtualThreadFilter.MAX_CONCURRENCY_PROPERTY, 1000);
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("System property " + VirtualThreadFilter.MAX_CONCURRENCY_PROPERTY + ": invalid value " + maxConcurrency + ": must be 1 or higher");
+        }
+        final FilterRegistration.Dynamic registration = sce.getServletContext().addFilter("virtualThreads", new VirtualThreadFilter(executor, maxConcurrency));
+        registration.setAsyncSupported(true);
+        registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+        ServerMetrics.get().requestThreads = "virtual max_concurrency=" + maxConcurrency;
+        log.info("Handling requests in virtual threads, at most " + maxConcurrency + " concurrently");
+    }
+}
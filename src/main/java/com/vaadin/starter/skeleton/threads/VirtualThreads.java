@@ -0,0 +1,26 @@
+package com.vaadin.starter.skeleton.threads;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (Java 21+) from code compiled for Java 17.
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {}
+
+    /**
+     * @return an executor running every task in a new virtual thread; null on JVMs without virtual threads.
+     */
+    @Nullable
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            // the project targets Java 17, so the Java 21 API needs to be called reflectively.
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.vaadin.starter.skeleton;
+
+import com.github.mvysny.kaributesting.v10.GridKt;
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.grid.Grid;
+import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.starter.skeleton.services.Person;
+import com.vaadin.starter.skeleton.services.PersonService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.github.mvysny.kaributesting.v10.LocatorJ.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Browserless tests of {@link GridView}; see {@link MainViewTest} for details on the technique.
+ */
+public class GridViewTest {
+    private static Routes routes;
+
+    @BeforeAll
+    public static void createRoutes() {
+        routes = new Routes().autoDiscoverViews("com.vaadin.starter.skeleton");
+    }
+
+    @BeforeEach
+    public void setupVaadin() {
+        MockVaadin.setup(routes);
+        UI.getCurrent().navigate(GridView.class);
+    }
+
+    @AfterEach
+    public void teardownVaadin() {
+        MockVaadin.tearDown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void showsAllPersons() {
+        final Grid<Person> grid = _get(Grid.class, spec -> spec.withId("personGrid"));
+        assertEquals(PersonService.DEFAULT_SIZE, GridKt._size(grid));
+        assertEquals(0, GridKt._get(grid, 0).getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void filter() {
+        final Grid<Person> grid = _get(Grid.class, spec -> spec.withId("personGrid"));
+        _setValue(_get(TextField.class, spec -> spec.withId("filterField")), "Turku");
+        final int size = GridKt._size(grid);
+        assertTrue(size > 0 && size < PersonService.DEFAULT_SIZE, "unexpected size " + size);
+        assertEquals("Turku", GridKt._get(grid, 0).getCity());
+
+        _setValue(_get(TextField.class, spec -> spec.withId("filterField")), "");
+        assertEquals(PersonService.DEFAULT_SIZE, GridKt._size(grid));
+    }
+}
@@ -0,0 +1,184 @@
+package com.vaadin.starter.skeleton.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void smallValuesAreExact() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 128; i++) {
+            h.record(i);
+        }
+        for (int i = 0; i < 128; i++) {
+            assertEquals(i, h.getValueAtRank(i + 1));
+        }
+        assertEquals(128, h.getCount());
+        assertEquals(63, h.getValueAtPercentile(50));
+        assertEquals(126, h.getValueAtPercentile(99));
+        assertEquals(127, h.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void largeValuesWithinPrecision() {
+        for (long value = 128; value < LatencyHistogram.MAX_VALUE; value = value * 3 / 2 + 1) {
+            final LatencyHistogram h = new LatencyHistogram();
+            h.record(value);
+            // a larger value, so that the reported value of the first one isn't clamped to the max.
+            h.record(LatencyHistogram.MAX_VALUE);
+            final long reported = h.getValueAtRank(1);
+            assertTrue(reported >= value, value + " reported as " + reported);
+            assertTrue(reported - value <= value / 64, value + " reported as " + reported);
+        }
+    }
+
+    @Test
+    public void bucketsAreOrderedByValue() {
+        int previousBucket = -1;
+        for (long value = 0; value < LatencyHistogram.MAX_VALUE; value = value < 1000 ? value + 1 : value * 101 / 100) {
+            final LatencyHistogram h = new LatencyHistogram();
+            h.record(value);
+            final int bucket = bucketOf(h);
+            assertTrue(bucket >= previousBucket, "value " + value);
+            previousBucket = bucket;
+        }
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(LatencyHistogram.MAX_VALUE);
+        assertEquals(h.getBucketCounts().length - 1, bucketOf(h));
+    }
+
+    @Test
+    public void valuesOutOfRangeAreClamped() {
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(-5);
+        h.record(Long.MAX_VALUE);
+        assertEquals(0, h.getMin());
+        assertEquals(LatencyHistogram.MAX_VALUE, h.getMax());
+        assertEquals(LatencyHistogram.MAX_VALUE, h.getTotal());
+        assertEquals(2, h.getCount());
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram h = new LatencyHistogram();
+        // 1..1000 microseconds, in nanoseconds.
+        for (int i = 1000; i >= 1; i--) {
+            h.record(i * 1000L);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000, h.getMin());
+        assertEquals(1_000_000, h.getMax());
+        assertEquals(500_500, h.getMean());
+        assertEquals(500_500_000, h.getTotal());
+        assertWithinPrecision(500_000, h.getValueAtPercentile(50));
+        assertWithinPrecision(900_000, h.getValueAtPercentile(90));
+        assertWithinPrecision(990_000, h.getValueAtPercentile(99));
+        assertWithinPrecision(999_000, h.getValueAtPercentile(99.9));
+        // the smallest value is reported as the top of its bucket, the largest one exactly.
+        assertWithinPrecision(1000, h.getValueAtPercentile(0));
+        assertEquals(1_000_000, h.getValueAtPercentile(100));
+        assertEquals(1_000_000, h.getValueAtPercentile(150));
+    }
+
+    @Test
+    public void percentileOfSingleValueIsExact() {
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(123_456_789);
+        assertEquals(123_456_789, h.getValueAtPercentile(0));
+        assertEquals(123_456_789, h.getValueAtPercentile(50));
+        assertEquals(123_456_789, h.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void empty() {
+        final LatencyHistogram h = new LatencyHistogram();
+        assertTrue(h.isEmpty());
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMin());
+        assertEquals(0, h.getMax());
+        assertEquals(0, h.getMean());
+        assertEquals(0, h.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        final LatencyHistogram h = new LatencyHistogram();
+        for (long value : new long[]{0, 1, 127, 128, 1_000, 1_000, 15_000_000, 2_500_000_000L, LatencyHistogram.MAX_VALUE}) {
+            h.record(value);
+        }
+        final LatencyHistogram decoded = LatencyHistogram.decode(h.encode());
+        assertSameHistogram(h, decoded);
+        // stable: encoding the decoded histogram yields the same string.
+        assertEquals(h.encode(), decoded.encode());
+    }
+
+    @Test
+    public void encodeDecodeEmpty() {
+        final LatencyHistogram decoded = LatencyHistogram.decode(new LatencyHistogram().encode());
+        assertTrue(decoded.isEmpty());
+        assertEquals(0, decoded.getMin());
+        assertEquals(0, decoded.getMax());
+        assertEquals(0, decoded.getValueAtPercentile(99));
+        // an empty histogram added to another one doesn't disturb its min.
+        final LatencyHistogram h = new LatencyHistogram();
+        h.record(500);
+        h.add(decoded);
+        assertEquals(500, h.getMin());
+    }
+
+    @Test
+    public void decodedHistogramsMerge() {
+        final LatencyHistogram a = new LatencyHistogram();
+        final LatencyHistogram b = new LatencyHistogram();
+        final LatencyHistogram all = new LatencyHistogram();
+        for (int i = 0; i < 1000; i++) {
+            final long value = 1_000_000L + i * 7_919L;
+            (i % 2 == 0 ? a : b).record(value);
+            all.record(value);
+        }
+        final LatencyHistogram merged = LatencyHistogram.decode(a.encode());
+        merged.add(LatencyHistogram.decode(b.encode()));
+        assertSameHistogram(all, merged);
+    }
+
+    @Test
+    public void decodeInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode("1,2"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode("1,2,3;foo"));
+        assertThrows(IllegalArgumentException.class, () -> LatencyHistogram.decode("1,2,3;100000:1"));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual - expected <= expected / 64, "expected " + expected + " but was " + actual);
+    }
+
+    /**
+     * @return the index of the only non-empty bucket.
+     */
+    private static int bucketOf(@NotNull LatencyHistogram h) {
+        final long[] counts = h.getBucketCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                return i;
+            }
+        }
+        throw new AssertionError("empty histogram");
+    }
+
+    private static void assertSameHistogram(@NotNull LatencyHistogram expected, @NotNull LatencyHistogram actual) {
+        assertArrayEquals(expected.getBucketCounts(), actual.getBucketCounts());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getTotal(), actual.getTotal());
+        for (double percentile : new double[]{0, 50, 90, 99, 99.9, 100}) {
+            assertEquals(expected.getValueAtPercentile(percentile), actual.getValueAtPercentile(percentile));
+        }
+    }
+}
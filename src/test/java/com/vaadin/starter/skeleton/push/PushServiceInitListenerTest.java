@@ -0,0 +1,80 @@
+package com.vaadin.starter.skeleton.push;
+
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.router.QueryParameters;
+import com.vaadin.flow.shared.communication.PushMode;
+import com.vaadin.flow.shared.ui.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static com.github.mvysny.kaributesting.v10.LocatorJ.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the per-UI push selection of {@link PushServiceInitListener}; see <code>MainViewTest</code> for details on the technique.
+ */
+public class PushServiceInitListenerTest {
+    private static Routes routes;
+
+    @BeforeAll
+    public static void createRoutes() {
+        routes = new Routes().autoDiscoverViews("com.vaadin.starter.skeleton");
+    }
+
+    @BeforeEach
+    public void setupVaadin() {
+        MockVaadin.setup(routes);
+    }
+
+    @AfterEach
+    public void teardownVaadin() {
+        MockVaadin.tearDown();
+    }
+
+    @Test
+    public void pushFromQueryParameter() {
+        final UI ui = UI.getCurrent();
+        PushServiceInitListener.configure(ui, QueryParameters.simple(Map.of("push", "websocket")), PushTransportMode.DISABLED);
+        assertEquals(PushMode.AUTOMATIC, ui.getPushConfiguration().getPushMode());
+        assertEquals(Transport.WEBSOCKET, ui.getPushConfiguration().getTransport());
+    }
+
+    @Test
+    public void defaultWithoutQueryParameter() {
+        final UI ui = UI.getCurrent();
+        PushServiceInitListener.configure(ui, QueryParameters.empty(), PushTransportMode.LONG_POLLING);
+        assertEquals(PushMode.AUTOMATIC, ui.getPushConfiguration().getPushMode());
+        assertEquals(Transport.LONG_POLLING, ui.getPushConfiguration().getTransport());
+
+        PushServiceInitListener.configure(ui, QueryParameters.empty(), PushTransportMode.DISABLED);
+        assertEquals(PushMode.DISABLED, ui.getPushConfiguration().getPushMode());
+    }
+
+    @Test
+    public void invalidPushFallsBackToDefault() {
+        final UI ui = UI.getCurrent();
+        PushServiceInitListener.configure(ui, QueryParameters.simple(Map.of("push", "carrier-pigeon")), PushTransportMode.DISABLED);
+        assertEquals(PushMode.DISABLED, ui.getPushConfiguration().getPushMode());
+    }
+
+    @Test
+    public void serverUpdatesFromQueryParameter() {
+        PushServiceInitListener.configure(UI.getCurrent(), QueryParameters.simple(Map.of("updates", "1000")), PushTransportMode.DISABLED);
+        _assertOne(ServerUpdates.class);
+        assertEquals(1000, UI.getCurrent().getPollInterval());
+    }
+
+    @Test
+    public void invalidServerUpdatesAreIgnored() {
+        PushServiceInitListener.configure(UI.getCurrent(), QueryParameters.simple(Map.of("updates", "often")), PushTransportMode.DISABLED);
+        _assertNone(ServerUpdates.class);
+        PushServiceInitListener.configure(UI.getCurrent(), QueryParameters.simple(Map.of("updates", "0")), PushTransportMode.DISABLED);
+        _assertNone(ServerUpdates.class);
+    }
+}
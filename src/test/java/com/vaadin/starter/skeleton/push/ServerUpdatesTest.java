@@ -0,0 +1,73 @@
+package com.vaadin.starter.skeleton.push;
+
+import com.github.mvysny.kaributesting.v10.MockVaadin;
+import com.github.mvysny.kaributesting.v10.Routes;
+import com.vaadin.flow.component.UI;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ServerUpdates}; see <code>MainViewTest</code> for details on the technique.
+ */
+public class ServerUpdatesTest {
+    private static Routes routes;
+
+    @BeforeAll
+    public static void createRoutes() {
+        routes = new Routes().autoDiscoverViews("com.vaadin.starter.skeleton");
+    }
+
+    @BeforeEach
+    public void setupVaadin() {
+        MockVaadin.setup(routes);
+        PushTransportMode.DISABLED.apply(UI.getCurrent());
+    }
+
+    @AfterEach
+    public void teardownVaadin() {
+        MockVaadin.tearDown();
+    }
+
+    @Test
+    public void pollsWithoutPush() {
+        final ServerUpdates updates = new ServerUpdates(1000);
+        UI.getCurrent().add(updates);
+        assertEquals(1000, UI.getCurrent().getPollInterval());
+        UI.getCurrent().remove(updates);
+        assertEquals(-1, UI.getCurrent().getPollInterval());
+    }
+
+    @Test
+    public void doesNotPollWithPush() {
+        PushTransportMode.WEBSOCKET.apply(UI.getCurrent());
+        UI.getCurrent().add(new ServerUpdates(1000));
+        assertEquals(-1, UI.getCurrent().getPollInterval());
+    }
+
+    @Test
+    public void updatesUntilDetached() throws InterruptedException {
+        final ServerUpdates updates = new ServerUpdates(10);
+        UI.getCurrent().add(updates);
+        Thread.sleep(200);
+        // runs the pending UI.access() tasks.
+        MockVaadin.clientRoundtrip();
+        assertNotEquals("0", updates.getText());
+
+        UI.getCurrent().remove(updates);
+        Thread.sleep(50);
+        MockVaadin.clientRoundtrip();
+        final String afterDetach = updates.getText();
+        Thread.sleep(200);
+        MockVaadin.clientRoundtrip();
+        assertEquals(afterDetach, updates.getText());
+    }
+
+    @Test
+    public void invalidInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new ServerUpdates(0));
+    }
+}
@@ -0,0 +1,118 @@
+package com.vaadin.starter.skeleton.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link PersonService}.
+ */
+public class PersonServiceTest {
+    private static final int SIZE = 5000;
+    @NotNull
+    private final PersonService service = new PersonService(SIZE);
+
+    @Test
+    public void fetchById() {
+        final List<Person> all = service.fetch(null, null, false, 0, SIZE);
+        assertEquals(SIZE, all.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertEquals(i, all.get(i).getId());
+        }
+        assertEquals(all.subList(10, 20), service.fetch(null, "id", false, 10, 10));
+        assertEquals(List.of(), service.fetch(null, null, false, SIZE, 10));
+        assertEquals(all.subList(SIZE - 5, SIZE), service.fetch(null, null, false, SIZE - 5, 10));
+    }
+
+    @Test
+    public void sortedByPackedKeys() {
+        final List<Person> all = service.fetch(null, null, false, 0, SIZE);
+        assertSorted(all, "firstName", Comparator.comparing(Person::getFirstName));
+        assertSorted(all, "lastName", Comparator.comparing(Person::getLastName));
+        assertSorted(all, "city", Comparator.comparing(Person::getCity));
+        assertSorted(all, "age", Comparator.comparingInt(Person::getAge));
+    }
+
+    /**
+     * Sorting by the packed (rank, id) keys must match a plain sort of the persons, ties broken by id.
+     */
+    private void assertSorted(@NotNull List<Person> all, @NotNull String sortProperty, @NotNull Comparator<Person> comparator) {
+        final List<Person> expected = new ArrayList<>(all);
+        expected.sort(comparator.thenComparingInt(Person::getId));
+        assertEquals(expected, service.fetch(null, sortProperty, false, 0, SIZE), sortProperty);
+        assertEquals(reversed(expected), service.fetch(null, sortProperty, true, 0, SIZE), sortProperty + " descending");
+        assertEquals(expected.subList(100, 150), service.fetch(null, sortProperty, false, 100, 50), sortProperty + " page");
+    }
+
+    @NotNull
+    private static List<Person> reversed(@NotNull List<Person> list) {
+        final List<Person> result = new ArrayList<>(list);
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Test
+    public void filter() {
+        final List<Person> all = service.fetch(null, null, false, 0, SIZE);
+        final List<Person> expected = new ArrayList<>();
+        for (Person person : all) {
+            if ((person.getFirstName() + " " + person.getLastName() + " " + person.getCity()).toLowerCase(Locale.ROOT).contains("an")) {
+                expected.add(person);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), service.count("an"));
+        assertEquals(expected.size(), service.count(" AN "));
+        assertEquals(SIZE, service.count(null));
+        assertEquals(SIZE, service.count(" "));
+        assertEquals(expected, service.fetch(" AN ", null, false, 0, SIZE));
+        expected.sort(Comparator.comparing(Person::getCity).thenComparingInt(Person::getId));
+        assertEquals(reversed(expected), service.fetch("an", "city", true, 0, SIZE));
+        assertEquals(0, service.count("no such person"));
+        assertEquals(List.of(), service.fetch("no such person", "age", false, 0, 10));
+    }
+
+    @Test
+    public void pageCache() {
+        final List<Person> page = service.fetch(null, "age", false, 0, 10);
+        assertSame(page, service.fetch(null, "age", false, 0, 10));
+        // the filter is normalized before it's used as a key.
+        assertSame(page, service.fetch(" ", "age", false, 0, 10));
+        assertEquals("pages: 2 hits, 1 misses", service.getCacheStats());
+        assertThrows(UnsupportedOperationException.class, () -> page.add(page.get(0)));
+    }
+
+    @Test
+    public void pageCacheEvictsLeastRecentlyUsed() {
+        final List<Person> first = service.fetch(null, null, false, 0, 1);
+        final List<Person> second = service.fetch(null, null, false, 1, 1);
+        // 998 more pages fill the cache of 1000 pages, the next one evicts the least recently used page.
+        for (int offset = 2; offset < 1000; offset++) {
+            service.fetch(null, null, false, offset, 1);
+        }
+        // a hit makes the first page the most recently used one.
+        assertSame(first, service.fetch(null, null, false, 0, 1));
+        service.fetch(null, null, false, 1000, 1);
+        assertEquals("pages: 1 hits, 1001 misses", service.getCacheStats());
+        assertSame(first, service.fetch(null, null, false, 0, 1));
+        final List<Person> secondAgain = service.fetch(null, null, false, 1, 1);
+        assertNotSame(second, secondAgain);
+        assertEquals(second, secondAgain);
+        assertEquals("pages: 2 hits, 1002 misses", service.getCacheStats());
+    }
+
+    @Test
+    public void invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new PersonService(-1));
+        assertThrows(IllegalArgumentException.class, () -> service.fetch(null, null, false, -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> service.fetch(null, null, false, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> service.fetch(null, "email", false, 0, 10));
+    }
+}